@@ -1,18 +1,21 @@
 package cn.addenda.ahacdc;
 
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.collection.LongObjectHashMap;
 import cn.addenda.ahacdc.format.DataFormatterRegistry;
+import cn.addenda.ahacdc.rowimage.BeforeImage;
+import cn.addenda.ahacdc.rowimage.RowDiff;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import cn.addenda.ahacdc.rowimage.RowImageCodec;
 import cn.addenda.ahacdc.sql.SqlHelper;
-import cn.addenda.businesseasy.util.BEListUtils;
 import cn.addenda.ec.function.calculator.FunctionCalculator;
 import cn.addenda.ro.grammar.lexical.token.Token;
-import cn.addenda.ro.util.SqlUtils;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * @author addenda
@@ -20,9 +23,7 @@ import java.util.stream.Collectors;
  */
 public abstract class AbstractPsDelegate implements PsDelegate {
 
-    public static final int IN_SIZE = 2;
-    public static final int EXECUTE_INSERT_SQL_BATCH = 10;
-    public static final int EXECUTE_INSERT_STATEMENT_BATCH = 20;
+    public static final int LOCK_KEY_BATCH = 50;
 
     protected final CdcConnection cdcConnection;
 
@@ -30,6 +31,8 @@ public abstract class AbstractPsDelegate implements PsDelegate {
 
     protected final TableConfig tableConfig;
 
+    protected final SqlTemplate sqlTemplate;
+
     protected final String parameterizedSql;
 
     protected final String tableName;
@@ -42,11 +45,26 @@ public abstract class AbstractPsDelegate implements PsDelegate {
 
     protected final SqlHelper sqlHelper;
 
-    protected AbstractPsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, String parameterizedSql) {
+    /**
+     * 合并后的加锁读SQL，key是合并的条数。复用同一个字符串对象，prepareCdcStatement 查找时不用重新计算hash。
+     */
+    private final Map<Integer, String> batchLockingReadSqlMap = new HashMap<>();
+
+    /**
+     * 同时查出 before-image 的加锁读SQL，按 beforeImageColumnList 的配置懒生成。
+     */
+    private String beforeImageLockingReadSql;
+
+    private List<String> beforeImageColumnList;
+
+    private final Map<Integer, String> batchBeforeImageLockingReadSqlMap = new HashMap<>();
+
+    protected AbstractPsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, SqlTemplate sqlTemplate) {
         this.cdcConnection = cdcConnection;
         this.ps = ps;
         this.tableConfig = tableConfig;
-        this.parameterizedSql = parameterizedSql;
+        this.sqlTemplate = sqlTemplate;
+        this.parameterizedSql = sqlTemplate.getParameterizedSql();
         this.tableName = tableConfig.getTableName();
         this.keyColumn = tableConfig.getKeyColumn();
         this.dataFormatterRegistry = cdcConnection.getCdcDataSource().getDataFormatterRegistry();
@@ -55,14 +73,14 @@ public abstract class AbstractPsDelegate implements PsDelegate {
     }
 
     @Override
-    public <T> T execute(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException {
+    public <T> T execute(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException {
         doAssert(executableSqlList, pi);
         return doExecute(executableSqlList, pi);
     }
 
-    protected abstract <T> void doAssert(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException;
+    protected abstract <T> void doAssert(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException;
 
-    protected abstract <T> T doExecute(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException;
+    protected abstract <T> T doExecute(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException;
 
     private static final Map<Integer, String> txIsolationStrMap = new HashMap<>();
 
@@ -79,107 +97,250 @@ public abstract class AbstractPsDelegate implements PsDelegate {
         }
     }
 
-    protected Map<Long, Map<String, Token>> queryKeyColumnTokenMap(
-            Statement statement, List<Long> keyValueList, List<String> columnList) throws SQLException {
-        Map<Long, Map<String, Token>> map = new HashMap<>();
+    /**
+     * 查询主键对应行的 columnList 字段。
+     *
+     * @return key是主键，value[i] 是 columnList.get(i) 的值
+     */
+    protected LongObjectHashMap<Token[]> queryKeyColumnTokens(
+            Statement statement, LongArrayList keyValueList, List<String> columnList) throws SQLException {
+        LongObjectHashMap<Token[]> map = new LongObjectHashMap<>(keyValueList.size());
         if (columnList.isEmpty()) {
             return map;
         }
-        List<String> resultColumnList = new ArrayList<>(columnList);
-        resultColumnList.add(keyColumn);
-        List<List<Long>> listList = BEListUtils.splitList(keyValueList, IN_SIZE);
-        for (List<Long> item : listList) {
-            int size = item.size();
-            String keyInList = longListToString(item);
+        int columnCount = columnList.size();
+        String columns = String.join(",", columnList) + "," + keyColumn;
+        for (KeyPredicatePlanner.KeyPredicate keyPredicate : planKeyPredicate(keyValueList)) {
+            int size = keyPredicate.getKeyCount();
             String sql = "select "
-                    + String.join(",", resultColumnList) + " "
+                    + columns + " "
                     + "from " + tableName + " "
-                    + "where " + keyColumn + " "
-                    + "in (" + keyInList + ")";
-            ResultSet resultSet = statement.executeQuery(sql);
+                    + "where " + keyPredicate.getPredicate();
             int i = 0;
-            while (resultSet.next()) {
-                Map<String, Token> columnTokenMap = new HashMap<>();
-                Long keyValue = null;
-                for (String column : resultColumnList) {
-                    if (keyColumn.equals(column)) {
-                        keyValue = resultSet.getLong(column);
-                        columnTokenMap.put(column, dataFormatterRegistry.parse(keyValue));
-                    } else {
-                        columnTokenMap.put(column, dataFormatterRegistry.parse(resultSet.getObject(column)));
+            try (ResultSet resultSet = statement.executeQuery(sql)) {
+                while (resultSet.next()) {
+                    Token[] tokens = new Token[columnCount];
+                    for (int j = 0; j < columnCount; j++) {
+                        tokens[j] = dataFormatterRegistry.parse(resultSet.getObject(j + 1));
                     }
+                    map.put(resultSet.getLong(columnCount + 1), tokens);
+                    i++;
                 }
-                map.put(keyValue, columnTokenMap);
-                i++;
             }
-            resultSet.close();
             if (size != i) {
-                throw new CdcException("Cannot get enough key value from resultSet. keyValueList: " + keyInList + ".");
+                throw new CdcException("Cannot get enough key value from resultSet. predicate: " + keyPredicate.getPredicate() + ".");
             }
         }
         return map;
     }
 
+    protected Map<String, Token> toColumnTokenMap(List<String> columnList, Token[] tokens) {
+        Map<String, Token> columnTokenMap = new HashMap<>(columnList.size() * 2);
+        for (int i = 0; i < columnList.size(); i++) {
+            columnTokenMap.put(columnList.get(i), tokens[i]);
+        }
+        return columnTokenMap;
+    }
+
+    /**
+     * 按表的 KeyPredicatePlanner 把主键拆成若干个 where 条件。
+     */
+    protected List<KeyPredicatePlanner.KeyPredicate> planKeyPredicate(LongArrayList keyValueList) {
+        long maxAllowedPacket = cdcConnection.getCdcDataSource().getMaxAllowedPacket(cdcConnection.getDelegate());
+        return tableConfig.getKeyPredicatePlanner().plan(keyValueList, maxAllowedPacket);
+    }
+
+    /**
+     * @return 表没有开启 before-image 时返回 null
+     */
+    protected BeforeImage newBeforeImage() {
+        return tableConfig.isBeforeImage() ? new BeforeImage() : null;
+    }
+
+    /**
+     * 用 sqlTemplate 的 where 条件和第 index 条SQL的参数进行加锁读。加锁读的SQL在连接上只 prepare 一次。
+     *
+     * @return 第 index 条SQL执行时锁住的key
+     */
+    protected LongArrayList lockKey(ExecutableSqlList executableSqlList, int index) throws SQLException {
+        return lockKey(executableSqlList, index, null);
+    }
+
     /**
-     * @return executableSql 执行时锁住的key
+     * @param beforeImage 不为 null 时，加锁读同时查出变更前的行放入 beforeImage
      */
-    protected List<Long> lockKey(Statement statement, String executableSql) throws SQLException {
-        List<Long> keyValueList = new ArrayList<>();
-        ResultSet resultSet = statement.executeQuery(assembleSelectKeyValueSql(executableSql));
-        while (resultSet.next()) {
-            keyValueList.add(resultSet.getLong(keyColumn));
+    protected LongArrayList lockKey(ExecutableSqlList executableSqlList, int index, BeforeImage beforeImage) throws SQLException {
+        String lockingReadSql = beforeImage == null ? sqlTemplate.getLockingReadSql() : getBeforeImageLockingReadSql();
+        PreparedStatement lockPs = cdcConnection.prepareCdcStatement(lockingReadSql);
+        Object[] parameters = executableSqlList.getParameters(index);
+        int offset = sqlTemplate.getWhereParameterOffset();
+        for (int i = 0; i < sqlTemplate.getWhereParameterCount(); i++) {
+            lockPs.setObject(i + 1, parameters[offset + i]);
+        }
+        LongArrayList keyValueList = new LongArrayList();
+        try (ResultSet resultSet = lockPs.executeQuery()) {
+            while (resultSet.next()) {
+                long keyValue = resultSet.getLong(1);
+                keyValueList.add(keyValue);
+                if (beforeImage != null) {
+                    readBeforeImage(resultSet, 2, keyValue, beforeImage);
+                }
+            }
         }
-        resultSet.close();
         return keyValueList;
     }
 
-    private String assembleSelectKeyValueSql(String executableSql) {
-        return "select "
-                + keyColumn + " "
-                + "from "
-                + tableName + " "
-                + SqlUtils.extractWhereConditionFromUpdateOrDeleteSql(executableSql, true) + " "
-                + "for update";
+    protected List<LongArrayList> lockKeys(ExecutableSqlList executableSqlList) throws SQLException {
+        return lockKeys(executableSqlList, null);
     }
 
-    protected void executeCdcSql(String cdcMode, List<String> cdcSqlList) throws SQLException {
-        if (cdcSqlList.isEmpty()) {
-            return;
+    /**
+     * batch 模式下，每 LOCK_KEY_BATCH 条SQL的加锁读合并为一条SQL：
+     * <pre>
+     * (select key, 0 from table where ... for update) union all (select key, 1 from table where ... for update) ...
+     * </pre>
+     * 第二列标记了主键来自第几条SQL，所以合并之后每条SQL锁住的key仍然能和SQL一一对应。
+     *
+     * @param beforeImage 不为 null 时，加锁读同时查出变更前的行放入 beforeImage
+     * @return 第 i 个元素是第 i 条SQL执行时锁住的key
+     */
+    protected List<LongArrayList> lockKeys(ExecutableSqlList executableSqlList, BeforeImage beforeImage) throws SQLException {
+        int size = executableSqlList.size();
+        List<LongArrayList> keyValueListList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keyValueListList.add(new LongArrayList(4));
         }
-
-        List<String> sqlList = new ArrayList<>();
-        String sqlPreSegment = "insert into " + tableName + "_cdc_" + cdcMode + "(executable_sql) values";
-        List<List<String>> listList = BEListUtils.splitList(cdcSqlList, EXECUTE_INSERT_SQL_BATCH);
-        String aloneSql = null;
-        for (List<String> item : listList) {
-            StringBuilder sql = new StringBuilder(sqlPreSegment);
-            for (String string : item) {
-                sql.append("(");
-                sql.append(sqlHelper.toStorableSql(string));
-                sql.append("),");
+        int offset = sqlTemplate.getWhereParameterOffset();
+        int whereParameterCount = sqlTemplate.getWhereParameterCount();
+        for (int from = 0; from < size; from += LOCK_KEY_BATCH) {
+            int to = Math.min(from + LOCK_KEY_BATCH, size);
+            if (to - from == 1) {
+                keyValueListList.set(from, lockKey(executableSqlList, from, beforeImage));
+                continue;
             }
-            if (item.size() == EXECUTE_INSERT_SQL_BATCH) {
-                sqlList.add(sql.substring(0, sql.length() - 1));
-            } else {
-                aloneSql = sql.substring(0, sql.length() - 1);
+            String batchLockingReadSql = beforeImage == null
+                    ? getBatchLockingReadSql(batchLockingReadSqlMap, sqlTemplate.getLockingReadSql(), to - from)
+                    : getBatchLockingReadSql(batchBeforeImageLockingReadSqlMap, getBeforeImageLockingReadSql(), to - from);
+            PreparedStatement lockPs = cdcConnection.prepareCdcStatement(batchLockingReadSql);
+            int parameterIndex = 1;
+            for (int i = from; i < to; i++) {
+                Object[] parameters = executableSqlList.getParameters(i);
+                for (int j = 0; j < whereParameterCount; j++) {
+                    lockPs.setObject(parameterIndex++, parameters[offset + j]);
+                }
+            }
+            try (ResultSet resultSet = lockPs.executeQuery()) {
+                while (resultSet.next()) {
+                    long keyValue = resultSet.getLong(1);
+                    keyValueListList.get(from + resultSet.getInt(2)).add(keyValue);
+                    if (beforeImage != null) {
+                        readBeforeImage(resultSet, 3, keyValue, beforeImage);
+                    }
+                }
             }
         }
+        return keyValueListList;
+    }
+
+    private String getBatchLockingReadSql(Map<Integer, String> cache, String lockingReadSql, int count) {
+        return cache.computeIfAbsent(count, c -> {
+            // select key from ... -> select key, i from ...
+            String prefix = "select " + keyColumn;
+            String suffix = lockingReadSql.substring(prefix.length());
+            StringBuilder sql = new StringBuilder();
+            for (int i = 0; i < c; i++) {
+                if (i != 0) {
+                    sql.append(" union all ");
+                }
+                sql.append("(").append(prefix).append(", ").append(i).append(suffix).append(")");
+            }
+            return sql.toString();
+        });
+    }
 
-        Connection connection = cdcConnection.getDelegate();
-        try (Statement statement = connection.createStatement()) {
-            for (int i = 0; i < sqlList.size(); i++) {
-                statement.addBatch(sqlList.get(i));
-                if (i != 0 && i % EXECUTE_INSERT_STATEMENT_BATCH == 0) {
-                    statement.executeBatch();
+    /**
+     * select key from ... -> select key, c1, c2 ... from ... 或者 select key, table.* from ...。
+     * 配置了 before-image 的字段时，update 语句的依赖字段也一起查出来。
+     */
+    private String getBeforeImageLockingReadSql() {
+        List<String> columnList = tableConfig.getBeforeImageColumnList();
+        if (beforeImageLockingReadSql != null && beforeImageColumnList == columnList) {
+            return beforeImageLockingReadSql;
+        }
+        String columns;
+        if (columnList == null) {
+            columns = tableName + ".*";
+        } else {
+            List<String> queryColumnList = new ArrayList<>(columnList);
+            for (String column : sqlTemplate.getDependentColumnList()) {
+                if (!queryColumnList.contains(column)) {
+                    queryColumnList.add(column);
                 }
             }
-            statement.executeBatch();
+            columns = String.join(", ", queryColumnList);
         }
-        if (aloneSql != null) {
-            try (Statement statement = connection.createStatement()) {
-                statement.executeUpdate(aloneSql);
+        String prefix = "select " + keyColumn;
+        String lockingReadSql = sqlTemplate.getLockingReadSql();
+        batchBeforeImageLockingReadSqlMap.clear();
+        beforeImageColumnList = columnList;
+        beforeImageLockingReadSql = prefix + ", " + columns + lockingReadSql.substring(prefix.length());
+        return beforeImageLockingReadSql;
+    }
+
+    /**
+     * 读取结果集里从 columnOffset 开始的字段。字段名只在第一次读取时从结果集的元数据里取，之后的行和结果集字段相同。
+     */
+    private void readBeforeImage(ResultSet resultSet, int columnOffset, long keyValue, BeforeImage beforeImage) throws SQLException {
+        if (beforeImage.getColumnList() == null) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int columnCount = metaData.getColumnCount() - columnOffset + 1;
+            List<String> columnList = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                columnList.add(metaData.getColumnLabel(columnOffset + i));
             }
+            beforeImage.setColumnList(columnList);
+        }
+        int columnCount = beforeImage.getColumnList().size();
+        Token[] tokens = new Token[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            tokens[i] = dataFormatterRegistry.parse(resultSet.getObject(columnOffset + i));
+        }
+        beforeImage.put(keyValue, tokens);
+    }
+
+    protected void executeCdcSql(String cdcMode, List<String> cdcSqlList) throws SQLException {
+        cdcConnection.appendCdcRecords(tableName, CdcRecordList.ofSql(tableName, cdcMode, cdcSqlList));
+    }
+
+    protected void executeCdcRowImages(List<RowImage> rowImageList) throws SQLException {
+        if (rowImageList.isEmpty()) {
+            return;
+        }
+        RowImageCodec rowImageCodec = RowImageCodec.getInstance();
+        List<byte[]> encodedList = new ArrayList<>(rowImageList.size());
+        for (RowImage rowImage : rowImageList) {
+            encodedList.add(rowImageCodec.encode(rowImage));
+        }
+        cdcConnection.appendCdcRecords(tableName, CdcRecordList.ofRowImages(tableName, TableConfig.CM_ROW, encodedList));
+    }
+
+    protected void executeCdcDiffs(List<RowDiff> rowDiffList) throws SQLException {
+        if (rowDiffList.isEmpty()) {
+            return;
+        }
+        RowImageCodec rowImageCodec = RowImageCodec.getInstance();
+        List<byte[]> encodedList = new ArrayList<>(rowDiffList.size());
+        for (RowDiff rowDiff : rowDiffList) {
+            encodedList.add(rowImageCodec.encodeDiff(rowDiff));
         }
+        cdcConnection.appendCdcRecords(tableName, CdcRecordList.ofRowImages(tableName, TableConfig.CM_DIFF, encodedList));
+    }
+
+    /**
+     * 一个 RowImage 里的主键个数和一个 in 条件里的主键个数一致。
+     */
+    protected List<LongArrayList> splitKeyValueList(LongArrayList keyValueList) {
+        return keyValueList.split(tableConfig.getKeyPredicatePlanner().getMaxInSize());
     }
 
     protected boolean checkTableMode(String mode) {
@@ -190,8 +351,4 @@ public abstract class AbstractPsDelegate implements PsDelegate {
         return cdcModeList.contains(mode);
     }
 
-    protected String longListToString(List<Long> longList) {
-        return longList.stream().map(String::valueOf).collect(Collectors.joining(","));
-    }
-
 }
@@ -1,10 +1,18 @@
 package cn.addenda.ahacdc;
 
+import cn.addenda.ahacdc.ringbuffer.CdcEventRingBuffer;
+import cn.addenda.ahacdc.sink.CdcSink;
+import cn.addenda.ahacdc.sink.CdcSinkFactory;
+import cn.addenda.ahacdc.sink.CdcSinkStats;
 import cn.addenda.ro.util.SqlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
@@ -28,10 +36,40 @@ public class CdcConnection implements Connection {
 
     private boolean txActive = false;
 
+    /**
+     * CDC 内部使用的 PreparedStatement，连接关闭之前一直复用。
+     */
+    private final Map<String, PreparedStatement> cdcStatementMap = new HashMap<>();
+
+    private final CdcWriter cdcWriter = new CdcWriter(this);
+
+    /**
+     * 连接上创建过的 sink，跨事务复用。key 是创建 sink 的 factory。
+     */
+    private final Map<CdcSinkFactory, CdcSink> cdcSinkMap = new HashMap<>();
+
+    /**
+     * 当前事务里 begin 过的 sink，按 begin 的顺序排列。
+     */
+    private final List<ActiveSink> activeSinkList = new ArrayList<>();
+
+    /**
+     * 当前事务里有效的保存点，按设置顺序排列。
+     */
+    private final List<Savepoint> savepointList = new ArrayList<>();
+
+    /**
+     * 不为 null 时，事务里 row 模式的 cdc 记录同时放入 publishBuffer，提交成功之后发布。
+     */
+    private final CdcEventRingBuffer cdcEventRingBuffer;
+
+    private final CdcRecordBuffer publishBuffer = new CdcRecordBuffer();
+
     public CdcConnection(Connection delegate, CdcDataSource cdcDataSource) throws SQLException {
         this.delegate = delegate;
         this.cdcDataSource = cdcDataSource;
         this.autoCommit = getAutoCommit();
+        this.cdcEventRingBuffer = cdcDataSource.getCdcEventRingBuffer();
     }
 
     @Override
@@ -46,19 +84,148 @@ public class CdcConnection implements Connection {
     @Override
     public void commit() throws SQLException {
         this.txActive = false;
-        delegate.commit();
+        if (activeSinkList.isEmpty()) {
+            delegate.commit();
+            endTransaction();
+            return;
+        }
+        try {
+            for (ActiveSink activeSink : activeSinkList) {
+                long start = System.nanoTime();
+                try {
+                    activeSink.cdcSink.beforeCommit();
+                } catch (SQLException | RuntimeException e) {
+                    // 业务事务不提交，调用方需要回滚
+                    rollbackSinks();
+                    throw e;
+                }
+                activeSink.commitNanos += System.nanoTime() - start;
+            }
+            try {
+                delegate.commit();
+            } catch (SQLException | RuntimeException e) {
+                // 业务事务没有提交，beforeCommit 已经执行过的 sink 也需要回滚
+                try {
+                    rollbackSinks();
+                } catch (SQLException rollbackException) {
+                    e.addSuppressed(rollbackException);
+                }
+                throw e;
+            }
+            publishCommitted();
+            Exception exception = null;
+            for (ActiveSink activeSink : activeSinkList) {
+                long start = System.nanoTime();
+                try {
+                    activeSink.cdcSink.afterCommit();
+                } catch (SQLException | RuntimeException e) {
+                    if (exception == null) {
+                        exception = e;
+                    } else {
+                        exception.addSuppressed(e);
+                    }
+                }
+                activeSink.commitNanos += System.nanoTime() - start;
+                for (CdcSinkStats cdcSinkStats : activeSink.cdcSinkStatsList) {
+                    cdcSinkStats.recordCommit(activeSink.commitNanos);
+                }
+            }
+            if (exception instanceof SQLException) {
+                throw (SQLException) exception;
+            } else if (exception != null) {
+                throw (RuntimeException) exception;
+            }
+        } finally {
+            endTransaction();
+        }
     }
 
     @Override
     public void rollback() throws SQLException {
         this.txActive = false;
-        delegate.rollback();
+        try {
+            rollbackSinks();
+        } finally {
+            delegate.rollback();
+        }
     }
 
     @Override
     public void close() throws SQLException {
         this.txActive = false;
-        delegate.close();
+        try {
+            rollbackSinks();
+        } catch (SQLException | RuntimeException e) {
+            logger.error("Cannot rollback cdc sink when connection closing. ", e);
+        }
+        try {
+            closeCdcStatements();
+        } finally {
+            delegate.close();
+        }
+    }
+
+    /**
+     * 表在事务里第一次写入 cdc 记录时 begin 对应的 sink。
+     */
+    private ActiveSink getActiveSink(TableConfig tableConfig) throws SQLException {
+        CdcSinkFactory cdcSinkFactory = cdcDataSource.getCdcSinkFactory(tableConfig);
+        ActiveSink target = null;
+        for (ActiveSink activeSink : activeSinkList) {
+            if (activeSink.cdcSinkFactory == cdcSinkFactory) {
+                target = activeSink;
+                break;
+            }
+        }
+        if (target == null) {
+            CdcSink cdcSink = cdcSinkMap.get(cdcSinkFactory);
+            if (cdcSink == null) {
+                cdcSink = cdcSinkFactory.create(this, tableConfig);
+                cdcSinkMap.put(cdcSinkFactory, cdcSink);
+            }
+            cdcSink.begin();
+            target = new ActiveSink(cdcSinkFactory, cdcSink, savepointList.size());
+            activeSinkList.add(target);
+        }
+        if (!target.cdcSinkStatsList.contains(tableConfig.getCdcSinkStats())) {
+            target.cdcSinkStatsList.add(tableConfig.getCdcSinkStats());
+        }
+        return target;
+    }
+
+    private void rollbackSinks() throws SQLException {
+        try {
+            SQLException exception = null;
+            for (ActiveSink activeSink : activeSinkList) {
+                try {
+                    activeSink.cdcSink.rollback();
+                } catch (SQLException e) {
+                    if (exception == null) {
+                        exception = e;
+                    } else {
+                        exception.addSuppressed(e);
+                    }
+                }
+                activeSink.cdcSinkStatsList.forEach(CdcSinkStats::recordRollback);
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        } finally {
+            endTransaction();
+        }
+    }
+
+    private void publishCommitted() {
+        if (cdcEventRingBuffer != null && !publishBuffer.isEmpty()) {
+            cdcEventRingBuffer.publish(publishBuffer.getCdcRecordList());
+        }
+    }
+
+    private void endTransaction() {
+        activeSinkList.clear();
+        savepointList.clear();
+        publishBuffer.clear();
     }
 
     @Override
@@ -116,16 +283,22 @@ public class CdcConnection implements Connection {
     }
 
     private PreparedStatement wrapPrepareStatementIsNecessary(String sql, PreparedStatement delegate) {
-        // 对于DML语句，如果表名被注册为需要进行CDC的表，使用CdcPreparedStatement
-        if (!SqlUtils.isSelectSql(sql)) {
+        // 已经编译过的SQL一定是需要进行CDC的DML，不需要再解析
+        SqlTemplate sqlTemplate = cdcDataSource.getCachedSqlTemplate(sql);
+        if (sqlTemplate == null) {
+            // 对于DML语句，如果表名被注册为需要进行CDC的表，使用CdcPreparedStatement
+            if (SqlUtils.isSelectSql(sql)) {
+                return delegate;
+            }
             String tableName = SqlUtils.extractTableNameFromDmlSql(sql);
-            if (cdcDataSource.tableContains(tableName)) {
-                assertAutoCommit();
-                txActive = true;
-                return new CdcPreparedStatement(tableName, sql, delegate, this);
+            if (!cdcDataSource.tableContains(tableName)) {
+                return delegate;
             }
+            sqlTemplate = cdcDataSource.getSqlTemplate(tableName, sql);
         }
-        return delegate;
+        assertAutoCommit();
+        txActive = true;
+        return new CdcPreparedStatement(sqlTemplate, delegate, this);
     }
 
     private void assertAutoCommit() {
@@ -138,6 +311,74 @@ public class CdcConnection implements Connection {
         return delegate;
     }
 
+    /**
+     * 获取 CDC 内部使用的 PreparedStatement。同一个连接上相同的SQL只 prepare 一次，
+     * 开启 useServerPrepStmts 时服务端也只需要解析一次。
+     */
+    public PreparedStatement prepareCdcStatement(String sql) throws SQLException {
+        PreparedStatement ps = cdcStatementMap.get(sql);
+        if (ps == null || ps.isClosed()) {
+            ps = delegate.prepareStatement(sql);
+            cdcStatementMap.put(sql, ps);
+        }
+        return ps;
+    }
+
+    private void closeCdcStatements() throws SQLException {
+        SQLException exception = null;
+        for (PreparedStatement ps : cdcStatementMap.values()) {
+            try {
+                ps.close();
+            } catch (SQLException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        cdcStatementMap.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * 把 cdc 记录交给表对应的 sink。
+     */
+    public void appendCdcRecords(String tableName, List<CdcRecord> cdcRecordList) throws SQLException {
+        if (cdcRecordList.isEmpty()) {
+            return;
+        }
+        TableConfig tableConfig = cdcDataSource.getTableConfig(tableName);
+        ActiveSink activeSink = getActiveSink(tableConfig);
+        if (!activeSink.cdcSink.rewritesCdcRecords()) {
+            publish(cdcRecordList);
+        }
+        long start = System.nanoTime();
+        activeSink.cdcSink.append(cdcRecordList);
+        tableConfig.getCdcSinkStats().recordAppend(cdcRecordList.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * 记录中 row 模式的部分在事务提交成功之后发布到 ring buffer。
+     */
+    public void publish(List<CdcRecord> cdcRecordList) {
+        if (cdcEventRingBuffer == null) {
+            return;
+        }
+        for (int i = 0; i < cdcRecordList.size(); i++) {
+            CdcRecord cdcRecord = cdcRecordList.get(i);
+            if (TableConfig.CM_ROW.equals(cdcRecord.getCdcMode())) {
+                publishBuffer.add(cdcRecord);
+            }
+        }
+    }
+
+    public CdcWriter getCdcWriter() {
+        return cdcWriter;
+    }
+
     public CdcDataSource getCdcDataSource() {
         return cdcDataSource;
     }
@@ -172,22 +413,66 @@ public class CdcConnection implements Connection {
 
     @Override
     public Savepoint setSavepoint() throws SQLException {
-        return delegate.setSavepoint();
+        Savepoint savepoint = delegate.setSavepoint();
+        markSavepoint(savepoint);
+        return savepoint;
     }
 
     @Override
     public Savepoint setSavepoint(String name) throws SQLException {
-        return delegate.setSavepoint(name);
+        Savepoint savepoint = delegate.setSavepoint(name);
+        markSavepoint(savepoint);
+        return savepoint;
+    }
+
+    private void markSavepoint(Savepoint savepoint) throws SQLException {
+        savepointList.add(savepoint);
+        publishBuffer.mark(savepoint);
+        for (ActiveSink activeSink : activeSinkList) {
+            activeSink.cdcSink.setSavepoint(savepoint);
+        }
     }
 
     @Override
     public void rollback(Savepoint savepoint) throws SQLException {
         delegate.rollback(savepoint);
+        int index = savepointList.indexOf(savepoint);
+        if (index < 0) {
+            return;
+        }
+        Iterator<ActiveSink> iterator = activeSinkList.iterator();
+        while (iterator.hasNext()) {
+            ActiveSink activeSink = iterator.next();
+            // 保存点之后才 begin 的 sink，所有记录都在保存点之后
+            if (activeSink.savepointCount > index) {
+                activeSink.cdcSink.rollback();
+                iterator.remove();
+            } else {
+                activeSink.cdcSink.rollback(savepoint);
+            }
+        }
+        savepointList.subList(index + 1, savepointList.size()).clear();
+        publishBuffer.rollbackTo(savepoint);
     }
 
     @Override
     public void releaseSavepoint(Savepoint savepoint) throws SQLException {
         delegate.releaseSavepoint(savepoint);
+        int index = savepointList.indexOf(savepoint);
+        if (index < 0) {
+            return;
+        }
+        for (ActiveSink activeSink : activeSinkList) {
+            if (activeSink.savepointCount <= index) {
+                activeSink.cdcSink.releaseSavepoint(savepoint);
+            } else if (activeSink.savepointCount < savepointList.size()) {
+                // sink 不知道这个保存点，它知道的保存点都在这个保存点之后，一并释放
+                activeSink.cdcSink.releaseSavepoint(savepointList.get(activeSink.savepointCount));
+            }
+            activeSink.savepointCount = Math.min(activeSink.savepointCount, index);
+        }
+        savepointList.subList(index, savepointList.size()).clear();
+        publishBuffer.release(savepoint);
     }
 
     // -------------------
@@ -367,4 +652,30 @@ public class CdcConnection implements Connection {
         return iface.isInstance(this);
     }
 
+    private static class ActiveSink {
+
+        private final CdcSinkFactory cdcSinkFactory;
+
+        private final CdcSink cdcSink;
+
+        /**
+         * begin 时已经设置的保存点个数。sink 只知道 savepointList 里下标不小于 savepointCount 的保存点，
+         * 回滚到下标小于 savepointCount 的保存点时调用 sink 的 rollback()。
+         */
+        private int savepointCount;
+
+        /**
+         * 事务里使用这个 sink 的表的统计
+         */
+        private final List<CdcSinkStats> cdcSinkStatsList = new ArrayList<>(2);
+
+        private long commitNanos;
+
+        ActiveSink(CdcSinkFactory cdcSinkFactory, CdcSink cdcSink, int savepointCount) {
+            this.cdcSinkFactory = cdcSinkFactory;
+            this.cdcSink = cdcSink;
+            this.savepointCount = savepointCount;
+        }
+    }
+
 }
@@ -1,14 +1,27 @@
 package cn.addenda.ahacdc;
 
 import cn.addenda.ahacdc.format.DataFormatterRegistry;
+import cn.addenda.ahacdc.ringbuffer.CdcEventHandler;
+import cn.addenda.ahacdc.ringbuffer.CdcEventProcessor;
+import cn.addenda.ahacdc.ringbuffer.CdcEventRingBuffer;
+import cn.addenda.ahacdc.ringbuffer.WaitStrategy;
+import cn.addenda.ahacdc.segment.SegmentLog;
+import cn.addenda.ahacdc.sink.BatchingCdcSink;
+import cn.addenda.ahacdc.sink.CdcSinkFactory;
+import cn.addenda.ahacdc.sink.CoalescingCdcSink;
+import cn.addenda.ahacdc.sink.JdbcTableCdcSink;
+import cn.addenda.ahacdc.sink.SegmentLogCdcSink;
+import cn.addenda.ahacdc.sql.SqlHelper;
 import cn.addenda.ec.function.calculator.FunctionCalculator;
 
 import javax.sql.DataSource;
 import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -26,6 +39,42 @@ public class CdcDataSource implements DataSource {
 
     private FunctionCalculator functionCalculator;
 
+    private volatile SqlTemplateCache sqlTemplateCache = new SqlTemplateCache();
+
+    /**
+     * 数据库的 max_allowed_packet，第一次使用时查询。0 表示还没有查询，-1 表示查询不到。
+     */
+    private volatile long maxAllowedPacket;
+
+    private volatile int cdcWriterMaxBatchCount = CdcWriter.DEFAULT_MAX_BATCH_COUNT;
+
+    private volatile int cdcWriterMaxBatchBytes = CdcWriter.DEFAULT_MAX_BATCH_BYTES;
+
+    /**
+     * 为 true 时 cdc 记录在 commit 时才写入，只对之后开始的事务生效。
+     */
+    private volatile boolean bufferUntilCommit = false;
+
+    /**
+     * 为 true 时 cdc 记录在 commit 时才写入，并且 row 模式的 RowImage 按主键合并为净变更，只对之后开始的事务生效。
+     */
+    private volatile boolean coalesceUntilCommit = false;
+
+    /**
+     * 不为 null 时 cdc 记录不写入数据库，事务提交成功之后写入本地日志。只对之后开始的事务生效。
+     */
+    private volatile SegmentLog segmentLog;
+
+    /**
+     * 表没有配置 sink 时使用，由 bufferUntilCommit 和 segmentLog 决定。
+     */
+    private volatile CdcSinkFactory defaultCdcSinkFactory = JdbcTableCdcSink.FACTORY;
+
+    /**
+     * 不为 null 时，事务提交成功之后把 row 模式的 cdc 记录发布到环形缓冲区。只对之后创建的连接生效。
+     */
+    private volatile CdcEventRingBuffer cdcEventRingBuffer;
+
     public CdcDataSource(DataSource delegate, DataFormatterRegistry dataFormatterRegistry, FunctionCalculator functionCalculator) {
         this.delegate = delegate;
         this.dataFormatterRegistry = dataFormatterRegistry;
@@ -131,6 +180,7 @@ public class CdcDataSource implements DataSource {
             tableMetaData.put(tableName.toString(),
                 new TableConfig(tableName.toString(), keyColumn.toString(), cdcModeList));
         }
+        sqlTemplateCache.clear();
     }
 
     public boolean tableContains(String tableName) {
@@ -141,8 +191,150 @@ public class CdcDataSource implements DataSource {
         return tableMetaData.get(tableName);
     }
 
+    /**
+     * 从缓存中获取 sql 的编译结果，缓存中不存在时编译并放入缓存。
+     */
+    public SqlTemplate getSqlTemplate(String tableName, String parameterizedSql) {
+        return sqlTemplateCache.get(parameterizedSql,
+            sql -> SqlTemplate.compile(getTableConfig(tableName), sql, new SqlHelper(functionCalculator), dataFormatterRegistry));
+    }
+
+    /**
+     * @return sql 已经被编译过时返回编译结果，否则返回null。
+     */
+    public SqlTemplate getCachedSqlTemplate(String parameterizedSql) {
+        return sqlTemplateCache.getIfPresent(parameterizedSql);
+    }
+
+    public SqlTemplateCache getSqlTemplateCache() {
+        return sqlTemplateCache;
+    }
+
+    public void setSqlTemplateCacheSize(int maximumSize) {
+        this.sqlTemplateCache = new SqlTemplateCache(maximumSize);
+    }
+
+    /**
+     * @return 数据库的 max_allowed_packet，查询不到时返回 -1。
+     */
+    public long getMaxAllowedPacket(Connection connection) {
+        long packet = maxAllowedPacket;
+        if (packet != 0) {
+            return packet;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select @@max_allowed_packet")) {
+            packet = resultSet.next() ? resultSet.getLong(1) : -1;
+        } catch (SQLException e) {
+            // 非 mysql 数据库没有这个变量，只按 maxInSize 拆分
+            packet = -1;
+        }
+        if (packet == 0) {
+            packet = -1;
+        }
+        maxAllowedPacket = packet;
+        return packet;
+    }
+
+    public void setMaxAllowedPacket(long maxAllowedPacket) {
+        this.maxAllowedPacket = maxAllowedPacket;
+    }
+
+    public int getCdcWriterMaxBatchCount() {
+        return cdcWriterMaxBatchCount;
+    }
+
+    public void setCdcWriterMaxBatchCount(int cdcWriterMaxBatchCount) {
+        if (cdcWriterMaxBatchCount <= 0) {
+            throw new CdcException("cdcWriterMaxBatchCount must be positive. ");
+        }
+        this.cdcWriterMaxBatchCount = cdcWriterMaxBatchCount;
+    }
+
+    public int getCdcWriterMaxBatchBytes() {
+        return cdcWriterMaxBatchBytes;
+    }
+
+    public void setCdcWriterMaxBatchBytes(int cdcWriterMaxBatchBytes) {
+        if (cdcWriterMaxBatchBytes <= 0) {
+            throw new CdcException("cdcWriterMaxBatchBytes must be positive. ");
+        }
+        this.cdcWriterMaxBatchBytes = cdcWriterMaxBatchBytes;
+    }
+
+    public boolean isBufferUntilCommit() {
+        return bufferUntilCommit;
+    }
+
+    public void setBufferUntilCommit(boolean bufferUntilCommit) {
+        this.bufferUntilCommit = bufferUntilCommit;
+        refreshDefaultCdcSinkFactory();
+    }
+
+    public boolean isCoalesceUntilCommit() {
+        return coalesceUntilCommit;
+    }
+
+    public void setCoalesceUntilCommit(boolean coalesceUntilCommit) {
+        this.coalesceUntilCommit = coalesceUntilCommit;
+        refreshDefaultCdcSinkFactory();
+    }
+
+    public SegmentLog getSegmentLog() {
+        return segmentLog;
+    }
+
+    public void setSegmentLog(SegmentLog segmentLog) {
+        this.segmentLog = segmentLog;
+        refreshDefaultCdcSinkFactory();
+    }
+
+    /**
+     * 默认 sink 的 factory 对象在配置不变时保持不变，这样所有表在一个连接上共用一个 sink，
+     * 比如一个事务的 cdc 记录作为一个事务写入 segmentLog。
+     */
+    private synchronized void refreshDefaultCdcSinkFactory() {
+        SegmentLog log = segmentLog;
+        if (coalesceUntilCommit) {
+            defaultCdcSinkFactory = CoalescingCdcSink.factory(log != null ? SegmentLogCdcSink.factory(log) : JdbcTableCdcSink.FACTORY);
+        } else if (log != null) {
+            defaultCdcSinkFactory = SegmentLogCdcSink.factory(log);
+        } else if (bufferUntilCommit) {
+            defaultCdcSinkFactory = BatchingCdcSink.factory(JdbcTableCdcSink.FACTORY);
+        } else {
+            defaultCdcSinkFactory = JdbcTableCdcSink.FACTORY;
+        }
+    }
+
+    public CdcEventRingBuffer getCdcEventRingBuffer() {
+        return cdcEventRingBuffer;
+    }
+
+    public void setCdcEventRingBuffer(CdcEventRingBuffer cdcEventRingBuffer) {
+        this.cdcEventRingBuffer = cdcEventRingBuffer;
+    }
+
+    /**
+     * 订阅之后提交的事务的 row 模式 cdc 记录。不再订阅时调用 CdcEventProcessor#halt()。
+     */
+    public CdcEventProcessor subscribe(CdcEventHandler cdcEventHandler, WaitStrategy waitStrategy, int maxBatchSize) {
+        CdcEventRingBuffer ringBuffer = cdcEventRingBuffer;
+        if (ringBuffer == null) {
+            throw new CdcException("CdcEventRingBuffer is not set. ");
+        }
+        CdcEventProcessor cdcEventProcessor = new CdcEventProcessor(ringBuffer, cdcEventHandler, waitStrategy, maxBatchSize);
+        cdcEventProcessor.start();
+        return cdcEventProcessor;
+    }
+
+    public CdcSinkFactory getCdcSinkFactory(TableConfig tableConfig) {
+        CdcSinkFactory cdcSinkFactory = tableConfig.getCdcSinkFactory();
+        return cdcSinkFactory != null ? cdcSinkFactory : defaultCdcSinkFactory;
+    }
+
     public void setDataFormatterRegistry(DataFormatterRegistry dataFormatterRegistry) {
         this.dataFormatterRegistry = dataFormatterRegistry;
+        sqlTemplateCache.clear();
     }
 
     public DataFormatterRegistry getDataFormatterRegistry() {
@@ -155,5 +347,6 @@ public class CdcDataSource implements DataSource {
 
     public void setFunctionCalculator(FunctionCalculator functionCalculator) {
         this.functionCalculator = functionCalculator;
+        sqlTemplateCache.clear();
     }
 }
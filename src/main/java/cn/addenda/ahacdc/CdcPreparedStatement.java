@@ -1,20 +1,13 @@
 package cn.addenda.ahacdc;
 
 import cn.addenda.ahacdc.format.DataFormatterRegistry;
-import cn.addenda.businesseasy.util.BEArrayUtils;
-import cn.addenda.ro.grammar.lexical.scan.DefaultScanner;
-import cn.addenda.ro.grammar.lexical.scan.TokenSequence;
-import cn.addenda.ro.grammar.lexical.token.Token;
-import cn.addenda.ro.grammar.lexical.token.TokenType;
 
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.List;
 
 /**
  * @Author ISJINHAO
@@ -22,65 +15,65 @@ import java.util.List;
  */
 public class CdcPreparedStatement extends AbstractCdcStatement<PreparedStatement> implements PreparedStatement {
 
-    private final TokenSequence tokenSequence;
+    private final SqlTemplate sqlTemplate;
 
-    private List<Object> parameterList;
+    private Object[] parameters;
 
-    private final List<String> executableSqlList = new ArrayList<>();
+    private final ExecutableSqlList executableSqlList;
 
-    private int parameterCount;
+    private final int parameterCount;
 
     private final PsDelegate psDelegate;
 
+    private final DataFormatterRegistry dataFormatterRegistry;
+
     /**
      * CdcPreparedStatement能被创建的前提:
      * 1、sql是dml；
      * 2、tableName是被注册为拦截的表。
      *
-     * @param tableName
-     * @param parameterizedSql
+     * @param sqlTemplate
      * @param delegate
      * @param connection
      */
-    public CdcPreparedStatement(String tableName, String parameterizedSql, PreparedStatement delegate, CdcConnection connection) {
+    public CdcPreparedStatement(SqlTemplate sqlTemplate, PreparedStatement delegate, CdcConnection connection) {
         super(delegate, connection);
-        this.tokenSequence = new DefaultScanner(parameterizedSql).scanTokens();
-        List<Token> source = this.tokenSequence.getSource();
-        for (Token token : source) {
-            if (TokenType.PARAMETER.equals(token.getType())) {
-                this.parameterCount++;
-            }
-        }
-        parameterList = newParameterList();
+        this.sqlTemplate = sqlTemplate;
+        this.parameterCount = sqlTemplate.getParameterCount();
+        this.dataFormatterRegistry = connection.getCdcDataSource().getDataFormatterRegistry();
+        this.executableSqlList = new ExecutableSqlList(sqlTemplate, dataFormatterRegistry);
+        parameters = newParameters();
         psDelegate = new RoutePsDelegate(connection, delegate,
-                connection.getCdcDataSource().getTableConfig(tableName), parameterizedSql);
+                connection.getCdcDataSource().getTableConfig(sqlTemplate.getTableName()), sqlTemplate);
     }
 
     @Override
     public void close() throws SQLException {
         delegate.close();
-        parameterList.clear();
+        parameters = newParameters();
+        executableSqlList.clear();
     }
 
     @Override
     public void cancel() throws SQLException {
         delegate.cancel();
-        parameterList.clear();
+        parameters = newParameters();
+        executableSqlList.clear();
     }
 
     @Override
     public boolean execute() throws SQLException {
-        return psDelegate.execute(BEArrayUtils.asArrayList(getExecutableSql()), delegate::execute);
+        return psDelegate.execute(ExecutableSqlList.single(sqlTemplate, dataFormatterRegistry, parameters), delegate::execute);
     }
 
     @Override
     public int executeUpdate() throws SQLException {
-        return psDelegate.execute(BEArrayUtils.asArrayList(getExecutableSql()), delegate::executeUpdate);
+        return psDelegate.execute(ExecutableSqlList.single(sqlTemplate, dataFormatterRegistry, parameters), delegate::executeUpdate);
     }
 
     @Override
     public long executeLargeUpdate() throws SQLException {
-        return psDelegate.execute(BEArrayUtils.asArrayList(getExecutableSql()), delegate::executeLargeUpdate);
+        return psDelegate.execute(ExecutableSqlList.single(sqlTemplate, dataFormatterRegistry, parameters), delegate::executeLargeUpdate);
     }
 
     // ---------------------
@@ -89,33 +82,39 @@ public class CdcPreparedStatement extends AbstractCdcStatement<PreparedStatement
 
     @Override
     public void addBatch() throws SQLException {
-        executableSqlList.add(getExecutableSql());
+        // 只保存参数快照，需要时再渲染SQL
+        executableSqlList.addParameters(parameters.clone());
         delegate.addBatch();
     }
 
     @Override
     public void clearBatch() throws SQLException {
-        parameterList = newParameterList();
+        parameters = newParameters();
         executableSqlList.clear();
         delegate.clearBatch();
     }
 
     @Override
     public int[] executeBatch() throws SQLException {
-        return psDelegate.execute(executableSqlList, delegate::executeBatch);
+        // executeBatch 之后 batch 被重置，参数快照随之释放
+        try {
+            return psDelegate.execute(executableSqlList, delegate::executeBatch);
+        } finally {
+            executableSqlList.clear();
+        }
     }
 
     @Override
     public long[] executeLargeBatch() throws SQLException {
-        return psDelegate.execute(executableSqlList, delegate::executeLargeBatch);
+        try {
+            return psDelegate.execute(executableSqlList, delegate::executeLargeBatch);
+        } finally {
+            executableSqlList.clear();
+        }
     }
 
-    private List<Object> newParameterList() {
-        List<Object> list = new ArrayList<>(parameterCount);
-        for (int i = 0; i < parameterCount; i++) {
-            list.add(null);
-        }
-        return list;
+    private Object[] newParameters() {
+        return new Object[parameterCount];
     }
 
     // ---------------------
@@ -124,7 +123,7 @@ public class CdcPreparedStatement extends AbstractCdcStatement<PreparedStatement
 
     @Override
     public void clearParameters() throws SQLException {
-        parameterList = newParameterList();
+        parameters = newParameters();
         delegate.clearParameters();
     }
 
@@ -132,169 +131,148 @@ public class CdcPreparedStatement extends AbstractCdcStatement<PreparedStatement
     public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
         assertDataType(x.getClass());
         delegate.setObject(parameterIndex, x, targetSqlType);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
         assertDataType(x.getClass());
         delegate.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
         delegate.setNull(parameterIndex, sqlType);
-        parameterList.set(parameterIndex - 1, null);
+        parameters[parameterIndex - 1] = null;
     }
 
     @Override
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
         delegate.setBoolean(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setByte(int parameterIndex, byte x) throws SQLException {
         delegate.setByte(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setShort(int parameterIndex, short x) throws SQLException {
         delegate.setShort(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setInt(int parameterIndex, int x) throws SQLException {
         delegate.setInt(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setLong(int parameterIndex, long x) throws SQLException {
         delegate.setLong(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setFloat(int parameterIndex, float x) throws SQLException {
         delegate.setFloat(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setDouble(int parameterIndex, double x) throws SQLException {
         delegate.setDouble(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
         delegate.setBigDecimal(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setString(int parameterIndex, String x) throws SQLException {
         delegate.setString(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setDate(int parameterIndex, Date x) throws SQLException {
         delegate.setDate(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
         delegate.setTimestamp(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
         assertDataType(x.getClass());
         delegate.setObject(parameterIndex, x, targetSqlType);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setObject(int parameterIndex, Object x) throws SQLException {
         assertDataType(x.getClass());
         delegate.setObject(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
         delegate.setDate(parameterIndex, x, cal);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
         delegate.setTime(parameterIndex, x, cal);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
         delegate.setTimestamp(parameterIndex, x, cal);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
         delegate.setNull(parameterIndex, sqlType, typeName);
-        parameterList.set(parameterIndex - 1, null);
+        parameters[parameterIndex - 1] = null;
     }
 
     @Override
     public void setTime(int parameterIndex, Time x) throws SQLException {
         delegate.setTime(parameterIndex, x);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
     @Override
     public void setNString(int parameterIndex, String value) throws SQLException {
         delegate.setNString(parameterIndex, value);
-        parameterList.set(parameterIndex - 1, value);
+        parameters[parameterIndex - 1] = value;
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
         assertDataType(x.getClass());
         delegate.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
-        parameterList.set(parameterIndex - 1, x);
+        parameters[parameterIndex - 1] = x;
     }
 
 
     public String getExecutableSql() {
-        List<Token> source = tokenSequence.getSource();
-        StringBuilder sql = new StringBuilder();
-        int i = 0;
-        for (Token token : source) {
-            TokenType type = token.getType();
-            Object literal = token.getLiteral();
-            if (TokenType.PARAMETER.equals(token.getType())) {
-                sql.append(" ").append(getCdcDataSource().getDataFormatterRegistry().format(parameterList.get(i)));
-                i++;
-            } else if (TokenType.STRING.equals(type)) {
-                sql.append(" ").append(getCdcDataSource().getDataFormatterRegistry().format(literal));
-            } else if (TokenType.EOF.equals(type)) {
-
-            } else {
-                // mysql 的函数 支持 now(), now( )写法，但是不支持 now (), now ( ) 写法。所以(前不留空格
-                if (!("(".equals(literal))) {
-                    sql.append(" ");
-                }
-                sql.append(literal);
-            }
-        }
-        return sql.toString();
+        return sqlTemplate.render(parameters, dataFormatterRegistry);
     }
 
     @Override
@@ -459,12 +437,7 @@ public class CdcPreparedStatement extends AbstractCdcStatement<PreparedStatement
         delegate.setNClob(parameterIndex, reader);
     }
 
-    private CdcDataSource getCdcDataSource() {
-        return connection.getCdcDataSource();
-    }
-
     private void assertDataType(Class<?> clazz) {
-        DataFormatterRegistry dataFormatterRegistry = getCdcDataSource().getDataFormatterRegistry();
         if (!dataFormatterRegistry.typeAvailable(clazz)) {
             throw new CdcException("不支持的数据类型，当前类型处理中心是：" + dataFormatterRegistry.getClass().getSimpleName() + "。");
         }
@@ -0,0 +1,59 @@
+package cn.addenda.ahacdc;
+
+/**
+ * 一条待写入 cdc 表的记录。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 15:00
+ */
+public class CdcRecord {
+
+    private final String tableName;
+
+    private final String cdcMode;
+
+    private final String executableSql;
+
+    /**
+     * 编码后的 RowImage（row 模式并且表开启了 rowImage）或者 RowDiff（diff 模式），此时 executableSql 为 null。
+     */
+    private final byte[] rowImage;
+
+    public CdcRecord(String tableName, String cdcMode, String executableSql) {
+        this(tableName, cdcMode, executableSql, null);
+    }
+
+    public CdcRecord(String tableName, String cdcMode, String executableSql, byte[] rowImage) {
+        this.tableName = tableName;
+        this.cdcMode = cdcMode;
+        this.executableSql = executableSql;
+        this.rowImage = rowImage;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getCdcMode() {
+        return cdcMode;
+    }
+
+    public String getExecutableSql() {
+        return executableSql;
+    }
+
+    public byte[] getRowImage() {
+        return rowImage;
+    }
+
+    @Override
+    public String toString() {
+        return "CdcRecord{" +
+                "tableName='" + tableName + '\'' +
+                ", cdcMode='" + cdcMode + '\'' +
+                ", executableSql='" + executableSql + '\'' +
+                ", rowImageLength=" + (rowImage == null ? 0 : rowImage.length) +
+                '}';
+    }
+
+}
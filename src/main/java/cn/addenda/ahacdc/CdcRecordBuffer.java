@@ -0,0 +1,117 @@
+package cn.addenda.ahacdc;
+
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 事务内缓冲的 cdc 记录。commit 时一次性交给下游，rollback 时直接丢弃。
+ * <p>
+ * 设置保存点时记下当前位置，回滚到保存点时把 size 截回这个位置即可，不需要移动数据。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 15:05
+ */
+public class CdcRecordBuffer {
+
+    private CdcRecord[] cdcRecords = new CdcRecord[16];
+
+    private int size;
+
+    /**
+     * 曾经写到的最大位置，clear 时用于释放引用
+     */
+    private int highWater;
+
+    /**
+     * 按设置顺序排列的保存点
+     */
+    private final List<SavepointMark> savepointMarkList = new ArrayList<>();
+
+    public void addAll(List<CdcRecord> cdcRecordList) {
+        // cdcRecordList 可能是 ExecutableSqlList 的视图，executeBatch 之后会被清空，所以这里需要渲染出来
+        for (int i = 0; i < cdcRecordList.size(); i++) {
+            add(cdcRecordList.get(i));
+        }
+    }
+
+    public void add(CdcRecord cdcRecord) {
+        if (size == cdcRecords.length) {
+            cdcRecords = Arrays.copyOf(cdcRecords, size << 1);
+        }
+        cdcRecords[size++] = cdcRecord;
+        if (size > highWater) {
+            highWater = size;
+        }
+    }
+
+    public void mark(Savepoint savepoint) {
+        savepointMarkList.add(new SavepointMark(savepoint, size));
+    }
+
+    /**
+     * 丢弃保存点之后的记录。保存点本身仍然有效，之后设置的保存点失效。
+     */
+    public void rollbackTo(Savepoint savepoint) {
+        int index = indexOf(savepoint);
+        size = savepointMarkList.get(index).position;
+        truncateMarks(index + 1);
+    }
+
+    /**
+     * 释放保存点，记录保留。之后设置的保存点一并失效。
+     */
+    public void release(Savepoint savepoint) {
+        truncateMarks(indexOf(savepoint));
+    }
+
+    /**
+     * @return 当前缓冲的记录，按写入顺序排列
+     */
+    public List<CdcRecord> getCdcRecordList() {
+        return Arrays.asList(Arrays.copyOf(cdcRecords, size));
+    }
+
+    public void clear() {
+        Arrays.fill(cdcRecords, 0, highWater, null);
+        size = 0;
+        highWater = 0;
+        savepointMarkList.clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int indexOf(Savepoint savepoint) {
+        // 保存点一般不多，并且通常回滚的是最近的保存点，所以从后往前找
+        for (int i = savepointMarkList.size() - 1; i >= 0; i--) {
+            if (savepointMarkList.get(i).savepoint == savepoint) {
+                return i;
+            }
+        }
+        throw new CdcException("Savepoint is not set on current connection or has been released. ");
+    }
+
+    private void truncateMarks(int fromIndex) {
+        savepointMarkList.subList(fromIndex, savepointMarkList.size()).clear();
+    }
+
+    private static class SavepointMark {
+
+        private final Savepoint savepoint;
+
+        private final int position;
+
+        SavepointMark(Savepoint savepoint, int position) {
+            this.savepoint = savepoint;
+            this.position = position;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package cn.addenda.ahacdc;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 同一张表、同一种模式的一组 cdc 记录。是 cdcSqlList 或 rowImageList 的视图，get 时才创建 CdcRecord，
+ * 所以 cdcSqlList 是 ExecutableSqlList 时不会提前渲染全部SQL。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 21:20
+ */
+public class CdcRecordList extends AbstractList<CdcRecord> implements RandomAccess {
+
+    private final String tableName;
+
+    private final String cdcMode;
+
+    private final List<String> cdcSqlList;
+
+    private final List<byte[]> rowImageList;
+
+    private CdcRecordList(String tableName, String cdcMode, List<String> cdcSqlList, List<byte[]> rowImageList) {
+        this.tableName = tableName;
+        this.cdcMode = cdcMode;
+        this.cdcSqlList = cdcSqlList;
+        this.rowImageList = rowImageList;
+    }
+
+    public static CdcRecordList ofSql(String tableName, String cdcMode, List<String> cdcSqlList) {
+        return new CdcRecordList(tableName, cdcMode, cdcSqlList, null);
+    }
+
+    public static CdcRecordList ofRowImages(String tableName, String cdcMode, List<byte[]> rowImageList) {
+        return new CdcRecordList(tableName, cdcMode, null, rowImageList);
+    }
+
+    @Override
+    public CdcRecord get(int index) {
+        if (cdcSqlList != null) {
+            return new CdcRecord(tableName, cdcMode, cdcSqlList.get(index));
+        }
+        return new CdcRecord(tableName, cdcMode, null, rowImageList.get(index));
+    }
+
+    @Override
+    public int size() {
+        return cdcSqlList != null ? cdcSqlList.size() : rowImageList.size();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getCdcMode() {
+        return cdcMode;
+    }
+
+    public boolean isRowImage() {
+        return rowImageList != null;
+    }
+
+    public List<String> getCdcSqlList() {
+        return cdcSqlList;
+    }
+
+    public List<byte[]> getRowImageList() {
+        return rowImageList;
+    }
+
+}
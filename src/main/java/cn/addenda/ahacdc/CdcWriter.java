@@ -0,0 +1,213 @@
+package cn.addenda.ahacdc;
+
+import cn.addenda.ahacdc.frame.CdcFrame;
+import cn.addenda.ahacdc.frame.CdcFrameCodec;
+import cn.addenda.ahacdc.frame.PayloadDictionaryTrainer;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把 CDC SQL 写入 cdc 表。每个连接一个 writer，insert 语句在连接上只 prepare 一次，SQL 作为参数绑定，不需要转义。
+ * <p>
+ * 通过 addBatch 攒批，攒够 maxBatchCount 条或者 maxBatchBytes 个字符时 executeBatch。
+ * mysql 驱动需要开启 rewriteBatchedStatements 才会把一批合并成一条多值 insert。
+ * <p>
+ * 表配置了 PayloadCodec 时，一批数据压缩为一个 CdcFrame 写入 frame 字段，消费方用 CdcFrameCodec 解码。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 14:30
+ */
+public class CdcWriter {
+
+    public static final int DEFAULT_MAX_BATCH_COUNT = 500;
+
+    public static final int DEFAULT_MAX_BATCH_BYTES = 1024 * 1024;
+
+    private static final String EXECUTABLE_SQL_COLUMN = "executable_sql";
+
+    private static final String ROW_IMAGE_COLUMN = "row_image";
+
+    private static final String FRAME_COLUMN = "frame";
+
+    private final CdcConnection cdcConnection;
+
+    /**
+     * key 是 cdc 表名.字段名
+     */
+    private final Map<String, String> insertSqlMap = new HashMap<>();
+
+    public CdcWriter(CdcConnection cdcConnection) {
+        this.cdcConnection = cdcConnection;
+    }
+
+    /**
+     * 同一张 cdc 表的SQL和 RowImage 分别合并之后写入，同一张 cdc 表的记录保持原来的顺序。
+     */
+    public void writeRecords(List<CdcRecord> cdcRecordList) throws SQLException {
+        if (cdcRecordList.isEmpty()) {
+            return;
+        }
+        if (cdcRecordList instanceof CdcRecordList) {
+            CdcRecordList recordList = (CdcRecordList) cdcRecordList;
+            if (recordList.isRowImage()) {
+                writeRowImages(recordList.getTableName(), recordList.getCdcMode(), recordList.getRowImageList());
+            } else {
+                write(recordList.getTableName(), recordList.getCdcMode(), recordList.getCdcSqlList());
+            }
+            return;
+        }
+        Map<String, List<String>> cdcSqlListMap = new LinkedHashMap<>();
+        Map<String, List<byte[]>> rowImageListMap = new LinkedHashMap<>();
+        Map<String, CdcRecord> firstRecordMap = new HashMap<>();
+        for (CdcRecord cdcRecord : cdcRecordList) {
+            String cdcTableName = cdcRecord.getTableName() + "_cdc_" + cdcRecord.getCdcMode();
+            if (cdcRecord.getRowImage() != null) {
+                rowImageListMap.computeIfAbsent(cdcTableName, k -> new ArrayList<>()).add(cdcRecord.getRowImage());
+            } else {
+                cdcSqlListMap.computeIfAbsent(cdcTableName, k -> new ArrayList<>()).add(cdcRecord.getExecutableSql());
+            }
+            firstRecordMap.putIfAbsent(cdcTableName, cdcRecord);
+        }
+        for (Map.Entry<String, List<String>> entry : cdcSqlListMap.entrySet()) {
+            CdcRecord cdcRecord = firstRecordMap.get(entry.getKey());
+            write(cdcRecord.getTableName(), cdcRecord.getCdcMode(), entry.getValue());
+        }
+        for (Map.Entry<String, List<byte[]>> entry : rowImageListMap.entrySet()) {
+            CdcRecord cdcRecord = firstRecordMap.get(entry.getKey());
+            writeRowImages(cdcRecord.getTableName(), cdcRecord.getCdcMode(), entry.getValue());
+        }
+    }
+
+    public void write(String tableName, String cdcMode, List<String> cdcSqlList) throws SQLException {
+        if (cdcSqlList.isEmpty()) {
+            return;
+        }
+        TableConfig tableConfig = cdcConnection.getCdcDataSource().getTableConfig(tableName);
+        if (tableConfig != null && (tableConfig.getPayloadCodec() != null || tableConfig.getPayloadDictionaryTrainer() != null)) {
+            List<byte[]> payloadList = new ArrayList<>(cdcSqlList.size());
+            for (int i = 0; i < cdcSqlList.size(); i++) {
+                payloadList.add(cdcSqlList.get(i).getBytes(StandardCharsets.UTF_8));
+            }
+            sample(tableConfig, payloadList);
+            if (tableConfig.getPayloadCodec() != null) {
+                writeFrames(tableConfig, cdcMode, CdcFrame.PAYLOAD_SQL, payloadList);
+                return;
+            }
+        }
+        int maxBatchCount = cdcConnection.getCdcDataSource().getCdcWriterMaxBatchCount();
+        long maxBatchBytes = getMaxBatchBytes();
+
+        PreparedStatement ps = cdcConnection.prepareCdcStatement(getInsertSql(tableName + "_cdc_" + cdcMode, EXECUTABLE_SQL_COLUMN));
+        int batchCount = 0;
+        long batchBytes = 0;
+        for (int i = 0; i < cdcSqlList.size(); i++) {
+            // cdcSqlList 可能是 ExecutableSqlList，get 时才渲染，渲染结果绑定之后即可回收
+            String cdcSql = cdcSqlList.get(i);
+            ps.setString(1, cdcSql);
+            ps.addBatch();
+            batchCount++;
+            batchBytes += cdcSql.length();
+            if (batchCount >= maxBatchCount || batchBytes >= maxBatchBytes) {
+                ps.executeBatch();
+                batchCount = 0;
+                batchBytes = 0;
+            }
+        }
+        if (batchCount > 0) {
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * 把编码后的 RowImage（diff 模式是 RowDiff）写入 cdc 表的 row_image 字段。
+     */
+    public void writeRowImages(String tableName, String cdcMode, List<byte[]> rowImageList) throws SQLException {
+        if (rowImageList.isEmpty()) {
+            return;
+        }
+        TableConfig tableConfig = cdcConnection.getCdcDataSource().getTableConfig(tableName);
+        if (tableConfig != null) {
+            sample(tableConfig, rowImageList);
+            if (tableConfig.getPayloadCodec() != null) {
+                writeFrames(tableConfig, cdcMode, CdcFrame.PAYLOAD_ROW_IMAGE, rowImageList);
+                return;
+            }
+        }
+        int maxBatchCount = cdcConnection.getCdcDataSource().getCdcWriterMaxBatchCount();
+        long maxBatchBytes = getMaxBatchBytes();
+
+        PreparedStatement ps = cdcConnection.prepareCdcStatement(getInsertSql(tableName + "_cdc_" + cdcMode, ROW_IMAGE_COLUMN));
+        int batchCount = 0;
+        long batchBytes = 0;
+        for (byte[] rowImage : rowImageList) {
+            ps.setBytes(1, rowImage);
+            ps.addBatch();
+            batchCount++;
+            batchBytes += rowImage.length;
+            if (batchCount >= maxBatchCount || batchBytes >= maxBatchBytes) {
+                ps.executeBatch();
+                batchCount = 0;
+                batchBytes = 0;
+            }
+        }
+        if (batchCount > 0) {
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * 每批数据压缩为一个 frame，一个 frame 写入一行。
+     */
+    private void writeFrames(TableConfig tableConfig, String cdcMode, byte payloadKind, List<byte[]> payloadList) throws SQLException {
+        int maxBatchCount = cdcConnection.getCdcDataSource().getCdcWriterMaxBatchCount();
+        long maxBatchBytes = getMaxBatchBytes();
+
+        PreparedStatement ps = cdcConnection.prepareCdcStatement(getInsertSql(tableConfig.getTableName() + "_cdc_" + cdcMode, FRAME_COLUMN));
+        int from = 0;
+        long batchBytes = 0;
+        for (int i = 0; i < payloadList.size(); i++) {
+            batchBytes += payloadList.get(i).length;
+            if (i + 1 - from >= maxBatchCount || batchBytes >= maxBatchBytes || i == payloadList.size() - 1) {
+                List<byte[]> batch = payloadList.subList(from, i + 1);
+                long start = System.nanoTime();
+                byte[] frame = CdcFrameCodec.encode(tableConfig.getPayloadCodec(), new CdcFrame(payloadKind, batch));
+                tableConfig.getCompressionStats().record(batch.size(), batchBytes, frame.length, System.nanoTime() - start);
+                ps.setBytes(1, frame);
+                ps.addBatch();
+                from = i + 1;
+                batchBytes = 0;
+            }
+        }
+        ps.executeBatch();
+    }
+
+    private void sample(TableConfig tableConfig, List<byte[]> payloadList) {
+        PayloadDictionaryTrainer trainer = tableConfig.getPayloadDictionaryTrainer();
+        if (trainer != null) {
+            payloadList.forEach(trainer::sample);
+        }
+    }
+
+    private long getMaxBatchBytes() {
+        CdcDataSource cdcDataSource = cdcConnection.getCdcDataSource();
+        long maxBatchBytes = cdcDataSource.getCdcWriterMaxBatchBytes();
+        // 合并之后的多值 insert 不能超过 max_allowed_packet
+        long maxAllowedPacket = cdcDataSource.getMaxAllowedPacket(cdcConnection.getDelegate());
+        if (maxAllowedPacket > 0) {
+            maxBatchBytes = Math.min(maxBatchBytes, maxAllowedPacket / 2);
+        }
+        return maxBatchBytes;
+    }
+
+    private String getInsertSql(String cdcTableName, String column) {
+        return insertSqlMap.computeIfAbsent(cdcTableName + "." + column, t -> "insert into " + cdcTableName + "(" + column + ") values (?)");
+    }
+
+}
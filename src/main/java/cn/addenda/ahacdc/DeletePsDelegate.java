@@ -1,14 +1,15 @@
 package cn.addenda.ahacdc;
 
-import cn.addenda.businesseasy.util.BEListUtils;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.collection.LongLinkedHashSet;
+import cn.addenda.ahacdc.rowimage.BeforeImage;
+import cn.addenda.ahacdc.rowimage.RowDiff;
+import cn.addenda.ahacdc.rowimage.RowImage;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * @author addenda
@@ -18,50 +19,72 @@ public class DeletePsDelegate extends AbstractPsDelegate {
 
     private final int leastTxIsolation;
 
-    public DeletePsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, String parameterizedSql) {
-        super(cdcConnection, ps, tableConfig, parameterizedSql);
-        leastTxIsolation = sqlHelper.analysisLeastTxIsolation(parameterizedSql, keyColumn);
+    public DeletePsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, SqlTemplate sqlTemplate) {
+        super(cdcConnection, ps, tableConfig, sqlTemplate);
+        leastTxIsolation = sqlTemplate.getLeastTxIsolation();
     }
 
     @Override
-    protected <T> void doAssert(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException {
+    protected <T> void doAssert(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException {
         assertTxIsolationNotLessThan(leastTxIsolation);
     }
 
     @Override
-    public <T> T doExecute(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException {
+    public <T> T doExecute(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException {
         // -------------------------------------
         //  对于Statement模式来说，记录下来SQL就行了
         // -------------------------------------
         if (checkTableMode(TableConfig.CM_STATEMENT)) {
-            List<String> statementCdcSqlList = new ArrayList<>(executableSqlList);
-            executeCdcSql(TableConfig.CM_STATEMENT, statementCdcSqlList);
+            executeCdcSql(TableConfig.CM_STATEMENT, executableSqlList);
         }
 
         // ----------------------------------
-        //  对于ROW模式，需要记录下来具体删除的行。
+        //  对于ROW模式和DIFF模式，需要记录下来具体删除的行。
         // ----------------------------------
-        if (checkTableMode(TableConfig.CM_ROW)) {
-            List<String> rowCdcSqlList = new ArrayList<>();
-            // 多余delete语句来说，在batch模式下，如果sqlX和sqlY同时命中了KeyN，则只应该记录一次。
-            Set<Long> keyValueSet = new LinkedHashSet<>();
-            try (Statement statement = cdcConnection.getDelegate().createStatement()) {
-                for (String executableSql : executableSqlList) {
-                    // select 获取主键值。
-                    keyValueSet.addAll(lockKey(statement, executableSql));
-                }
+        boolean rowMode = checkTableMode(TableConfig.CM_ROW);
+        boolean diffMode = checkTableMode(TableConfig.CM_DIFF);
+        // 多余delete语句来说，在batch模式下，如果sqlX和sqlY同时命中了KeyN，则只应该记录一次。
+        LongLinkedHashSet keyValueSet = new LongLinkedHashSet();
+        // 加锁读同时查出被删除的行：开启 before-image 时记录在 RowImage 里；DIFF模式总是记录在 RowDiff 里，没有配置字段时取整行
+        BeforeImage beforeImage = diffMode ? new BeforeImage() : rowMode && tableConfig.isRowImage() ? newBeforeImage() : null;
+        BeforeImage rowImageBeforeImage = tableConfig.isBeforeImage() ? beforeImage : null;
+        if (rowMode || diffMode) {
+            // select 获取主键值。batch 模式下多条SQL的加锁读合并执行。
+            for (LongArrayList keyValueList : lockKeys(executableSqlList, beforeImage)) {
+                keyValueSet.addAll(keyValueList);
             }
+        }
+        if (rowMode) {
+            List<String> rowCdcSqlList = new ArrayList<>();
             // 对于simple模式 ： 1:n -> 1:1 优化；
             // 对于batch模式，也进行了： 1:1 -> n:1 优化。
-            if (!keyValueSet.isEmpty()) {
-                List<List<Long>> listList = BEListUtils.splitList(new ArrayList<>(keyValueSet), IN_SIZE);
-                for (List<Long> item : listList) {
-                    rowCdcSqlList.add("delete from " + tableName + " where " + keyColumn + " in (" + longListToString(item) + ")");
+            if (tableConfig.isRowImage()) {
+                List<RowImage> rowImageList = new ArrayList<>();
+                for (LongArrayList item : splitKeyValueList(keyValueSet.toList())) {
+                    rowImageList.add(RowImage.ofDelete(item, rowImageBeforeImage));
+                }
+                executeCdcRowImages(rowImageList);
+            } else if (!keyValueSet.isEmpty()) {
+                for (KeyPredicatePlanner.KeyPredicate keyPredicate : planKeyPredicate(keyValueSet.toList())) {
+                    rowCdcSqlList.add("delete from " + tableName + " where " + keyPredicate.getPredicate());
                 }
             }
             executeCdcSql(TableConfig.CM_ROW, rowCdcSqlList);
         }
 
+        // -----------------------------------------
+        //  对于DIFF模式，记录被删除的行作为变更前的值。
+        // -----------------------------------------
+        if (diffMode) {
+            List<RowDiff> rowDiffList = new ArrayList<>();
+            LongArrayList keyValueList = keyValueSet.toList();
+            List<List<Object>> beforeValueListList = beforeImage.toValueListList(keyValueList);
+            for (int i = 0; i < keyValueList.size(); i++) {
+                rowDiffList.add(RowDiff.ofDelete(keyValueList.get(i), beforeImage.getColumnList(), beforeValueListList.get(i)));
+            }
+            executeCdcDiffs(rowDiffList);
+        }
+
         return pi.invoke();
     }
 
@@ -0,0 +1,75 @@
+package cn.addenda.ahacdc;
+
+import cn.addenda.ahacdc.format.DataFormatterRegistry;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 待执行的SQL列表。只保存每条SQL的参数快照，get 的时候才用 SqlTemplate 渲染出SQL，渲染结果不缓存。
+ * <p>
+ * batch 模式下，addBatch 只需要复制一份参数，不需要在 executeBatch 之前一直持有所有SQL字符串。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 11:02
+ */
+public class ExecutableSqlList extends AbstractList<String> implements RandomAccess {
+
+    private final SqlTemplate sqlTemplate;
+
+    private final DataFormatterRegistry dataFormatterRegistry;
+
+    private final List<Object[]> parametersList;
+
+    public ExecutableSqlList(SqlTemplate sqlTemplate, DataFormatterRegistry dataFormatterRegistry) {
+        this(sqlTemplate, dataFormatterRegistry, new ArrayList<>());
+    }
+
+    private ExecutableSqlList(SqlTemplate sqlTemplate, DataFormatterRegistry dataFormatterRegistry, List<Object[]> parametersList) {
+        this.sqlTemplate = sqlTemplate;
+        this.dataFormatterRegistry = dataFormatterRegistry;
+        this.parametersList = parametersList;
+    }
+
+    /**
+     * 只包含一条SQL的列表，用于非batch模式。parameters 不会被复制。
+     */
+    public static ExecutableSqlList single(SqlTemplate sqlTemplate, DataFormatterRegistry dataFormatterRegistry, Object[] parameters) {
+        List<Object[]> parametersList = new ArrayList<>(1);
+        parametersList.add(parameters);
+        return new ExecutableSqlList(sqlTemplate, dataFormatterRegistry, parametersList);
+    }
+
+    /**
+     * 添加一条SQL。调用方需要保证之后不再修改 parameters。
+     */
+    public void addParameters(Object[] parameters) {
+        parametersList.add(parameters);
+    }
+
+    public Object[] getParameters(int index) {
+        return parametersList.get(index);
+    }
+
+    public SqlTemplate getSqlTemplate() {
+        return sqlTemplate;
+    }
+
+    @Override
+    public String get(int index) {
+        return sqlTemplate.render(getParameters(index), dataFormatterRegistry);
+    }
+
+    @Override
+    public int size() {
+        return parametersList.size();
+    }
+
+    @Override
+    public void clear() {
+        parametersList.clear();
+    }
+
+}
@@ -1,5 +1,9 @@
 package cn.addenda.ahacdc;
 
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.collection.LongObjectHashMap;
+import cn.addenda.ahacdc.rowimage.RowDiff;
+import cn.addenda.ahacdc.rowimage.RowImage;
 import cn.addenda.businesseasy.asynctask.BinaryResult;
 import cn.addenda.ec.calculator.CalculatorFactory;
 import cn.addenda.ro.grammar.ast.expression.Curd;
@@ -9,7 +13,6 @@ import cn.addenda.ro.grammar.lexical.token.TokenType;
 import java.math.BigInteger;
 import java.sql.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @author addenda
@@ -20,55 +23,53 @@ public class InsertPsDelegate extends AbstractPsDelegate {
     /**
      * 这些列必须从数据库里面取。
      */
-    private List<String> dependentColumnList;
+    private final List<String> dependentColumnList;
 
     /**
      * 这些列需要用表达式计算器计算
      */
-    private List<String> calculableColumnList;
-
-    private boolean multipleRows = false;
-
-    public InsertPsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, String parameterizedSql) {
-        super(cdcConnection, ps, tableConfig, parameterizedSql);
-        if (sqlHelper.checkInsertMultipleRows(parameterizedSql)) {
-            multipleRows = true;
-        } else {
-            BinaryResult<List<String>, List<BinaryResult<String, Curd>>> binaryResult = sqlHelper.divideColumnFromUpdateOrInsertSql(parameterizedSql);
-            dependentColumnList = binaryResult.getFirstResult();
-            calculableColumnList = binaryResult.getSecondResult().stream().map(BinaryResult::getFirstResult).collect(Collectors.toList());
-        }
+    private final List<String> calculableColumnList;
+
+    private final boolean multipleRows;
+
+    public InsertPsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, SqlTemplate sqlTemplate) {
+        super(cdcConnection, ps, tableConfig, sqlTemplate);
+        multipleRows = sqlTemplate.isMultipleRows();
+        dependentColumnList = sqlTemplate.getDependentColumnList();
+        calculableColumnList = sqlTemplate.getCalculableColumnList();
     }
 
     @Override
-    protected <T> void doAssert(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException {
+    protected <T> void doAssert(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException {
         assertTxIsolationNotLessThan(Connection.TRANSACTION_READ_COMMITTED);
     }
 
     @Override
-    public <T> T doExecute(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException {
+    public <T> T doExecute(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException {
         T invoke = pi.invoke();
+        List<String> sqlList = executableSqlList;
         if (multipleRows) {
             // 将多行insert语句处理为单行insert语句
-            executableSqlList = toSingleRow(executableSqlList);
+            sqlList = toSingleRow(sqlList);
         }
 
-        BinaryResult<List<String>, List<Long>> sqlWithKeyValueBr = fillKeyValueToInsertSql(executableSqlList);
-        executableSqlList = sqlWithKeyValueBr.getFirstResult();
-        List<Long> keyValueList = sqlWithKeyValueBr.getSecondResult();
+        BinaryResult<List<String>, LongArrayList> sqlWithKeyValueBr = fillKeyValueToInsertSql(sqlList);
+        sqlList = sqlWithKeyValueBr.getFirstResult();
+        LongArrayList keyValueList = sqlWithKeyValueBr.getSecondResult();
 
         // -------------------------------------
         //  对于Statement模式来说，记录下来SQL就行了
         // -------------------------------------
         if (checkTableMode(TableConfig.CM_STATEMENT)) {
-            List<String> statementCdcSqlList = new ArrayList<>(executableSqlList);
-            executeCdcSql(TableConfig.CM_STATEMENT, statementCdcSqlList);
+            executeCdcSql(TableConfig.CM_STATEMENT, sqlList);
         }
 
-        // ----------------------------------
-        //  对于ROW模式，需要记录下来具体插入的值。
-        // ----------------------------------
-        if (checkTableMode(TableConfig.CM_ROW)) {
+        // ----------------------------------------
+        //  对于ROW模式和DIFF模式，需要记录下来具体插入的值。
+        // ----------------------------------------
+        boolean rowMode = checkTableMode(TableConfig.CM_ROW);
+        boolean diffMode = checkTableMode(TableConfig.CM_DIFF);
+        if (rowMode || diffMode) {
             List<String> rowCdcSqlList = new ArrayList<>();
             if (multipleRows) {
                 try (Statement statement = cdcConnection.getDelegate().createStatement()) {
@@ -79,9 +80,9 @@ public class InsertPsDelegate extends AbstractPsDelegate {
                     // 所以不可以按相同的 dependentColumnList 和 calculableColumnList 处理
                     List<String> rowDependentColumnList;
                     List<BinaryResult<String, Curd>> rowCalculableColumnBrList;
-                    for (int i = 0; i < executableSqlList.size(); i++) {
-                        String executableSql = executableSqlList.get(i);
-                        Long keyValue = keyValueList.get(i);
+                    for (int i = 0; i < sqlList.size(); i++) {
+                        String executableSql = sqlList.get(i);
+                        long keyValue = keyValueList.get(i);
                         BinaryResult<List<String>, List<BinaryResult<String, Curd>>> binaryResult = sqlHelper.divideColumnFromUpdateOrInsertSql(executableSql);
                         rowDependentColumnList = binaryResult.getFirstResult();
                         rowCalculableColumnBrList = binaryResult.getSecondResult();
@@ -106,16 +107,16 @@ public class InsertPsDelegate extends AbstractPsDelegate {
                     }
                 }
             } else {
-                rowCdcSqlList.addAll(executableSqlList);
+                rowCdcSqlList.addAll(sqlList);
 
                 // 从数据库里面取数据
                 if (!dependentColumnList.isEmpty()) {
                     List<String> tmpSqlList = new ArrayList<>(rowCdcSqlList);
                     rowCdcSqlList.clear();
                     try (Statement statement = cdcConnection.getDelegate().createStatement()) {
-                        Map<Long, Map<String, Token>> keyColumnTokenMap = queryKeyColumnTokenMap(statement, keyValueList, dependentColumnList);
+                        LongObjectHashMap<Token[]> keyColumnTokens = queryKeyColumnTokens(statement, keyValueList, dependentColumnList);
                         for (int i = 0; i < keyValueList.size(); i++) {
-                            Map<String, Token> columnTokenMap = keyColumnTokenMap.get(keyValueList.get(i));
+                            Map<String, Token> columnTokenMap = toColumnTokenMap(dependentColumnList, keyColumnTokens.get(keyValueList.get(i)));
                             rowCdcSqlList.add(sqlHelper.updateOrInsertUpdateColumnValue(tmpSqlList.get(i), columnTokenMap));
                         }
                     }
@@ -131,7 +132,27 @@ public class InsertPsDelegate extends AbstractPsDelegate {
                 }
 
             }
-            executeCdcSql(TableConfig.CM_ROW, rowCdcSqlList);
+            if (rowMode && tableConfig.isRowImage()) {
+                // rowCdcSqlList 和 keyValueList 一一对应
+                List<RowImage> rowImageList = new ArrayList<>(rowCdcSqlList.size());
+                for (int i = 0; i < rowCdcSqlList.size(); i++) {
+                    BinaryResult<List<String>, List<Token>> insertRow = sqlHelper.extractInsertRow(rowCdcSqlList.get(i));
+                    rowImageList.add(RowImage.ofTokens(RowImage.Op.INSERT, LongArrayList.of(keyValueList.get(i)),
+                            insertRow.getFirstResult(), insertRow.getSecondResult()));
+                }
+                executeCdcRowImages(rowImageList);
+            } else if (rowMode) {
+                executeCdcSql(TableConfig.CM_ROW, rowCdcSqlList);
+            }
+            if (diffMode) {
+                List<RowDiff> rowDiffList = new ArrayList<>(rowCdcSqlList.size());
+                for (int i = 0; i < rowCdcSqlList.size(); i++) {
+                    BinaryResult<List<String>, List<Token>> insertRow = sqlHelper.extractInsertRow(rowCdcSqlList.get(i));
+                    rowDiffList.add(RowDiff.ofInsert(keyValueList.get(i), insertRow.getFirstResult(),
+                            RowImage.toValueList(insertRow.getSecondResult())));
+                }
+                executeCdcDiffs(rowDiffList);
+            }
         }
 
         return invoke;
@@ -143,8 +164,8 @@ public class InsertPsDelegate extends AbstractPsDelegate {
         return singleRowList;
     }
 
-    private Map<String, Token> queryColumnTokenMap(Statement statement, Long keyValue, List<String> columnList) throws SQLException {
-        return queryKeyColumnTokenMap(statement, Collections.singletonList(keyValue), columnList).get(keyValue);
+    private Map<String, Token> queryColumnTokenMap(Statement statement, long keyValue, List<String> columnList) throws SQLException {
+        return toColumnTokenMap(columnList, queryKeyColumnTokens(statement, LongArrayList.of(keyValue), columnList).get(keyValue));
     }
 
     /**
@@ -152,9 +173,9 @@ public class InsertPsDelegate extends AbstractPsDelegate {
      *
      * @return firstValue时填充了主键值的sql；secondValue主键集合。
      */
-    private BinaryResult<List<String>, List<Long>> fillKeyValueToInsertSql(List<String> executableSqlList) throws SQLException {
+    private BinaryResult<List<String>, LongArrayList> fillKeyValueToInsertSql(List<String> executableSqlList) throws SQLException {
         ResultSet generatedKeys = ps.getGeneratedKeys();
-        List<Long> keyValueList = new ArrayList<>();
+        LongArrayList keyValueList = new LongArrayList(executableSqlList.size());
         List<String> executableSqlWithKeyValueList = new ArrayList<>();
         for (String executableSql : executableSqlList) {
             // 如果SQL中存在主键值，取SQL中的值。
@@ -0,0 +1,275 @@
+package cn.addenda.ahacdc;
+
+import cn.addenda.ahacdc.collection.LongArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把一组主键拆成若干个 where 条件：key in (...) 或者 key between a and b。
+ * <p>
+ * in 列表的长度取 maxInSize 和 max_allowed_packet 能容纳的长度中较小的一个。
+ * 主键数量达到 rangeThreshold 时，连续且长度不小于 minRangeLength 的主键用 between 表示。
+ * <p>
+ * 每张表一个planner，统计信息用于调整参数。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 13:20
+ */
+public class KeyPredicatePlanner {
+
+    public static final int DEFAULT_MAX_IN_SIZE = 500;
+    public static final int DEFAULT_RANGE_THRESHOLD = 1000;
+    public static final int DEFAULT_MIN_RANGE_LENGTH = 8;
+
+    /**
+     * 一个 long 最多20个字符，加上逗号
+     */
+    private static final int MAX_KEY_LENGTH = 21;
+
+    /**
+     * 给 in 列表以外的部分预留的长度
+     */
+    private static final int RESERVED_PACKET_LENGTH = 64 * 1024;
+
+    private static final Pattern KEY_PREDICATE_PATTERN = Pattern.compile(
+            "^\\s*(\\w+)\\s*(?:=\\s*(-?\\d+)|in\\s*\\(([-\\d,\\s]+)\\)|between\\s+(-?\\d+)\\s+and\\s+(-?\\d+))\\s*$",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 解析 between 时最多展开的主键个数
+     */
+    private static final int MAX_PARSE_RANGE_LENGTH = 1 << 20;
+
+    private final String keyColumn;
+
+    private volatile int maxInSize = DEFAULT_MAX_IN_SIZE;
+
+    private volatile int rangeThreshold = DEFAULT_RANGE_THRESHOLD;
+
+    private volatile int minRangeLength = DEFAULT_MIN_RANGE_LENGTH;
+
+    private final LongAdder planCount = new LongAdder();
+
+    private final LongAdder keyCount = new LongAdder();
+
+    private final LongAdder inPredicateCount = new LongAdder();
+
+    private final LongAdder rangePredicateCount = new LongAdder();
+
+    public KeyPredicatePlanner(String keyColumn) {
+        this.keyColumn = keyColumn;
+    }
+
+    /**
+     * @param maxAllowedPacket 数据库的 max_allowed_packet，小于等于0时不考虑。
+     */
+    public List<KeyPredicate> plan(LongArrayList keyValueList, long maxAllowedPacket) {
+        List<KeyPredicate> keyPredicateList = new ArrayList<>();
+        int size = keyValueList.size();
+        if (size == 0) {
+            return keyPredicateList;
+        }
+        int inSize = inSize(maxAllowedPacket);
+        if (size < rangeThreshold) {
+            for (LongArrayList chunk : keyValueList.split(inSize)) {
+                keyPredicateList.add(inPredicate(chunk));
+            }
+        } else {
+            long[] sorted = keyValueList.toArray();
+            Arrays.sort(sorted);
+            LongArrayList scatteredList = new LongArrayList();
+            int i = 0;
+            while (i < size) {
+                // 找到从 i 开始的连续主键 [sorted[i], sorted[j - 1]]，重复的主键跳过
+                int j = i + 1;
+                int runLength = 1;
+                while (j < size && (sorted[j] == sorted[j - 1] || sorted[j] == sorted[j - 1] + 1)) {
+                    if (sorted[j] != sorted[j - 1]) {
+                        runLength++;
+                    }
+                    j++;
+                }
+                if (runLength >= minRangeLength) {
+                    keyPredicateList.add(rangePredicate(sorted[i], sorted[j - 1]));
+                } else {
+                    for (int k = i; k < j; k++) {
+                        if (k == i || sorted[k] != sorted[k - 1]) {
+                            scatteredList.add(sorted[k]);
+                        }
+                    }
+                }
+                i = j;
+            }
+            for (LongArrayList chunk : scatteredList.split(inSize)) {
+                keyPredicateList.add(inPredicate(chunk));
+            }
+        }
+        planCount.increment();
+        keyCount.add(size);
+        return keyPredicateList;
+    }
+
+    /**
+     * 解析 plan 产生的条件（不包含 where）：key = v、key in (...) 或者 key between a and b，between 展开为区间内的每个主键。
+     *
+     * @return 条件命中的主键。条件无法识别、列不是 keyColumn 或者区间过长时返回 null。
+     */
+    public static LongArrayList parse(String predicate, String keyColumn) {
+        Matcher matcher = KEY_PREDICATE_PATTERN.matcher(predicate);
+        if (!matcher.matches() || !keyColumn.equalsIgnoreCase(matcher.group(1))) {
+            return null;
+        }
+        if (matcher.group(2) != null) {
+            return LongArrayList.of(Long.parseLong(matcher.group(2)));
+        }
+        if (matcher.group(3) != null) {
+            LongArrayList keyValueList = new LongArrayList();
+            for (String keyValue : matcher.group(3).split(",")) {
+                keyValueList.add(Long.parseLong(keyValue.trim()));
+            }
+            return keyValueList;
+        }
+        long from = Long.parseLong(matcher.group(4));
+        long to = Long.parseLong(matcher.group(5));
+        // to - from 溢出时为负数
+        if (from > to || to - from < 0 || to - from >= MAX_PARSE_RANGE_LENGTH) {
+            return null;
+        }
+        int length = (int) (to - from + 1);
+        LongArrayList keyValueList = new LongArrayList(length);
+        for (int i = 0; i < length; i++) {
+            keyValueList.add(from + i);
+        }
+        return keyValueList;
+    }
+
+    private int inSize(long maxAllowedPacket) {
+        int inSize = maxInSize;
+        if (maxAllowedPacket > 0) {
+            long packetInSize = Math.max(1, (maxAllowedPacket - RESERVED_PACKET_LENGTH) / MAX_KEY_LENGTH);
+            inSize = (int) Math.min(inSize, packetInSize);
+        }
+        return Math.max(1, inSize);
+    }
+
+    private KeyPredicate inPredicate(LongArrayList keyValueList) {
+        StringBuilder predicate = new StringBuilder(keyColumn.length() + 6 + keyValueList.size() * 8);
+        predicate.append(keyColumn);
+        if (keyValueList.size() == 1) {
+            predicate.append(" = ").append(keyValueList.get(0));
+        } else {
+            predicate.append(" in (").append(keyValueList.join(",")).append(")");
+        }
+        inPredicateCount.increment();
+        return new KeyPredicate(predicate.toString(), keyValueList.size());
+    }
+
+    private KeyPredicate rangePredicate(long from, long to) {
+        rangePredicateCount.increment();
+        return new KeyPredicate(keyColumn + " between " + from + " and " + to, (int) (to - from + 1));
+    }
+
+    public int getMaxInSize() {
+        return maxInSize;
+    }
+
+    public void setMaxInSize(int maxInSize) {
+        if (maxInSize <= 0) {
+            throw new CdcException("maxInSize must be positive. ");
+        }
+        this.maxInSize = maxInSize;
+    }
+
+    public int getRangeThreshold() {
+        return rangeThreshold;
+    }
+
+    public void setRangeThreshold(int rangeThreshold) {
+        this.rangeThreshold = rangeThreshold;
+    }
+
+    public int getMinRangeLength() {
+        return minRangeLength;
+    }
+
+    public void setMinRangeLength(int minRangeLength) {
+        if (minRangeLength < 2) {
+            throw new CdcException("minRangeLength must not less than 2. ");
+        }
+        this.minRangeLength = minRangeLength;
+    }
+
+    public long getPlanCount() {
+        return planCount.sum();
+    }
+
+    public long getKeyCount() {
+        return keyCount.sum();
+    }
+
+    public long getInPredicateCount() {
+        return inPredicateCount.sum();
+    }
+
+    public long getRangePredicateCount() {
+        return rangePredicateCount.sum();
+    }
+
+    /**
+     * @return 所有plan产生的语句数
+     */
+    public long getStatementCount() {
+        return getInPredicateCount() + getRangePredicateCount();
+    }
+
+    @Override
+    public String toString() {
+        return "KeyPredicatePlanner{" +
+                "keyColumn='" + keyColumn + '\'' +
+                ", maxInSize=" + maxInSize +
+                ", rangeThreshold=" + rangeThreshold +
+                ", minRangeLength=" + minRangeLength +
+                ", planCount=" + getPlanCount() +
+                ", keyCount=" + getKeyCount() +
+                ", inPredicateCount=" + getInPredicateCount() +
+                ", rangePredicateCount=" + getRangePredicateCount() +
+                '}';
+    }
+
+    public static class KeyPredicate {
+
+        /**
+         * 不包含 where 关键字
+         */
+        private final String predicate;
+
+        /**
+         * 条件命中的主键个数
+         */
+        private final int keyCount;
+
+        public KeyPredicate(String predicate, int keyCount) {
+            this.predicate = predicate;
+            this.keyCount = keyCount;
+        }
+
+        public String getPredicate() {
+            return predicate;
+        }
+
+        public int getKeyCount() {
+            return keyCount;
+        }
+
+        @Override
+        public String toString() {
+            return predicate;
+        }
+    }
+
+}
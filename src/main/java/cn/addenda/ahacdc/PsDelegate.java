@@ -1,7 +1,6 @@
 package cn.addenda.ahacdc;
 
 import java.sql.SQLException;
-import java.util.List;
 
 /**
  * @author addenda
@@ -9,6 +8,6 @@ import java.util.List;
  */
 public interface PsDelegate {
 
-    <T> T execute(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException;
+    <T> T execute(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException;
 
 }
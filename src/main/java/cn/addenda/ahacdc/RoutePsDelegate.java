@@ -1,10 +1,7 @@
 package cn.addenda.ahacdc;
 
-import cn.addenda.ro.util.SqlUtils;
-
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.List;
 
 /**
  * @author addenda
@@ -14,20 +11,24 @@ public class RoutePsDelegate implements PsDelegate {
 
     private final PsDelegate realPsDelegate;
 
-    public RoutePsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, String parameterizedSql) {
-        if (SqlUtils.isInsertSql(parameterizedSql)) {
-            realPsDelegate = new InsertPsDelegate(cdcConnection, ps, tableConfig, parameterizedSql);
-        } else if (SqlUtils.isUpdateSql(parameterizedSql)) {
-            realPsDelegate = new UpdatePsDelegate(cdcConnection, ps, tableConfig, parameterizedSql);
-        } else if (SqlUtils.isDeleteSql(parameterizedSql)) {
-            realPsDelegate = new DeletePsDelegate(cdcConnection, ps, tableConfig, parameterizedSql);
-        } else {
-            throw new CdcException("Only support delete, insert, update sql. ");
+    public RoutePsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, SqlTemplate sqlTemplate) {
+        switch (sqlTemplate.getKind()) {
+            case INSERT:
+                realPsDelegate = new InsertPsDelegate(cdcConnection, ps, tableConfig, sqlTemplate);
+                break;
+            case UPDATE:
+                realPsDelegate = new UpdatePsDelegate(cdcConnection, ps, tableConfig, sqlTemplate);
+                break;
+            case DELETE:
+                realPsDelegate = new DeletePsDelegate(cdcConnection, ps, tableConfig, sqlTemplate);
+                break;
+            default:
+                throw new CdcException("Only support delete, insert, update sql. ");
         }
     }
 
     @Override
-    public <T> T execute(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException {
+    public <T> T execute(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException {
         return realPsDelegate.execute(executableSqlList, pi);
     }
 
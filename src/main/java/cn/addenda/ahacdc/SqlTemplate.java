@@ -0,0 +1,282 @@
+package cn.addenda.ahacdc;
+
+import cn.addenda.ahacdc.format.DataFormatterRegistry;
+import cn.addenda.ahacdc.sql.SqlHelper;
+import cn.addenda.businesseasy.asynctask.BinaryResult;
+import cn.addenda.ro.grammar.ast.expression.Curd;
+import cn.addenda.ro.grammar.lexical.scan.DefaultScanner;
+import cn.addenda.ro.grammar.lexical.token.Token;
+import cn.addenda.ro.grammar.lexical.token.TokenType;
+import cn.addenda.ro.util.SqlUtils;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 参数化SQL的编译结果。同一条参数化SQL只需要分析一次，之后创建 CdcPreparedStatement 和 PsDelegate 时直接复用。
+ * <p>
+ * 对象创建之后不可变，可以在多个线程间共享。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 9:10
+ */
+public class SqlTemplate {
+
+    public enum Kind {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final String tableName;
+
+    private final String parameterizedSql;
+
+    private final Kind kind;
+
+    private final List<Token> tokenList;
+
+    private final int parameterCount;
+
+    /**
+     * 预先渲染好的常量片段。第 i 个参数位于 fragments[i] 和 fragments[i + 1] 之间。
+     */
+    private final String[] fragments;
+
+    private final int fragmentsLength;
+
+    /**
+     * 这些列必须从数据库里面取。
+     */
+    private final List<String> dependentColumnList;
+
+    /**
+     * 这些列需要用表达式计算器计算
+     */
+    private final List<String> calculableColumnList;
+
+    private final int leastTxIsolation;
+
+    private final boolean stableUpdate;
+
+    private final boolean multipleRows;
+
+    /**
+     * update 和 delete 语句加锁读取主键的参数化SQL：select key from table where ... for update。
+     */
+    private final String lockingReadSql;
+
+    /**
+     * where 条件里的参数是参数列表里从 whereParameterOffset 开始的 whereParameterCount 个参数。
+     * where 之后还可能有参数，如：limit ?。
+     */
+    private final int whereParameterOffset;
+
+    private final int whereParameterCount;
+
+    private SqlTemplate(String tableName, String parameterizedSql, Kind kind, List<Token> tokenList, int parameterCount,
+                        String[] fragments, List<String> dependentColumnList, List<String> calculableColumnList,
+                        int leastTxIsolation, boolean stableUpdate, boolean multipleRows,
+                        String lockingReadSql, int whereParameterOffset, int whereParameterCount) {
+        this.tableName = tableName;
+        this.parameterizedSql = parameterizedSql;
+        this.kind = kind;
+        this.tokenList = tokenList;
+        this.parameterCount = parameterCount;
+        this.fragments = fragments;
+        int length = 0;
+        for (String fragment : fragments) {
+            length += fragment.length();
+        }
+        this.fragmentsLength = length;
+        this.dependentColumnList = dependentColumnList;
+        this.calculableColumnList = calculableColumnList;
+        this.leastTxIsolation = leastTxIsolation;
+        this.stableUpdate = stableUpdate;
+        this.multipleRows = multipleRows;
+        this.lockingReadSql = lockingReadSql;
+        this.whereParameterOffset = whereParameterOffset;
+        this.whereParameterCount = whereParameterCount;
+    }
+
+    public static SqlTemplate compile(TableConfig tableConfig, String parameterizedSql,
+                                      SqlHelper sqlHelper, DataFormatterRegistry dataFormatterRegistry) {
+        String keyColumn = tableConfig.getKeyColumn();
+
+        List<Token> tokenList = new DefaultScanner(parameterizedSql).scanTokens().getSource();
+        List<String> fragmentList = new ArrayList<>();
+        StringBuilder fragment = new StringBuilder();
+        for (Token token : tokenList) {
+            TokenType type = token.getType();
+            Object literal = token.getLiteral();
+            if (TokenType.PARAMETER.equals(type)) {
+                fragment.append(" ");
+                fragmentList.add(fragment.toString());
+                fragment.setLength(0);
+            } else if (TokenType.STRING.equals(type)) {
+                fragment.append(" ").append(dataFormatterRegistry.format(literal));
+            } else if (TokenType.EOF.equals(type)) {
+
+            } else {
+                // mysql 的函数 支持 now(), now( )写法，但是不支持 now (), now ( ) 写法。所以(前不留空格
+                if (!("(".equals(literal))) {
+                    fragment.append(" ");
+                }
+                fragment.append(literal);
+            }
+        }
+        fragmentList.add(fragment.toString());
+        int parameterCount = fragmentList.size() - 1;
+
+        Kind kind;
+        List<String> dependentColumnList = Collections.emptyList();
+        List<String> calculableColumnList = Collections.emptyList();
+        int leastTxIsolation;
+        boolean stableUpdate = false;
+        boolean multipleRows = false;
+        String lockingReadSql = null;
+        int whereParameterOffset = parameterCount;
+        int whereParameterCount = 0;
+        if (SqlUtils.isInsertSql(parameterizedSql)) {
+            kind = Kind.INSERT;
+            leastTxIsolation = Connection.TRANSACTION_READ_COMMITTED;
+            multipleRows = sqlHelper.checkInsertMultipleRows(parameterizedSql);
+            // 多行insert的每一行需要单独分析
+            if (!multipleRows) {
+                BinaryResult<List<String>, List<String>> binaryResult = divideColumn(parameterizedSql, sqlHelper);
+                dependentColumnList = binaryResult.getFirstResult();
+                calculableColumnList = binaryResult.getSecondResult();
+            }
+        } else if (SqlUtils.isUpdateSql(parameterizedSql)) {
+            kind = Kind.UPDATE;
+            BinaryResult<List<String>, List<String>> binaryResult = divideColumn(parameterizedSql, sqlHelper);
+            dependentColumnList = binaryResult.getFirstResult();
+            calculableColumnList = binaryResult.getSecondResult();
+            leastTxIsolation = sqlHelper.analysisLeastTxIsolation(parameterizedSql, keyColumn);
+            stableUpdate = sqlHelper.checkStableUpdateSql(parameterizedSql, keyColumn);
+        } else if (SqlUtils.isDeleteSql(parameterizedSql)) {
+            kind = Kind.DELETE;
+            leastTxIsolation = sqlHelper.analysisLeastTxIsolation(parameterizedSql, keyColumn);
+        } else {
+            throw new CdcException("Only support delete, insert, update sql. ");
+        }
+
+        if (Kind.UPDATE.equals(kind) || Kind.DELETE.equals(kind)) {
+            String whereSeg = SqlUtils.extractWhereConditionFromUpdateOrDeleteSql(parameterizedSql, true);
+            lockingReadSql = "select " + keyColumn + " from " + tableConfig.getTableName() + " " + whereSeg + " for update";
+            for (Token token : new DefaultScanner(whereSeg).scanTokens().getSource()) {
+                if (TokenType.PARAMETER.equals(token.getType())) {
+                    whereParameterCount++;
+                }
+            }
+            if (whereParameterCount > 0) {
+                whereParameterOffset = whereParameterOffset(tokenList);
+                if (whereParameterOffset + whereParameterCount > parameterCount) {
+                    throw new CdcException("Cannot locate parameters of where condition in sql: " + parameterizedSql + ". ");
+                }
+            }
+        }
+
+        return new SqlTemplate(tableConfig.getTableName(), parameterizedSql, kind,
+                Collections.unmodifiableList(new ArrayList<>(tokenList)), parameterCount,
+                fragmentList.toArray(new String[0]), dependentColumnList, calculableColumnList, leastTxIsolation, stableUpdate, multipleRows,
+                lockingReadSql, whereParameterOffset, whereParameterCount);
+    }
+
+    /**
+     * @return 最外层 where 之前的参数个数，即 where 条件里第一个参数的下标
+     */
+    private static int whereParameterOffset(List<Token> tokenList) {
+        int depth = 0;
+        int parameterIndex = 0;
+        for (Token token : tokenList) {
+            Object literal = token.getLiteral();
+            if (TokenType.PARAMETER.equals(token.getType())) {
+                parameterIndex++;
+            } else if (TokenType.STRING.equals(token.getType())) {
+                // 字符串常量里的括号和 where 不是语法的一部分
+            } else if ("(".equals(literal)) {
+                depth++;
+            } else if (")".equals(literal)) {
+                depth--;
+            } else if (depth == 0 && literal != null && "where".equalsIgnoreCase(literal.toString())) {
+                return parameterIndex;
+            }
+        }
+        throw new CdcException("Cannot find where condition in sql. ");
+    }
+
+    private static BinaryResult<List<String>, List<String>> divideColumn(String sql, SqlHelper sqlHelper) {
+        BinaryResult<List<String>, List<BinaryResult<String, Curd>>> binaryResult = sqlHelper.divideColumnFromUpdateOrInsertSql(sql);
+        List<String> dependentColumnList = Collections.unmodifiableList(binaryResult.getFirstResult());
+        List<String> calculableColumnList = Collections.unmodifiableList(
+                binaryResult.getSecondResult().stream().map(BinaryResult::getFirstResult).collect(Collectors.toList()));
+        return new BinaryResult<>(dependentColumnList, calculableColumnList);
+    }
+
+    /**
+     * 将参数填入参数位，得到可执行的SQL。常量部分在编译时已经渲染好，这里只格式化参数。
+     */
+    public String render(Object[] parameters, DataFormatterRegistry dataFormatterRegistry) {
+        StringBuilder sql = new StringBuilder(fragmentsLength + (parameterCount << 4));
+        sql.append(fragments[0]);
+        for (int i = 0; i < parameterCount; i++) {
+            sql.append(dataFormatterRegistry.format(parameters[i])).append(fragments[i + 1]);
+        }
+        return sql.toString();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getParameterizedSql() {
+        return parameterizedSql;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public List<Token> getTokenList() {
+        return tokenList;
+    }
+
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    public List<String> getDependentColumnList() {
+        return dependentColumnList;
+    }
+
+    public List<String> getCalculableColumnList() {
+        return calculableColumnList;
+    }
+
+    public int getLeastTxIsolation() {
+        return leastTxIsolation;
+    }
+
+    public boolean isStableUpdate() {
+        return stableUpdate;
+    }
+
+    public boolean isMultipleRows() {
+        return multipleRows;
+    }
+
+    public String getLockingReadSql() {
+        return lockingReadSql;
+    }
+
+    public int getWhereParameterCount() {
+        return whereParameterCount;
+    }
+
+    public int getWhereParameterOffset() {
+        return whereParameterOffset;
+    }
+
+}
@@ -0,0 +1,116 @@
+package cn.addenda.ahacdc;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 以参数化SQL为key的 SqlTemplate 缓存。线程安全，容量有界，超过容量时按写入顺序淘汰最早的模板。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 9:32
+ */
+public class SqlTemplateCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final int maximumSize;
+
+    private final Map<String, SqlTemplate> templateMap = new ConcurrentHashMap<>();
+
+    private final Queue<String> insertionOrderQueue = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    public SqlTemplateCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public SqlTemplateCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new CdcException("maximumSize of SqlTemplateCache must be positive. ");
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * 只查缓存，不编译。
+     */
+    public SqlTemplate getIfPresent(String parameterizedSql) {
+        SqlTemplate sqlTemplate = templateMap.get(parameterizedSql);
+        if (sqlTemplate != null) {
+            hitCount.increment();
+        }
+        return sqlTemplate;
+    }
+
+    public SqlTemplate get(String parameterizedSql, Function<String, SqlTemplate> compiler) {
+        SqlTemplate sqlTemplate = templateMap.get(parameterizedSql);
+        if (sqlTemplate != null) {
+            hitCount.increment();
+            return sqlTemplate;
+        }
+        missCount.increment();
+        // 编译在锁外进行，并发时可能重复编译，但只有一个结果会被缓存
+        sqlTemplate = compiler.apply(parameterizedSql);
+        SqlTemplate previous = templateMap.putIfAbsent(parameterizedSql, sqlTemplate);
+        if (previous != null) {
+            return previous;
+        }
+        insertionOrderQueue.offer(parameterizedSql);
+        while (templateMap.size() > maximumSize) {
+            String eldest = insertionOrderQueue.poll();
+            if (eldest == null) {
+                break;
+            }
+            if (templateMap.remove(eldest) != null) {
+                evictionCount.increment();
+            }
+        }
+        return sqlTemplate;
+    }
+
+    public void clear() {
+        templateMap.clear();
+        insertionOrderQueue.clear();
+    }
+
+    public int size() {
+        return templateMap.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SqlTemplateCache{" +
+                "size=" + size() +
+                ", maximumSize=" + maximumSize +
+                ", hitCount=" + getHitCount() +
+                ", missCount=" + getMissCount() +
+                ", evictionCount=" + getEvictionCount() +
+                '}';
+    }
+
+}
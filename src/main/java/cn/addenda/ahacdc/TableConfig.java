@@ -1,5 +1,11 @@
 package cn.addenda.ahacdc;
 
+import cn.addenda.ahacdc.frame.CompressionStats;
+import cn.addenda.ahacdc.frame.PayloadCodec;
+import cn.addenda.ahacdc.frame.PayloadDictionaryTrainer;
+import cn.addenda.ahacdc.sink.CdcSinkFactory;
+import cn.addenda.ahacdc.sink.CdcSinkStats;
+
 import java.util.List;
 
 /**
@@ -14,14 +20,56 @@ public class TableConfig {
      */
     public static final String CM_STATEMENT = "s";
 
+    /**
+     * 只记录值发生变化的字段及其变更前后的值（RowDiff），没有字段变化的行不记录
+     */
+    public static final String CM_DIFF = "d";
+
     private final String tableName;
     private final String keyColumn;
     private final List<String> cdcModeList;
+    private final KeyPredicatePlanner keyPredicatePlanner;
+
+    /**
+     * 为 true 时 row 模式记录编码后的 RowImage（row_image 字段），不记录SQL（executable_sql 字段）。
+     */
+    private volatile boolean rowImage = false;
+
+    /**
+     * 不为 null 时，每批 cdc 数据压缩为一个 frame，写入 cdc 表的 frame 字段。
+     */
+    private volatile PayloadCodec payloadCodec;
+
+    /**
+     * 不为 null 时，写入的数据作为样本用于生成压缩字典。
+     */
+    private volatile PayloadDictionaryTrainer payloadDictionaryTrainer;
+
+    private final CompressionStats compressionStats = new CompressionStats();
+
+    /**
+     * 为 null 时使用 CdcDataSource 的默认 sink。只对之后开始的事务生效。
+     */
+    private volatile CdcSinkFactory cdcSinkFactory;
+
+    private final CdcSinkStats cdcSinkStats = new CdcSinkStats();
+
+    /**
+     * 为 true 时 update 和 delete 的加锁读同时查出变更前的行（before-image），省去依赖字段的查询。
+     * 开启 rowImage 时 before-image 记录在 RowImage 里。
+     */
+    private volatile boolean beforeImage = false;
+
+    /**
+     * before-image 包含的字段，为 null 时包含所有字段。
+     */
+    private volatile List<String> beforeImageColumnList;
 
     public TableConfig(String tableName, String keyColumn, List<String> cdcModeList) {
         this.tableName = tableName;
         this.keyColumn = keyColumn;
         this.cdcModeList = cdcModeList;
+        this.keyPredicatePlanner = new KeyPredicatePlanner(keyColumn);
     }
 
     public String getTableName() {
@@ -35,4 +83,68 @@ public class TableConfig {
     public List<String> getCdcModeList() {
         return cdcModeList;
     }
+
+    public KeyPredicatePlanner getKeyPredicatePlanner() {
+        return keyPredicatePlanner;
+    }
+
+    public boolean isRowImage() {
+        return rowImage;
+    }
+
+    public void setRowImage(boolean rowImage) {
+        this.rowImage = rowImage;
+    }
+
+    public PayloadCodec getPayloadCodec() {
+        return payloadCodec;
+    }
+
+    public void setPayloadCodec(PayloadCodec payloadCodec) {
+        this.payloadCodec = payloadCodec;
+    }
+
+    public PayloadDictionaryTrainer getPayloadDictionaryTrainer() {
+        return payloadDictionaryTrainer;
+    }
+
+    public void setPayloadDictionaryTrainer(PayloadDictionaryTrainer payloadDictionaryTrainer) {
+        this.payloadDictionaryTrainer = payloadDictionaryTrainer;
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    public CdcSinkFactory getCdcSinkFactory() {
+        return cdcSinkFactory;
+    }
+
+    public void setCdcSinkFactory(CdcSinkFactory cdcSinkFactory) {
+        this.cdcSinkFactory = cdcSinkFactory;
+    }
+
+    public CdcSinkStats getCdcSinkStats() {
+        return cdcSinkStats;
+    }
+
+    public boolean isBeforeImage() {
+        return beforeImage;
+    }
+
+    public void setBeforeImage(boolean beforeImage) {
+        this.beforeImage = beforeImage;
+    }
+
+    public List<String> getBeforeImageColumnList() {
+        return beforeImageColumnList;
+    }
+
+    public void setBeforeImageColumnList(List<String> beforeImageColumnList) {
+        this.beforeImageColumnList = beforeImageColumnList;
+    }
+
+    public void setMaxInSize(int maxInSize) {
+        keyPredicatePlanner.setMaxInSize(maxInSize);
+    }
 }
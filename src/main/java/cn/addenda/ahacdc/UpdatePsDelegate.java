@@ -1,19 +1,23 @@
 package cn.addenda.ahacdc;
 
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.collection.LongLinkedHashSet;
+import cn.addenda.ahacdc.collection.LongObjectHashMap;
+import cn.addenda.ahacdc.rowimage.BeforeImage;
+import cn.addenda.ahacdc.rowimage.RowDiff;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import cn.addenda.ahacdc.sql.RowUpdatePipeline;
 import cn.addenda.businesseasy.asynctask.BinaryResult;
-import cn.addenda.businesseasy.util.BEListUtils;
-import cn.addenda.ro.grammar.ast.expression.Curd;
 import cn.addenda.ro.grammar.lexical.token.Token;
-import cn.addenda.ro.util.SqlUtils;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * @author addenda
@@ -33,110 +37,264 @@ public class UpdatePsDelegate extends AbstractPsDelegate {
      */
     private final List<String> calculableColumnList;
 
-    public UpdatePsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, String parameterizedSql) {
-        super(cdcConnection, ps, tableConfig, parameterizedSql);
-        BinaryResult<List<String>, List<BinaryResult<String, Curd>>> binaryResult = sqlHelper.divideColumnFromUpdateOrInsertSql(parameterizedSql);
-        dependentColumnList = binaryResult.getFirstResult();
-        calculableColumnList = binaryResult.getSecondResult().stream().map(BinaryResult::getFirstResult).collect(Collectors.toList());
-        leastTxIsolation = sqlHelper.analysisLeastTxIsolation(parameterizedSql, keyColumn);
+    public UpdatePsDelegate(CdcConnection cdcConnection, PreparedStatement ps, TableConfig tableConfig, SqlTemplate sqlTemplate) {
+        super(cdcConnection, ps, tableConfig, sqlTemplate);
+        dependentColumnList = sqlTemplate.getDependentColumnList();
+        calculableColumnList = sqlTemplate.getCalculableColumnList();
+        leastTxIsolation = sqlTemplate.getLeastTxIsolation();
     }
 
     @Override
-    protected <T> void doAssert(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException {
+    protected <T> void doAssert(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException {
         assertTxIsolationNotLessThan(leastTxIsolation);
         // 对于batch模式，需要是 stable sql
-        if (executableSqlList.size() > 1) {
-            assertStableUpdateSql(parameterizedSql);
-        }
-    }
-
-    private void assertStableUpdateSql(String sql) {
-        if (!sqlHelper.checkStableUpdateSql(sql, keyColumn)) {
+        if (executableSqlList.size() > 1 && !sqlTemplate.isStableUpdate()) {
             throw new CdcException("update sql cannot update column which in where-condition and primary key column when sql in batch mode. ");
         }
     }
 
     @Override
-    public <T> T doExecute(List<String> executableSqlList, PsInvocation<T> pi) throws SQLException {
+    public <T> T doExecute(ExecutableSqlList executableSqlList, PsInvocation<T> pi) throws SQLException {
 
         // -------------------------------------
         //  对于Statement模式来说，记录下来SQL就行了
         // -------------------------------------
         if (checkTableMode(TableConfig.CM_STATEMENT)) {
-            List<String> statementCdcSqlList = new ArrayList<>(executableSqlList);
-            executeCdcSql(TableConfig.CM_STATEMENT, statementCdcSqlList);
+            executeCdcSql(TableConfig.CM_STATEMENT, executableSqlList);
         }
 
+        // select 获取主键值。batch 模式下多条SQL的加锁读合并执行。ROW模式和DIFF模式共用。
+        List<LongArrayList> keyValueListList = null;
+        // 开启 before-image 时加锁读同时查出变更前的行
+        BeforeImage beforeImage = newBeforeImage();
+
         // ----------------------------------
         //  对于ROW模式，需要记录下来具体更新的行。
         // ----------------------------------
         if (checkTableMode(TableConfig.CM_ROW)) {
-            List<String> rowCdcSqlList = new ArrayList<>();
-            try (Statement keyValueStatement = cdcConnection.getDelegate().createStatement()) {
-                for (String executableSql : executableSqlList) {
-                    // select 获取主键值。
-                    List<Long> keyValueList = lockKey(keyValueStatement, executableSql);
-
-                    // 进行 1:n -> 1:1 优化
-                    if (dependentColumnList.isEmpty()) {
-                        List<List<Long>> listList = BEListUtils.splitList(keyValueList, IN_SIZE);
-                        for (List<Long> item : listList) {
-                            String rowCdcSql = SqlUtils.replaceDmlWhereSeg(executableSql, "where " + keyColumn + " in (" + longListToString(item) + ")");
-                            rowCdcSqlList.add(sqlHelper.updateOrInsertUpdateColumnValue(rowCdcSql, Collections.EMPTY_MAP));
-                        }
+            // 每条 executable sql 只解析一次，得到 update 段及其对应的主键
+            List<BinaryResult<String, LongArrayList>> updateSegKeyValueList = new ArrayList<>();
+            // 开启 rowImage 时，第 i 个元素是 updateSegKeyValueList 第 i 个 update 段里字段的值
+            boolean rowImage = tableConfig.isRowImage();
+            List<String> columnList = null;
+            List<List<Token>> valueTokenListList = new ArrayList<>();
+            keyValueListList = lockKeys(executableSqlList, beforeImage);
+            for (int i = 0; i < executableSqlList.size(); i++) {
+                LongArrayList keyValueList = keyValueListList.get(i);
+                if (keyValueList.isEmpty()) {
+                    continue;
+                }
+
+                RowUpdatePipeline pipeline = sqlHelper.parseRowUpdate(executableSqlList.get(i))
+                        .calculate(calculableColumnList, dataFormatterRegistry);
+                // 进行 1:n -> 1:1 优化
+                if (rowImage && columnList == null) {
+                    columnList = pipeline.getColumnList();
+                }
+                if (dependentColumnList.isEmpty()) {
+                    updateSegKeyValueList.add(new BinaryResult<>(pipeline.renderUpdateSeg(), keyValueList));
+                    if (rowImage) {
+                        valueTokenListList.add(pipeline.getValueTokenList());
                     }
-                    // 无法进行 1:n -> 1:1 优化
-                    else {
-                        try (Statement statement = cdcConnection.getDelegate().createStatement()) {
-                            Map<Long, Map<String, Token>> keyColumnTokenMap = queryKeyColumnTokenMap(statement, keyValueList, dependentColumnList);
-                            for (Long keyValue : keyValueList) {
-                                String rowCdcSql = SqlUtils.replaceDmlWhereSeg(executableSql, "where " + keyColumn + " = " + keyValue);
-                                Map<String, Token> columnTokenMap = keyColumnTokenMap.get(keyValue);
-                                rowCdcSqlList.add(sqlHelper.updateOrInsertUpdateColumnValue(rowCdcSql, columnTokenMap));
+                }
+                // 无法进行 1:n -> 1:1 优化
+                else {
+                    try (Statement statement = cdcConnection.getDelegate().createStatement()) {
+                        LongObjectHashMap<Token[]> keyColumnTokens = beforeImage != null
+                                ? beforeImage.project(keyValueList, dependentColumnList)
+                                : queryKeyColumnTokens(statement, keyValueList, dependentColumnList);
+                        for (int j = 0; j < keyValueList.size(); j++) {
+                            long keyValue = keyValueList.get(j);
+                            String updateSeg = pipeline.assign(dependentColumnList, keyColumnTokens.get(keyValue)).renderUpdateSeg();
+                            updateSegKeyValueList.add(new BinaryResult<>(updateSeg, LongArrayList.of(keyValue)));
+                            if (rowImage) {
+                                valueTokenListList.add(pipeline.getValueTokenList());
                             }
                         }
                     }
                 }
             }
 
-            if (!calculableColumnList.isEmpty()) {
-                List<String> tmpSqlList = new ArrayList<>(rowCdcSqlList);
-                rowCdcSqlList.clear();
-                for (String sql : tmpSqlList) {
-                    rowCdcSqlList.add(sqlHelper.updateOrInsertCalculateColumnValue(sql, calculableColumnList, dataFormatterRegistry));
+            // 1:1 -> n:1 优化
+            List<String> rowCdcSqlList = new ArrayList<>();
+            List<RowImage> rowImageList = new ArrayList<>();
+            LongArrayList sameUpdateSegKeyValueList = new LongArrayList();
+            int preIndex = -1;
+            for (int i = 0; i < updateSegKeyValueList.size(); i++) {
+                BinaryResult<String, LongArrayList> binaryResult = updateSegKeyValueList.get(i);
+                if (preIndex != -1 && !updateSegKeyValueList.get(preIndex).getFirstResult().equals(binaryResult.getFirstResult())) {
+                    if (rowImage) {
+                        rowImageList.addAll(assembleRowUpdateImageList(columnList, valueTokenListList.get(preIndex), sameUpdateSegKeyValueList, beforeImage));
+                    } else {
+                        rowCdcSqlList.addAll(assembleRowUpdateSqlList(updateSegKeyValueList.get(preIndex).getFirstResult(), sameUpdateSegKeyValueList));
+                    }
+                    sameUpdateSegKeyValueList = new LongArrayList();
                 }
+                sameUpdateSegKeyValueList.addAll(binaryResult.getSecondResult());
+                preIndex = i;
             }
-
-            // 1:1 -> n:1 优化
-            List<String> tmpSqlList = new ArrayList<>(rowCdcSqlList);
-            rowCdcSqlList.clear();
-            List<Long> sameUpdateSegKeyValueList = new ArrayList<>();
-            String preUpdateSeg = null;
-            for (String rowCdcSql : tmpSqlList) {
-                BinaryResult<String, List<Long>> binaryResult = sqlHelper.separateUpdateSegAndKeyValues(rowCdcSql);
-                String curUpdateSeg = binaryResult.getFirstResult();
-                if (preUpdateSeg == null || preUpdateSeg.equals(curUpdateSeg)) {
-                    sameUpdateSegKeyValueList.addAll(binaryResult.getSecondResult());
+            if (preIndex != -1) {
+                if (rowImage) {
+                    rowImageList.addAll(assembleRowUpdateImageList(columnList, valueTokenListList.get(preIndex), sameUpdateSegKeyValueList, beforeImage));
                 } else {
-                    rowCdcSqlList.addAll(assembleRowUpdateSqlList(preUpdateSeg, sameUpdateSegKeyValueList));
-                    sameUpdateSegKeyValueList.clear();
-                    sameUpdateSegKeyValueList.addAll(binaryResult.getSecondResult());
+                    rowCdcSqlList.addAll(assembleRowUpdateSqlList(updateSegKeyValueList.get(preIndex).getFirstResult(), sameUpdateSegKeyValueList));
                 }
-                preUpdateSeg = curUpdateSeg;
             }
-            rowCdcSqlList.addAll(assembleRowUpdateSqlList(preUpdateSeg, sameUpdateSegKeyValueList));
 
             executeCdcSql(TableConfig.CM_ROW, rowCdcSqlList);
+            executeCdcRowImages(rowImageList);
         }
 
-        return pi.invoke();
+        // ------------------------------------------------
+        //  对于DIFF模式，和更新前的行比较，只记录值发生变化的字段。
+        // ------------------------------------------------
+        DiffSnapshot diffSnapshot = null;
+        if (checkTableMode(TableConfig.CM_DIFF)) {
+            if (keyValueListList == null) {
+                keyValueListList = lockKeys(executableSqlList, beforeImage);
+            }
+            if (dependentColumnList.isEmpty()) {
+                executeCdcDiffs(assembleRowDiffList(executableSqlList, keyValueListList, beforeImage));
+            } else {
+                diffSnapshot = snapshotBeforeValues(executableSqlList, keyValueListList, beforeImage);
+            }
+        }
+
+        T result = pi.invoke();
+        if (diffSnapshot != null) {
+            executeCdcDiffs(diffSnapshot.diff());
+        }
+        return result;
     }
 
-    private List<String> assembleRowUpdateSqlList(String updateSeg, List<Long> keyValueList) {
+    /**
+     * 依赖字段（比如 a = a + 1）更新之后的值只能从数据库里取：SQL执行之前查询变更前的值，执行之后在仍然持有的锁下查询变更后的值。
+     * batch 模式下每个主键只比较整批SQL执行前后的值，产生一个 RowDiff。
+     */
+    private DiffSnapshot snapshotBeforeValues(ExecutableSqlList executableSqlList, List<LongArrayList> keyValueListList,
+                                              BeforeImage beforeImage) throws SQLException {
+        LongLinkedHashSet keyValueSet = new LongLinkedHashSet();
+        for (LongArrayList keyValueList : keyValueListList) {
+            keyValueSet.addAll(keyValueList);
+        }
+        if (keyValueSet.isEmpty()) {
+            return null;
+        }
+        LongArrayList keyValueList = keyValueSet.toList();
+        // 同一条参数化SQL，每条SQL更新的字段相同
+        List<String> columnList = sqlHelper.parseRowUpdate(executableSqlList.get(0)).getColumnList();
+        LongObjectHashMap<Token[]> beforeTokens;
+        if (beforeImage != null && beforeImage.containsColumns(columnList)) {
+            beforeTokens = beforeImage.project(keyValueList, columnList);
+        } else {
+            try (Statement statement = cdcConnection.getDelegate().createStatement()) {
+                beforeTokens = queryKeyColumnTokens(statement, keyValueList, columnList);
+            }
+        }
+        return new DiffSnapshot(keyValueList, columnList, beforeTokens);
+    }
+
+    private class DiffSnapshot {
+
+        private final LongArrayList keyValueList;
+
+        private final List<String> columnList;
+
+        private final LongObjectHashMap<Token[]> beforeTokens;
+
+        DiffSnapshot(LongArrayList keyValueList, List<String> columnList, LongObjectHashMap<Token[]> beforeTokens) {
+            this.keyValueList = keyValueList;
+            this.columnList = columnList;
+            this.beforeTokens = beforeTokens;
+        }
+
+        List<RowDiff> diff() throws SQLException {
+            LongObjectHashMap<Token[]> afterTokens;
+            try (Statement statement = cdcConnection.getDelegate().createStatement()) {
+                afterTokens = queryKeyColumnTokens(statement, keyValueList, columnList);
+            }
+            List<RowDiff> rowDiffList = new ArrayList<>();
+            for (int i = 0; i < keyValueList.size(); i++) {
+                long keyValue = keyValueList.get(i);
+                RowDiff rowDiff = RowDiff.ofUpdate(keyValue, columnList,
+                        RowImage.toValueList(Arrays.asList(beforeTokens.get(keyValue))),
+                        RowImage.toValueList(Arrays.asList(afterTokens.get(keyValue))));
+                if (rowDiff != null) {
+                    rowDiffList.add(rowDiff);
+                }
+            }
+            return rowDiffList;
+        }
+    }
+
+    /**
+     * 加锁读之后、SQL执行之前查询的行就是变更前的值。before-image 包含需要的字段时不再查询。
+     * 没有依赖字段时，变更后的值就是SQL里的值。
+     */
+    private List<RowDiff> assembleRowDiffList(ExecutableSqlList executableSqlList, List<LongArrayList> keyValueListList,
+                                              BeforeImage beforeImage) throws SQLException {
+        List<RowDiff> rowDiffList = new ArrayList<>();
+        // batch 模式下前面的SQL修改过的字段，后面的SQL以修改之后的值作为变更前的值
+        LongObjectHashMap<Map<String, Object>> changedValueMap = new LongObjectHashMap<>();
+        try (Statement statement = cdcConnection.getDelegate().createStatement()) {
+            for (int i = 0; i < executableSqlList.size(); i++) {
+                LongArrayList keyValueList = keyValueListList.get(i);
+                if (keyValueList.isEmpty()) {
+                    continue;
+                }
+                RowUpdatePipeline pipeline = sqlHelper.parseRowUpdate(executableSqlList.get(i))
+                        .calculate(calculableColumnList, dataFormatterRegistry);
+                List<String> columnList = pipeline.getColumnList();
+                LongObjectHashMap<Token[]> keyColumnTokens = beforeImage != null && beforeImage.containsColumns(columnList)
+                        ? beforeImage.project(keyValueList, columnList)
+                        : queryKeyColumnTokens(statement, keyValueList, columnList);
+                List<Object> afterValueList = RowImage.toValueList(pipeline.getValueTokenList());
+                for (int j = 0; j < keyValueList.size(); j++) {
+                    long keyValue = keyValueList.get(j);
+                    List<Object> beforeValueList = RowImage.toValueList(Arrays.asList(keyColumnTokens.get(keyValue)));
+                    Map<String, Object> changedValues = changedValueMap.get(keyValue);
+                    if (changedValues != null) {
+                        for (int k = 0; k < columnList.size(); k++) {
+                            if (changedValues.containsKey(columnList.get(k))) {
+                                beforeValueList.set(k, changedValues.get(columnList.get(k)));
+                            }
+                        }
+                    }
+                    RowDiff rowDiff = RowDiff.ofUpdate(keyValue, columnList, beforeValueList, afterValueList);
+                    if (rowDiff == null) {
+                        continue;
+                    }
+                    rowDiffList.add(rowDiff);
+                    if (executableSqlList.size() > 1) {
+                        if (changedValues == null) {
+                            changedValues = new HashMap<>();
+                            changedValueMap.put(keyValue, changedValues);
+                        }
+                        for (int k = 0; k < rowDiff.getColumnList().size(); k++) {
+                            changedValues.put(rowDiff.getColumnList().get(k), rowDiff.getAfterValueList().get(k));
+                        }
+                    }
+                }
+            }
+        }
+        return rowDiffList;
+    }
+
+    private List<String> assembleRowUpdateSqlList(String updateSeg, LongArrayList keyValueList) {
         List<String> rowCdcSqlList = new ArrayList<>();
-        List<List<Long>> listList = BEListUtils.splitList(keyValueList, IN_SIZE);
-        listList.forEach(item -> rowCdcSqlList.add(updateSeg + " where " + keyColumn + " in (" + longListToString(item) + ")"));
+        for (KeyPredicatePlanner.KeyPredicate keyPredicate : planKeyPredicate(keyValueList)) {
+            rowCdcSqlList.add(updateSeg + " where " + keyPredicate.getPredicate());
+        }
         return rowCdcSqlList;
     }
 
+    private List<RowImage> assembleRowUpdateImageList(List<String> columnList, List<Token> valueTokenList,
+                                                      LongArrayList keyValueList, BeforeImage beforeImage) {
+        List<RowImage> rowImageList = new ArrayList<>();
+        for (LongArrayList item : splitKeyValueList(keyValueList)) {
+            rowImageList.add(RowImage.ofTokens(RowImage.Op.UPDATE, item, columnList, valueTokenList, beforeImage));
+        }
+        return rowImageList;
+    }
+
 }
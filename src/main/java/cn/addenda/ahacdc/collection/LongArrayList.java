@@ -0,0 +1,158 @@
+package cn.addenda.ahacdc.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * 基于 long[] 的可扩容列表，避免主键装箱。
+ * <p>
+ * subList 和 split 返回的是共享底层数组的只读视图，不复制数据。视图创建之后不要再修改原列表。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 13:50
+ */
+public class LongArrayList {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] elements;
+
+    private final int offset;
+
+    private int size;
+
+    private final boolean view;
+
+    public LongArrayList() {
+        this(8);
+    }
+
+    public LongArrayList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must not be negative: " + initialCapacity);
+        }
+        this.elements = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+        this.offset = 0;
+        this.size = 0;
+        this.view = false;
+    }
+
+    private LongArrayList(long[] elements, int offset, int size) {
+        this.elements = elements;
+        this.offset = offset;
+        this.size = size;
+        this.view = true;
+    }
+
+    public static LongArrayList of(long... values) {
+        LongArrayList list = new LongArrayList(values.length);
+        System.arraycopy(values, 0, list.elements, 0, values.length);
+        list.size = values.length;
+        return list;
+    }
+
+    public void add(long value) {
+        assertModifiable();
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+    }
+
+    public void addAll(LongArrayList other) {
+        assertModifiable();
+        int newSize = size + other.size;
+        if (newSize > elements.length) {
+            grow(newSize);
+        }
+        System.arraycopy(other.elements, other.offset, elements, size, other.size);
+        size = newSize;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return elements[offset + index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        assertModifiable();
+        size = 0;
+    }
+
+    /**
+     * @return [fromIndex, toIndex) 的只读视图
+     */
+    public LongArrayList subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size);
+        }
+        return new LongArrayList(elements, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    /**
+     * 按 chunkSize 切分为若干只读视图，最后一段可能不足 chunkSize。
+     */
+    public List<LongArrayList> split(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        List<LongArrayList> chunkList = new ArrayList<>((size + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < size; from += chunkSize) {
+            chunkList.add(subList(from, Math.min(from + chunkSize, size)));
+        }
+        return chunkList;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOfRange(elements, offset, offset + size);
+    }
+
+    public void forEach(LongConsumer consumer) {
+        for (int i = offset; i < offset + size; i++) {
+            consumer.accept(elements[i]);
+        }
+    }
+
+    /**
+     * 拼接为 1,2,3 这样的字符串，用于 in 条件。
+     */
+    public String join(String delimiter) {
+        StringBuilder sb = new StringBuilder(size * 8);
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                sb.append(delimiter);
+            }
+            sb.append(elements[offset + i]);
+        }
+        return sb.toString();
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, elements.length + (elements.length >> 1) + 1);
+        elements = Arrays.copyOf(elements, newCapacity);
+    }
+
+    private void assertModifiable() {
+        if (view) {
+            throw new UnsupportedOperationException("LongArrayList view is read-only. ");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[" + join(", ") + "]";
+    }
+
+}
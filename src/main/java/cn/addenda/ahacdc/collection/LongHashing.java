@@ -0,0 +1,20 @@
+package cn.addenda.ahacdc.collection;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/18 13:56
+ */
+final class LongHashing {
+
+    private LongHashing() {
+    }
+
+    /**
+     * 自增主键的低位几乎是连续的，需要打散之后再取模。
+     */
+    static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,109 @@
+package cn.addenda.ahacdc.collection;
+
+/**
+ * 保持插入顺序的 long 集合。开放寻址（线性探测），哈希表里只存元素在 elements 中的下标。
+ * <p>
+ * 只支持添加，不支持删除。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 13:55
+ */
+public class LongLinkedHashSet {
+
+    private final LongArrayList elements;
+
+    /**
+     * 存 elements 的下标 + 1，0 表示空槽
+     */
+    private int[] table;
+
+    private int mask;
+
+    public LongLinkedHashSet() {
+        this(16);
+    }
+
+    public LongLinkedHashSet(int expectedSize) {
+        elements = new LongArrayList(Math.max(expectedSize, 4));
+        int capacity = tableSizeFor(expectedSize);
+        table = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return value 不在集合中时返回 true
+     */
+    public boolean add(long value) {
+        int index = indexOf(value);
+        if (table[index] != 0) {
+            return false;
+        }
+        elements.add(value);
+        table[index] = elements.size();
+        if (elements.size() * 4 >= table.length * 3) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    public void addAll(LongArrayList values) {
+        for (int i = 0; i < values.size(); i++) {
+            add(values.get(i));
+        }
+    }
+
+    public boolean contains(long value) {
+        return table[indexOf(value)] != 0;
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    public boolean isEmpty() {
+        return elements.isEmpty();
+    }
+
+    /**
+     * @return 按插入顺序排列的元素的只读视图
+     */
+    public LongArrayList toList() {
+        return elements.subList(0, elements.size());
+    }
+
+    private int indexOf(long value) {
+        int index = LongHashing.mix(value) & mask;
+        int slot;
+        while ((slot = table[index]) != 0 && elements.get(slot - 1) != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < elements.size(); i++) {
+            int index = LongHashing.mix(elements.get(i)) & mask;
+            while (table[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            table[index] = i + 1;
+        }
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        // 负载因子不超过 0.75
+        int capacity = 4;
+        while (capacity * 3 <= expectedSize * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return elements.toString();
+    }
+
+}
@@ -0,0 +1,94 @@
+package cn.addenda.ahacdc.collection;
+
+/**
+ * key 为 long 的哈希表。开放寻址（线性探测），不支持 null 值，不支持删除。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 14:00
+ */
+public class LongObjectHashMap<V> {
+
+    private long[] keys;
+
+    /**
+     * values[i] 为 null 表示空槽
+     */
+    private Object[] values;
+
+    private int mask;
+
+    private int size;
+
+    public LongObjectHashMap() {
+        this(16);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        int capacity = LongLinkedHashSet.tableSizeFor(expectedSize);
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return key 之前对应的值，不存在时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("LongObjectHashMap does not support null value. ");
+        }
+        int index = indexOf(key);
+        Object previous = values[index];
+        keys[index] = key;
+        values[index] = value;
+        if (previous == null && ++size * 4 >= keys.length * 3) {
+            rehash(keys.length << 1);
+        }
+        return (V) previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[indexOf(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return values[indexOf(key)] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int indexOf(long key) {
+        int index = LongHashing.mix(key) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = LongHashing.mix(oldKeys[i]) & mask;
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+}
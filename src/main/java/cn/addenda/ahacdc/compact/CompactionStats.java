@@ -0,0 +1,88 @@
+package cn.addenda.ahacdc.compact;
+
+/**
+ * 一次压缩的统计。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 2:35
+ */
+public class CompactionStats {
+
+    private long chunkCount;
+
+    /**
+     * 包含SQL记录，没有压缩的块
+     */
+    private long skippedChunkCount;
+
+    private long readRowCount;
+
+    private long writtenRowCount;
+
+    private long changeCount;
+
+    private long netChangeCount;
+
+    private long elapsedMillis;
+
+    void recordChunk(long readRowCount, long writtenRowCount, long changeCount, long netChangeCount) {
+        this.chunkCount++;
+        this.readRowCount += readRowCount;
+        this.writtenRowCount += writtenRowCount;
+        this.changeCount += changeCount;
+        this.netChangeCount += netChangeCount;
+    }
+
+    void recordSkippedChunk(long readRowCount) {
+        this.chunkCount++;
+        this.skippedChunkCount++;
+        this.readRowCount += readRowCount;
+        this.writtenRowCount += readRowCount;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getChunkCount() {
+        return chunkCount;
+    }
+
+    public long getSkippedChunkCount() {
+        return skippedChunkCount;
+    }
+
+    public long getReadRowCount() {
+        return readRowCount;
+    }
+
+    public long getWrittenRowCount() {
+        return writtenRowCount;
+    }
+
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    public long getNetChangeCount() {
+        return netChangeCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactionStats{" +
+                "chunkCount=" + chunkCount +
+                ", skippedChunkCount=" + skippedChunkCount +
+                ", readRowCount=" + readRowCount +
+                ", writtenRowCount=" + writtenRowCount +
+                ", changeCount=" + changeCount +
+                ", netChangeCount=" + netChangeCount +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+
+}
@@ -0,0 +1,244 @@
+package cn.addenda.ahacdc.compact;
+
+import cn.addenda.ahacdc.CdcConnection;
+import cn.addenda.ahacdc.CdcDataSource;
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.KeyPredicatePlanner;
+import cn.addenda.ahacdc.TableConfig;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.frame.CdcFrame;
+import cn.addenda.ahacdc.frame.CdcFrameCodec;
+import cn.addenda.ahacdc.frame.PayloadCodec;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import cn.addenda.ahacdc.replay.ReplayCheckpoint;
+import cn.addenda.ahacdc.rowimage.RowImageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 压缩 row 模式的 cdc 表（table_cdc_r）：同一个主键的多次变更合并为一次净变更，见 {@link RowChangeFolder}。
+ * <p>
+ * 只能压缩已经关闭的 id 范围：范围内不能再有未提交的事务写入，由调用方保证。
+ * 范围还必须已经被所有消费者消费过：压缩之后主键的变更可能移到更小的 id 上，从范围中间的 checkpoint 继续消费的消费者会漏掉这些变更。
+ * 所以创建时需要传入所有消费者的 ReplayCheckpoint，toId 大于其中任何一个 checkpoint 时拒绝压缩。
+ * 范围按 chunkSize 行切块，每块一个事务：读取块内的记录，合并之后按顺序写回块内最小的若干个 id，其余的 id 删除。
+ * 所以 id 的顺序不变，也不占用新的自增 id。字段和值相同的净变更合并为多主键的 RowImage。块内有记录SQL的行时整块跳过。
+ * <p>
+ * 事务使用 READ_COMMITTED，只锁块内的行，不加间隙锁，不阻塞写入新的 cdc 记录。合并只在块内进行，块越大压缩得越多。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 2:40
+ */
+public class RowCdcCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowCdcCompactor.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private final CdcDataSource cdcDataSource;
+
+    private final String tableName;
+
+    private final String cdcTableName;
+
+    private final PayloadCodec payloadCodec;
+
+    private final KeyPredicatePlanner keyPredicatePlanner;
+
+    private final List<ReplayCheckpoint> consumerCheckpointList;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * @param consumerCheckpoints cdc 表所有消费者的 checkpoint，至少一个
+     */
+    public RowCdcCompactor(CdcDataSource cdcDataSource, String tableName, ReplayCheckpoint... consumerCheckpoints) {
+        TableConfig tableConfig = cdcDataSource.getTableConfig(tableName);
+        if (tableConfig == null) {
+            throw new CdcException("Table " + tableName + " is not configured in CdcDataSource. ");
+        }
+        if (consumerCheckpoints.length == 0) {
+            throw new CdcException("Checkpoints of all consumers of " + tableName + " are required. ");
+        }
+        this.consumerCheckpointList = Arrays.asList(consumerCheckpoints);
+        this.cdcDataSource = cdcDataSource;
+        this.tableName = tableName;
+        this.cdcTableName = tableName + "_cdc_" + TableConfig.CM_ROW;
+        this.payloadCodec = tableConfig.getPayloadCodec();
+        this.keyPredicatePlanner = tableConfig.getKeyPredicatePlanner();
+    }
+
+    /**
+     * 压缩 id 在 [fromId, toId] 之间的记录。
+     */
+    public CompactionStats compact(long fromId, long toId) throws SQLException, IOException {
+        for (ReplayCheckpoint consumerCheckpoint : consumerCheckpointList) {
+            long checkpoint = consumerCheckpoint.load();
+            if (toId > checkpoint) {
+                throw new CdcException("Cannot compact " + cdcTableName + " up to id " + toId
+                        + ", which is beyond a consumer checkpoint: " + checkpoint + ". ");
+            }
+        }
+        long start = System.currentTimeMillis();
+        CompactionStats compactionStats = new CompactionStats();
+        // cdc 表不是配置的表，直接使用被代理的连接
+        try (CdcConnection cdcConnection = (CdcConnection) cdcDataSource.getConnection()) {
+            Connection connection = cdcConnection.getDelegate();
+            int txIsolation = connection.getTransactionIsolation();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            connection.setAutoCommit(false);
+            try {
+                long position = fromId - 1;
+                while (position < toId) {
+                    try {
+                        position = compactChunk(connection, position, toId, compactionStats);
+                        connection.commit();
+                    } catch (SQLException | RuntimeException e) {
+                        connection.rollback();
+                        throw e;
+                    }
+                }
+            } finally {
+                // 连接可能来自连接池，恢复原来的设置
+                connection.setAutoCommit(autoCommit);
+                connection.setTransactionIsolation(txIsolation);
+            }
+        }
+        compactionStats.setElapsedMillis(System.currentTimeMillis() - start);
+        if (logger.isInfoEnabled()) {
+            logger.info("Compact {} [{}, {}] finished, {}. ", cdcTableName, fromId, toId, compactionStats);
+        }
+        return compactionStats;
+    }
+
+    /**
+     * @return 块内最后一个 id，没有记录时返回 toId
+     */
+    private long compactChunk(Connection connection, long position, long toId, CompactionStats compactionStats) throws SQLException {
+        String sql = "select * from " + cdcTableName + " where id > ? and id <= ? order by id limit ? for update";
+        LongArrayList idList = new LongArrayList();
+        RowChangeFolder rowChangeFolder = new RowChangeFolder();
+        boolean containsSql = false;
+        boolean frameColumn;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, position);
+            ps.setLong(2, toId);
+            ps.setInt(3, chunkSize);
+            try (ResultSet resultSet = ps.executeQuery()) {
+                Set<String> columnSet = columnSet(resultSet.getMetaData());
+                frameColumn = columnSet.contains("frame");
+                while (resultSet.next()) {
+                    long id = resultSet.getLong("id");
+                    idList.add(id);
+                    if (!containsSql) {
+                        containsSql = !foldRow(rowChangeFolder, id, resultSet, columnSet);
+                    }
+                }
+            }
+        }
+        if (idList.isEmpty()) {
+            return toId;
+        }
+        long lastId = idList.get(idList.size() - 1);
+        if (containsSql) {
+            compactionStats.recordSkippedChunk(idList.size());
+            return idList.size() < chunkSize ? toId : lastId;
+        }
+
+        List<RowImage> netChangeList = rowChangeFolder.fold(keyPredicatePlanner.getMaxInSize());
+        List<byte[]> rowList = encode(netChangeList, frameColumn);
+        // 写回最小的 rowList.size() 个 id，其余的删除
+        String updateSql = payloadCodec != null && frameColumn
+                ? "update " + cdcTableName + " set frame = ? where id = ?"
+                : "update " + cdcTableName + " set row_image = ?" + (frameColumn ? ", frame = null" : "") + " where id = ?";
+        try (PreparedStatement ps = connection.prepareStatement(updateSql)) {
+            for (int i = 0; i < rowList.size(); i++) {
+                ps.setBytes(1, rowList.get(i));
+                ps.setLong(2, idList.get(i));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        if (rowList.size() < idList.size()) {
+            try (PreparedStatement ps = connection.prepareStatement("delete from " + cdcTableName + " where id >= ? and id <= ?")) {
+                ps.setLong(1, idList.get(rowList.size()));
+                ps.setLong(2, lastId);
+                ps.executeUpdate();
+            }
+        }
+        compactionStats.recordChunk(idList.size(), rowList.size(), rowChangeFolder.getChangeCount(), netChangeList.size());
+        return idList.size() < chunkSize ? toId : lastId;
+    }
+
+    /**
+     * @return 行里记录的是SQL时返回 false
+     */
+    private boolean foldRow(RowChangeFolder rowChangeFolder, long id, ResultSet resultSet, Set<String> columnSet) throws SQLException {
+        byte[] frame = columnSet.contains("frame") ? resultSet.getBytes("frame") : null;
+        if (frame != null) {
+            if (payloadCodec == null) {
+                throw new CdcException("PayloadCodec of table " + tableName + " is not set, cannot decode frame. id: " + id + ". ");
+            }
+            CdcFrame cdcFrame = CdcFrameCodec.decode(payloadCodec, frame);
+            if (cdcFrame.getPayloadKind() != CdcFrame.PAYLOAD_ROW_IMAGE) {
+                return false;
+            }
+            for (byte[] payload : cdcFrame.getPayloadList()) {
+                rowChangeFolder.add(RowImageCodec.getInstance().decode(payload));
+            }
+            return true;
+        }
+        byte[] rowImage = columnSet.contains("row_image") ? resultSet.getBytes("row_image") : null;
+        if (rowImage == null) {
+            return false;
+        }
+        rowChangeFolder.add(RowImageCodec.getInstance().decode(rowImage));
+        return true;
+    }
+
+    /**
+     * 表配置了 PayloadCodec 时按 cdcWriterMaxBatchCount 个一组压缩为 frame，否则一个 RowImage 一行
+     */
+    private List<byte[]> encode(List<RowImage> rowImageList, boolean frameColumn) {
+        RowImageCodec rowImageCodec = RowImageCodec.getInstance();
+        List<byte[]> payloadList = new ArrayList<>(rowImageList.size());
+        for (RowImage rowImage : rowImageList) {
+            payloadList.add(rowImageCodec.encode(rowImage));
+        }
+        if (payloadCodec == null || !frameColumn) {
+            return payloadList;
+        }
+        int maxBatchCount = cdcDataSource.getCdcWriterMaxBatchCount();
+        List<byte[]> frameList = new ArrayList<>();
+        for (int from = 0; from < payloadList.size(); from += maxBatchCount) {
+            List<byte[]> batch = payloadList.subList(from, Math.min(from + maxBatchCount, payloadList.size()));
+            frameList.add(CdcFrameCodec.encode(payloadCodec, new CdcFrame(CdcFrame.PAYLOAD_ROW_IMAGE, batch)));
+        }
+        return frameList;
+    }
+
+    private Set<String> columnSet(ResultSetMetaData metaData) throws SQLException {
+        Set<String> columnSet = new HashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columnSet.add(metaData.getColumnLabel(i).toLowerCase());
+        }
+        return columnSet;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new CdcException("chunkSize must be positive. ");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+}
@@ -0,0 +1,239 @@
+package cn.addenda.ahacdc.compact;
+
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.collection.LongObjectHashMap;
+import cn.addenda.ahacdc.rowimage.RowImage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把一段 row 模式的变更按主键合并为净变更：
+ * <ul>
+ *     <li>INSERT + UPDATE... -> INSERT，字段取最后的值。</li>
+ *     <li>INSERT + ... + DELETE -> 没有变更。</li>
+ *     <li>UPDATE + UPDATE... -> UPDATE，更新过的字段取最后的值。</li>
+ *     <li>UPDATE + ... + DELETE -> DELETE。</li>
+ *     <li>DELETE + INSERT 不合并，分别输出。</li>
+ * </ul>
+ * before-image 取每个字段第一次变更前的值。
+ * <p>
+ * 净变更按主键最后一次变更的先后排序，每个主键一个 RowImage。
+ * fold(maxInSize) 再把字段和值都相同的 UPDATE（或者 DELETE）合并为多主键的 RowImage（n:1），不同主键的净变更互不影响，所以可以合并。
+ * 非线程安全。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 2:20
+ */
+public class RowChangeFolder {
+
+    private final LongObjectHashMap<KeyState> keyStateMap = new LongObjectHashMap<>();
+
+    /**
+     * 所有的净变更，包括 DELETE 之后又 INSERT 时结束的 DELETE，和被合并为没有变更的主键
+     */
+    private final List<KeyState> keyStateList = new ArrayList<>();
+
+    private long sequence;
+
+    private long changeCount;
+
+    public void add(RowImage rowImage) {
+        LongArrayList keyValueList = rowImage.getKeyValueList();
+        for (int i = 0; i < keyValueList.size(); i++) {
+            add(keyValueList.get(i), rowImage, i);
+        }
+    }
+
+    private void add(long keyValue, RowImage rowImage, int keyIndex) {
+        changeCount++;
+        Map<String, Object> beforeMap = null;
+        if (rowImage.getBeforeColumnList() != null) {
+            beforeMap = toMap(rowImage.getBeforeColumnList(), rowImage.getBeforeValueListList().get(keyIndex));
+        }
+        RowImage.Op op = rowImage.getOp();
+        KeyState keyState = keyStateMap.get(keyValue);
+        if (keyState == null || keyState.op == null || !keyState.fold(op, rowImage, beforeMap)) {
+            keyState = new KeyState(keyValue, op, RowImage.Op.INSERT.equals(op) ? null : beforeMap);
+            keyState.putValues(rowImage);
+            keyStateMap.put(keyValue, keyState);
+            keyStateList.add(keyState);
+        }
+        keyState.sequence = sequence++;
+    }
+
+    /**
+     * @return 主键有净变更时返回 true
+     */
+    public boolean contains(long keyValue) {
+        KeyState keyState = keyStateMap.get(keyValue);
+        return keyState != null && keyState.op != null;
+    }
+
+    /**
+     * @return 合并后的净变更
+     */
+    public List<RowImage> fold() {
+        List<KeyState> netList = new ArrayList<>(keyStateList.size());
+        for (KeyState keyState : keyStateList) {
+            if (keyState.op != null) {
+                netList.add(keyState);
+            }
+        }
+        netList.sort(Comparator.comparingLong(keyState -> keyState.sequence));
+        List<RowImage> rowImageList = new ArrayList<>(netList.size());
+        for (KeyState keyState : netList) {
+            rowImageList.add(keyState.toRowImage());
+        }
+        return rowImageList;
+    }
+
+    /**
+     * @param maxInSize 一个 RowImage 最多包含的主键个数
+     * @return 合并后的净变更，UPDATE 和 DELETE 按字段和值分组，每组在组内第一个净变更的位置输出
+     */
+    public List<RowImage> fold(int maxInSize) {
+        Map<List<Object>, List<RowImage>> groupMap = new LinkedHashMap<>();
+        for (RowImage rowImage : fold()) {
+            List<Object> groupKey = RowImage.Op.INSERT.equals(rowImage.getOp())
+                    ? Collections.singletonList(rowImage)
+                    : Arrays.asList(rowImage.getOp(), rowImage.getColumnList(), rowImage.getValueList(), rowImage.getBeforeColumnList());
+            groupMap.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(rowImage);
+        }
+        List<RowImage> rowImageList = new ArrayList<>();
+        for (List<RowImage> group : groupMap.values()) {
+            if (group.size() == 1) {
+                rowImageList.add(group.get(0));
+                continue;
+            }
+            RowImage first = group.get(0);
+            for (int from = 0; from < group.size(); from += maxInSize) {
+                List<RowImage> chunk = group.subList(from, Math.min(from + maxInSize, group.size()));
+                LongArrayList keyValueList = new LongArrayList(chunk.size());
+                List<List<Object>> beforeValueListList = first.getBeforeColumnList() == null ? null : new ArrayList<>(chunk.size());
+                for (RowImage rowImage : chunk) {
+                    keyValueList.add(rowImage.getKeyValueList().get(0));
+                    if (beforeValueListList != null) {
+                        beforeValueListList.add(rowImage.getBeforeValueListList().get(0));
+                    }
+                }
+                rowImageList.add(new RowImage(first.getOp(), keyValueList, first.getColumnList(), first.getValueList(),
+                        first.getBeforeColumnList(), beforeValueListList));
+            }
+        }
+        return rowImageList;
+    }
+
+    /**
+     * @return 合并前的变更数，多主键的 RowImage 按主键数计算
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    private static Map<String, Object> toMap(List<String> columnList, List<Object> valueList) {
+        Map<String, Object> map = new LinkedHashMap<>(columnList.size() * 2);
+        for (int i = 0; i < columnList.size(); i++) {
+            map.put(columnList.get(i), valueList.get(i));
+        }
+        return map;
+    }
+
+    private static class KeyState {
+
+        private final long keyValue;
+
+        /**
+         * 为 null 时表示 INSERT 之后被 DELETE，没有净变更
+         */
+        private RowImage.Op op;
+
+        private final Map<String, Object> valueMap = new LinkedHashMap<>();
+
+        /**
+         * 每个字段第一次变更前的值，没有 before-image 时为 null
+         */
+        private Map<String, Object> beforeMap;
+
+        private long sequence;
+
+        KeyState(long keyValue, RowImage.Op op, Map<String, Object> beforeMap) {
+            this.keyValue = keyValue;
+            this.op = op;
+            this.beforeMap = beforeMap;
+        }
+
+        void putValues(RowImage rowImage) {
+            List<String> columnList = rowImage.getColumnList();
+            List<Object> valueList = rowImage.getValueList();
+            for (int i = 0; i < columnList.size(); i++) {
+                valueMap.put(columnList.get(i), valueList.get(i));
+            }
+        }
+
+        /**
+         * @return 不能合并时返回 false
+         */
+        boolean fold(RowImage.Op next, RowImage rowImage, Map<String, Object> nextBeforeMap) {
+            if (RowImage.Op.INSERT.equals(op)) {
+                if (RowImage.Op.UPDATE.equals(next)) {
+                    putValues(rowImage);
+                    return true;
+                } else if (RowImage.Op.DELETE.equals(next)) {
+                    op = null;
+                    valueMap.clear();
+                    return true;
+                }
+                return false;
+            }
+            if (RowImage.Op.UPDATE.equals(op)) {
+                if (RowImage.Op.INSERT.equals(next)) {
+                    return false;
+                }
+                mergeBefore(nextBeforeMap);
+                if (RowImage.Op.UPDATE.equals(next)) {
+                    putValues(rowImage);
+                } else {
+                    op = RowImage.Op.DELETE;
+                    valueMap.clear();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 之前更新过的字段，后面的 before-image 里是更新之后的值，不能用
+         */
+        private void mergeBefore(Map<String, Object> nextBeforeMap) {
+            if (beforeMap == null) {
+                return;
+            }
+            if (nextBeforeMap == null) {
+                beforeMap = null;
+                return;
+            }
+            for (Map.Entry<String, Object> entry : nextBeforeMap.entrySet()) {
+                if (!beforeMap.containsKey(entry.getKey()) && !valueMap.containsKey(entry.getKey())) {
+                    beforeMap.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        RowImage toRowImage() {
+            List<String> columnList = new ArrayList<>(valueMap.keySet());
+            List<Object> valueList = new ArrayList<>(valueMap.values());
+            if (beforeMap == null) {
+                return new RowImage(op, LongArrayList.of(keyValue), columnList, valueList);
+            }
+            return new RowImage(op, LongArrayList.of(keyValue), columnList, valueList,
+                    new ArrayList<>(beforeMap.keySet()), Collections.singletonList(new ArrayList<>(beforeMap.values())));
+        }
+    }
+
+}
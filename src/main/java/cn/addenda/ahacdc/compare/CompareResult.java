@@ -0,0 +1,114 @@
+package cn.addenda.ahacdc.compare;
+
+import cn.addenda.ahacdc.collection.LongArrayList;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次比较的结果。主键按发现的顺序排列，不保证有序。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 0:40
+ */
+public class CompareResult {
+
+    /**
+     * 源库有、副本没有的主键
+     */
+    private final LongArrayList missingKeyValueList = new LongArrayList();
+
+    /**
+     * 副本有、源库没有的主键
+     */
+    private final LongArrayList extraKeyValueList = new LongArrayList();
+
+    /**
+     * 两边都有但是字段值不同的主键
+     */
+    private final LongArrayList mismatchKeyValueList = new LongArrayList();
+
+    private final LongAdder chunkCount = new LongAdder();
+
+    private final LongAdder queryCount = new LongAdder();
+
+    private final LongAdder fetchedRowCount = new LongAdder();
+
+    private long elapsedMillis;
+
+    synchronized void addMissing(long keyValue) {
+        missingKeyValueList.add(keyValue);
+    }
+
+    synchronized void addExtra(long keyValue) {
+        extraKeyValueList.add(keyValue);
+    }
+
+    synchronized void addMismatch(long keyValue) {
+        mismatchKeyValueList.add(keyValue);
+    }
+
+    void recordChunk() {
+        chunkCount.increment();
+    }
+
+    void recordQuery(int fetchedRowCount) {
+        this.queryCount.increment();
+        this.fetchedRowCount.add(fetchedRowCount);
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public synchronized LongArrayList getMissingKeyValueList() {
+        return missingKeyValueList;
+    }
+
+    public synchronized LongArrayList getExtraKeyValueList() {
+        return extraKeyValueList;
+    }
+
+    public synchronized LongArrayList getMismatchKeyValueList() {
+        return mismatchKeyValueList;
+    }
+
+    public synchronized boolean isConsistent() {
+        return missingKeyValueList.isEmpty() && extraKeyValueList.isEmpty() && mismatchKeyValueList.isEmpty();
+    }
+
+    /**
+     * @return 计算过校验和的区间数，包括二分出来的区间
+     */
+    public long getChunkCount() {
+        return chunkCount.sum();
+    }
+
+    public long getQueryCount() {
+        return queryCount.sum();
+    }
+
+    /**
+     * @return 逐行比较时取回的行数，只和不一致的区间有关
+     */
+    public long getFetchedRowCount() {
+        return fetchedRowCount.sum();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CompareResult{" +
+                "missingKeyValueList=" + missingKeyValueList +
+                ", extraKeyValueList=" + extraKeyValueList +
+                ", mismatchKeyValueList=" + mismatchKeyValueList +
+                ", chunkCount=" + getChunkCount() +
+                ", queryCount=" + getQueryCount() +
+                ", fetchedRowCount=" + getFetchedRowCount() +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+
+}
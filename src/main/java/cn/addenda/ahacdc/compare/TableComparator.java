@@ -0,0 +1,347 @@
+package cn.addenda.ahacdc.compare;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.collection.LongObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 比较源库和副本上同一张表的数据（compare 模式）。
+ * <p>
+ * 按行数把表切成区间：在源表上按主键分页，每个区间包含 chunkSize 行，所以主键稀疏（比如雪花id）时区间数也只和行数有关。
+ * 两边分别计算每个区间（上下界都包含）的行数和校验和：
+ * <pre>
+ * select count(*), coalesce(bit_xor(crc32(concat_ws('#', key, c1, c2, ..., isnull(c1), isnull(c2), ...))), 0)
+ * from table where key >= ? and key <= ?
+ * </pre>
+ * 校验和一致的区间不再处理；不一致的区间对半拆分后继续比较，直到两边的行数都不超过 rowThreshold，再逐行比较每行的 crc32 找出不同的主键。
+ * 所以取回的行数只和不一致的行数有关，和表的大小无关。
+ * <p>
+ * 区间在 parallelism 个线程上并行比较，每个区间的SQL各使用一个连接，DataSource 最好是连接池。
+ * 区间边界边比较边计算，同时比较的区间不超过 parallelism 的两倍。
+ * 只支持 mysql，主键需要是整数。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 0:45
+ */
+public class TableComparator {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableComparator.class);
+
+    public static final long DEFAULT_CHUNK_SIZE = 10000;
+
+    public static final int DEFAULT_ROW_THRESHOLD = 64;
+
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final DataSource source;
+
+    private final DataSource replica;
+
+    private final String tableName;
+
+    private final String keyColumn;
+
+    /**
+     * 参与比较的字段，为 null 时取源表的所有字段
+     */
+    private List<String> columnList;
+
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private int rowThreshold = DEFAULT_ROW_THRESHOLD;
+
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    public TableComparator(DataSource source, DataSource replica, String tableName, String keyColumn) {
+        this.source = source;
+        this.replica = replica;
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+    }
+
+    public CompareResult compare() throws SQLException, InterruptedException {
+        long start = System.currentTimeMillis();
+        CompareResult compareResult = new CompareResult();
+        String rowHash = rowHashExpression(columnList != null ? columnList : queryColumnList());
+        String checksumSql = "select count(*), coalesce(bit_xor(" + rowHash + "), 0) from " + tableName
+                + " where " + keyColumn + " >= ? and " + keyColumn + " <= ?";
+        String rowSql = "select " + keyColumn + ", " + rowHash + " from " + tableName
+                + " where " + keyColumn + " >= ? and " + keyColumn + " <= ?";
+
+        long[] sourceRange = queryKeyRange(source);
+        long[] replicaRange = queryKeyRange(replica);
+        if (sourceRange == null && replicaRange == null) {
+            compareResult.setElapsedMillis(System.currentTimeMillis() - start);
+            return compareResult;
+        }
+        long from = Math.min(sourceRange == null ? Long.MAX_VALUE : sourceRange[0], replicaRange == null ? Long.MAX_VALUE : replicaRange[0]);
+        long to = Math.max(sourceRange == null ? Long.MIN_VALUE : sourceRange[1], replicaRange == null ? Long.MIN_VALUE : replicaRange[1]);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "cdc-compare-" + tableName + "-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ChunkScheduler scheduler = new ChunkScheduler(executorService, compareResult, checksumSql, rowSql);
+        Semaphore chunkPermits = new Semaphore(parallelism * 2);
+        // 第 chunkSize 行的主键是区间的上界，源表为空时在副本上分页
+        String boundarySql = "select " + keyColumn + " from " + tableName + " where " + keyColumn + " >= ? order by " + keyColumn + " limit ?, 1";
+        try (Connection connection = (sourceRange != null ? source : replica).getConnection();
+             PreparedStatement ps = connection.prepareStatement(boundarySql)) {
+            long chunkFrom = from;
+            while (!scheduler.isFailed()) {
+                long chunkTo = queryChunkUpperBound(ps, chunkFrom, to);
+                chunkPermits.acquire();
+                scheduler.submit(chunkFrom, chunkTo, chunkPermits);
+                if (chunkTo >= to) {
+                    break;
+                }
+                chunkFrom = chunkTo + 1;
+            }
+            scheduler.await();
+        } finally {
+            executorService.shutdownNow();
+        }
+        compareResult.setElapsedMillis(System.currentTimeMillis() - start);
+        if (logger.isInfoEnabled()) {
+            logger.info("Compare {} finished, {}. ", tableName, compareResult);
+        }
+        return compareResult;
+    }
+
+    /**
+     * @return 从 from 开始第 chunkSize 行的主键，不足 chunkSize 行时返回 to
+     */
+    private long queryChunkUpperBound(PreparedStatement ps, long from, long to) throws SQLException {
+        ps.setLong(1, from);
+        ps.setLong(2, chunkSize - 1);
+        try (ResultSet resultSet = ps.executeQuery()) {
+            return resultSet.next() ? Math.min(resultSet.getLong(1), to) : to;
+        }
+    }
+
+    private List<String> queryColumnList() throws SQLException {
+        List<String> list = new ArrayList<>();
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select * from " + tableName + " where 1 = 0")) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String column = metaData.getColumnName(i);
+                if (!column.equalsIgnoreCase(keyColumn)) {
+                    list.add(column);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * concat_ws 会跳过 null，所以再拼上每个字段是否为 null，区分 null 和空字符串
+     */
+    private String rowHashExpression(List<String> list) {
+        StringBuilder expression = new StringBuilder("crc32(concat_ws('#', ").append(keyColumn);
+        for (String column : list) {
+            expression.append(", ").append(column);
+        }
+        for (String column : list) {
+            expression.append(", isnull(").append(column).append(")");
+        }
+        return expression.append("))").toString();
+    }
+
+    /**
+     * @return [min, max]，表为空时返回 null
+     */
+    private long[] queryKeyRange(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select min(" + keyColumn + "), max(" + keyColumn + ") from " + tableName)) {
+            resultSet.next();
+            long min = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+                return null;
+            }
+            return new long[]{min, resultSet.getLong(2)};
+        }
+    }
+
+    public void setColumnList(List<String> columnList) {
+        this.columnList = columnList;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        if (chunkSize <= 0) {
+            throw new CdcException("chunkSize must be positive. ");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public void setRowThreshold(int rowThreshold) {
+        if (rowThreshold <= 0) {
+            throw new CdcException("rowThreshold must be positive. ");
+        }
+        this.rowThreshold = rowThreshold;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new CdcException("parallelism must be positive. ");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 区间任务可能继续提交拆分出来的子区间，用 Phaser 等待所有任务完成。
+     */
+    private class ChunkScheduler {
+
+        private final ExecutorService executorService;
+
+        private final CompareResult compareResult;
+
+        private final String checksumSql;
+
+        private final String rowSql;
+
+        private final Phaser phaser = new Phaser(1);
+
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        ChunkScheduler(ExecutorService executorService, CompareResult compareResult, String checksumSql, String rowSql) {
+            this.executorService = executorService;
+            this.compareResult = compareResult;
+            this.checksumSql = checksumSql;
+            this.rowSql = rowSql;
+        }
+
+        boolean isFailed() {
+            return failure.get() != null;
+        }
+
+        /**
+         * @param permits 不为 null 时，区间比较完之后（不包括拆分出来的子区间）释放一个许可
+         */
+        void submit(long from, long to, Semaphore permits) {
+            if (failure.get() != null) {
+                if (permits != null) {
+                    permits.release();
+                }
+                return;
+            }
+            phaser.register();
+            executorService.execute(() -> {
+                try {
+                    compareChunk(from, to);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                    phaser.arriveAndDeregister();
+                }
+            });
+        }
+
+        void await() throws SQLException, InterruptedException {
+            phaser.awaitAdvanceInterruptibly(phaser.arrive());
+            Exception exception = failure.get();
+            if (exception instanceof SQLException) {
+                throw (SQLException) exception;
+            } else if (exception != null) {
+                throw new CdcException(exception);
+            }
+        }
+
+        private void compareChunk(long from, long to) throws SQLException {
+            compareResult.recordChunk();
+            long[] sourceChecksum = queryChecksum(source, from, to);
+            long[] replicaChecksum = queryChecksum(replica, from, to);
+            if (sourceChecksum[0] == replicaChecksum[0] && sourceChecksum[1] == replicaChecksum[1]) {
+                return;
+            }
+            if (from == to || Math.max(sourceChecksum[0], replicaChecksum[0]) <= rowThreshold) {
+                compareRows(from, to);
+                return;
+            }
+            // 向下取整的平均值，from 和 to 跨越正负时 to - from 会溢出
+            long middle = (from >> 1) + (to >> 1) + (from & to & 1);
+            submit(from, middle, null);
+            submit(middle + 1, to, null);
+        }
+
+        private void compareRows(long from, long to) throws SQLException {
+            LongObjectHashMap<Long> sourceRowHashMap = new LongObjectHashMap<>();
+            LongArrayList sourceKeyValueList = new LongArrayList();
+            queryRowHash(source, from, to, sourceKeyValueList, sourceRowHashMap);
+            LongObjectHashMap<Long> replicaRowHashMap = new LongObjectHashMap<>();
+            LongArrayList replicaKeyValueList = new LongArrayList();
+            queryRowHash(replica, from, to, replicaKeyValueList, replicaRowHashMap);
+            for (int i = 0; i < sourceKeyValueList.size(); i++) {
+                long keyValue = sourceKeyValueList.get(i);
+                Long replicaRowHash = replicaRowHashMap.get(keyValue);
+                if (replicaRowHash == null) {
+                    compareResult.addMissing(keyValue);
+                } else if (!replicaRowHash.equals(sourceRowHashMap.get(keyValue))) {
+                    compareResult.addMismatch(keyValue);
+                }
+            }
+            for (int i = 0; i < replicaKeyValueList.size(); i++) {
+                long keyValue = replicaKeyValueList.get(i);
+                if (!sourceRowHashMap.containsKey(keyValue)) {
+                    compareResult.addExtra(keyValue);
+                }
+            }
+        }
+
+        /**
+         * @return [行数, 校验和]
+         */
+        private long[] queryChecksum(DataSource dataSource, long from, long to) throws SQLException {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement ps = connection.prepareStatement(checksumSql)) {
+                ps.setLong(1, from);
+                ps.setLong(2, to);
+                try (ResultSet resultSet = ps.executeQuery()) {
+                    resultSet.next();
+                    compareResult.recordQuery(0);
+                    return new long[]{resultSet.getLong(1), resultSet.getLong(2)};
+                }
+            }
+        }
+
+        private void queryRowHash(DataSource dataSource, long from, long to,
+                                  LongArrayList keyValueList, LongObjectHashMap<Long> rowHashMap) throws SQLException {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement ps = connection.prepareStatement(rowSql)) {
+                ps.setLong(1, from);
+                ps.setLong(2, to);
+                try (ResultSet resultSet = ps.executeQuery()) {
+                    while (resultSet.next()) {
+                        long keyValue = resultSet.getLong(1);
+                        keyValueList.add(keyValue);
+                        rowHashMap.put(keyValue, resultSet.getLong(2));
+                    }
+                }
+            }
+            compareResult.recordQuery(keyValueList.size());
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package cn.addenda.ahacdc.frame;
+
+import java.util.List;
+
+/**
+ * 一次写入的若干条 cdc 数据。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 16:55
+ */
+public class CdcFrame {
+
+    /**
+     * payload 是 utf-8 编码的 executable sql
+     */
+    public static final byte PAYLOAD_SQL = 1;
+
+    /**
+     * payload 是 RowImageCodec 编码的 RowImage
+     */
+    public static final byte PAYLOAD_ROW_IMAGE = 2;
+
+    private final byte payloadKind;
+
+    private final List<byte[]> payloadList;
+
+    public CdcFrame(byte payloadKind, List<byte[]> payloadList) {
+        this.payloadKind = payloadKind;
+        this.payloadList = payloadList;
+    }
+
+    public byte getPayloadKind() {
+        return payloadKind;
+    }
+
+    public List<byte[]> getPayloadList() {
+        return payloadList;
+    }
+
+}
@@ -0,0 +1,91 @@
+package cn.addenda.ahacdc.frame;
+
+import cn.addenda.ahacdc.CdcException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CdcFrame 的编码。
+ * <pre>
+ * magic(2) version(1) codecId(1) payloadKind(1) dictionaryId(4) payloadCount(4) rawLength(4) compressed body
+ * body: [payloadLength(4) payload] ...
+ * </pre>
+ *
+ * @author addenda
+ * @datetime 2026/10/18 17:00
+ */
+public class CdcFrameCodec {
+
+    private static final short MAGIC = (short) 0xCDCF;
+
+    private static final byte VERSION = 1;
+
+    private static final int HEADER_LENGTH = 17;
+
+    private CdcFrameCodec() {
+    }
+
+    public static byte[] encode(PayloadCodec payloadCodec, CdcFrame cdcFrame) {
+        List<byte[]> payloadList = cdcFrame.getPayloadList();
+        int rawLength = 0;
+        for (byte[] payload : payloadList) {
+            rawLength += 4 + payload.length;
+        }
+        ByteBuffer raw = ByteBuffer.allocate(rawLength);
+        for (byte[] payload : payloadList) {
+            raw.putInt(payload.length);
+            raw.put(payload);
+        }
+        byte[] compressed = payloadCodec.compress(raw.array());
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + compressed.length);
+        frame.putShort(MAGIC);
+        frame.put(VERSION);
+        frame.put(payloadCodec.getId());
+        frame.put(cdcFrame.getPayloadKind());
+        frame.putInt(payloadCodec.getDictionaryId());
+        frame.putInt(payloadList.size());
+        frame.putInt(rawLength);
+        frame.put(compressed);
+        return frame.array();
+    }
+
+    public static CdcFrame decode(PayloadCodec payloadCodec, byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH) {
+            throw new CdcException("Frame is truncated. ");
+        }
+        ByteBuffer frame = ByteBuffer.wrap(bytes);
+        if (frame.getShort() != MAGIC) {
+            throw new CdcException("Not a cdc frame. ");
+        }
+        byte version = frame.get();
+        if (version != VERSION) {
+            throw new CdcException("Unsupported frame version: " + version + ". ");
+        }
+        byte codecId = frame.get();
+        if (codecId != payloadCodec.getId()) {
+            throw new CdcException("Frame is compressed by codec " + codecId + ", but current codec is " + payloadCodec.getId() + ". ");
+        }
+        byte payloadKind = frame.get();
+        int dictionaryId = frame.getInt();
+        if (dictionaryId != payloadCodec.getDictionaryId()) {
+            throw new CdcException("Frame is compressed with dictionary " + dictionaryId + ", but current dictionary is " + payloadCodec.getDictionaryId() + ". ");
+        }
+        int payloadCount = frame.getInt();
+        int rawLength = frame.getInt();
+        byte[] compressed = new byte[frame.remaining()];
+        frame.get(compressed);
+
+        ByteBuffer raw = ByteBuffer.wrap(payloadCodec.decompress(compressed, rawLength));
+        List<byte[]> payloadList = new ArrayList<>(payloadCount);
+        for (int i = 0; i < payloadCount; i++) {
+            byte[] payload = new byte[raw.getInt()];
+            raw.get(payload);
+            payloadList.add(payload);
+        }
+        return new CdcFrame(payloadKind, payloadList);
+    }
+
+}
@@ -0,0 +1,79 @@
+package cn.addenda.ahacdc.frame;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一张表的压缩统计。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 17:05
+ */
+public class CompressionStats {
+
+    private final LongAdder frameCount = new LongAdder();
+
+    private final LongAdder payloadCount = new LongAdder();
+
+    private final LongAdder rawBytes = new LongAdder();
+
+    private final LongAdder compressedBytes = new LongAdder();
+
+    private final LongAdder compressNanos = new LongAdder();
+
+    public void record(int payloadCount, long rawBytes, long compressedBytes, long compressNanos) {
+        this.frameCount.increment();
+        this.payloadCount.add(payloadCount);
+        this.rawBytes.add(rawBytes);
+        this.compressedBytes.add(compressedBytes);
+        this.compressNanos.add(compressNanos);
+    }
+
+    public long getFrameCount() {
+        return frameCount.sum();
+    }
+
+    public long getPayloadCount() {
+        return payloadCount.sum();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    /**
+     * @return 原始大小 / 压缩后大小
+     */
+    public double getCompressionRatio() {
+        long compressed = getCompressedBytes();
+        return compressed == 0 ? 0 : (double) getRawBytes() / compressed;
+    }
+
+    /**
+     * @return 每 MB 原始数据的压缩耗时，单位毫秒
+     */
+    public double getMillisPerMegabyte() {
+        long raw = getRawBytes();
+        return raw == 0 ? 0 : getCompressNanos() / 1e6 / (raw / (1024.0 * 1024.0));
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{" +
+                "frameCount=" + getFrameCount() +
+                ", payloadCount=" + getPayloadCount() +
+                ", rawBytes=" + getRawBytes() +
+                ", compressedBytes=" + getCompressedBytes() +
+                ", compressionRatio=" + getCompressionRatio() +
+                ", millisPerMegabyte=" + getMillisPerMegabyte() +
+                '}';
+    }
+
+}
@@ -0,0 +1,105 @@
+package cn.addenda.ahacdc.frame;
+
+import cn.addenda.ahacdc.CdcException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于 JDK Deflater 的压缩，可以设置预置字典。cdc 记录之间重复的内容很多（表名、字段名、相同的字段值），预置字典对小 frame 的效果明显。
+ * <p>
+ * 字典可以用 PayloadDictionaryTrainer 从最近的数据中生成，消费方需要使用相同的字典解码。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 16:45
+ */
+public class DeflatePayloadCodec implements PayloadCodec {
+
+    public static final byte ID = 1;
+
+    private final int level;
+
+    private final byte[] dictionary;
+
+    private final int dictionaryId;
+
+    public DeflatePayloadCodec() {
+        this(Deflater.DEFAULT_COMPRESSION, null);
+    }
+
+    public DeflatePayloadCodec(int level, byte[] dictionary) {
+        this.level = level;
+        this.dictionary = dictionary == null || dictionary.length == 0 ? null : Arrays.copyOf(dictionary, dictionary.length);
+        if (this.dictionary == null) {
+            this.dictionaryId = 0;
+        } else {
+            CRC32 crc32 = new CRC32();
+            crc32.update(this.dictionary);
+            this.dictionaryId = (int) crc32.getValue();
+        }
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    @Override
+    public byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] compressed, int rawLength) {
+        Inflater inflater = new Inflater(true);
+        try {
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength) {
+                int n = inflater.inflate(raw, offset, rawLength - offset);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != rawLength) {
+                throw new CdcException("Frame is truncated, expect " + rawLength + " bytes, actual " + offset + " bytes. ");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new CdcException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
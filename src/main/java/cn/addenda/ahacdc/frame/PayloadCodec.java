@@ -0,0 +1,25 @@
+package cn.addenda.ahacdc.frame;
+
+/**
+ * 压缩一个 frame 的数据。实现需要线程安全。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 16:40
+ */
+public interface PayloadCodec {
+
+    /**
+     * 写入 frame 头，解码时用于校验 codec 是否一致。
+     */
+    byte getId();
+
+    /**
+     * 写入 frame 头，解码时用于校验字典是否一致。没有字典时返回0。
+     */
+    int getDictionaryId();
+
+    byte[] compress(byte[] raw);
+
+    byte[] decompress(byte[] compressed, int rawLength);
+
+}
@@ -0,0 +1,67 @@
+package cn.addenda.ahacdc.frame;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * 从最近的数据中生成 Deflate 的预置字典。
+ * <p>
+ * Deflate 只能引用前 32KB 的内容，并且距离越近编码越短，所以字典由最近的样本拼接而成，最新的样本放在最后。
+ * 线程安全。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 16:50
+ */
+public class PayloadDictionaryTrainer {
+
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private final int maxSampleBytes;
+
+    private final Deque<byte[]> sampleDeque = new ArrayDeque<>();
+
+    private int sampleBytes;
+
+    public PayloadDictionaryTrainer() {
+        this(4 * MAX_DICTIONARY_SIZE);
+    }
+
+    public PayloadDictionaryTrainer(int maxSampleBytes) {
+        this.maxSampleBytes = maxSampleBytes;
+    }
+
+    public synchronized void sample(byte[] payload) {
+        if (payload.length == 0 || payload.length > maxSampleBytes) {
+            return;
+        }
+        sampleDeque.addLast(payload);
+        sampleBytes += payload.length;
+        while (sampleBytes > maxSampleBytes) {
+            sampleBytes -= sampleDeque.removeFirst().length;
+        }
+    }
+
+    /**
+     * @return 不超过 dictionarySize 字节的字典
+     */
+    public synchronized byte[] train(int dictionarySize) {
+        int size = Math.min(Math.min(dictionarySize, MAX_DICTIONARY_SIZE), sampleBytes);
+        byte[] dictionary = new byte[size];
+        int end = size;
+        // 从最新的样本开始，从后往前填充
+        Iterator<byte[]> iterator = sampleDeque.descendingIterator();
+        while (end > 0 && iterator.hasNext()) {
+            byte[] sample = iterator.next();
+            int length = Math.min(sample.length, end);
+            System.arraycopy(sample, sample.length - length, dictionary, end - length, length);
+            end -= length;
+        }
+        return dictionary;
+    }
+
+    public synchronized int getSampleBytes() {
+        return sampleBytes;
+    }
+
+}
@@ -0,0 +1,40 @@
+package cn.addenda.ahacdc.replay;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 进度保存在文件里。先写临时文件再原子替换，崩溃时不会留下写了一半的文件。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 23:00
+ */
+public class FileReplayCheckpoint implements ReplayCheckpoint {
+
+    private final Path path;
+
+    private final Path tmpPath;
+
+    public FileReplayCheckpoint(Path path) {
+        this.path = path;
+        this.tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    @Override
+    public long load() throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+    }
+
+    @Override
+    public void save(long id) throws IOException {
+        Files.write(tmpPath, Long.toString(id).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,20 @@
+package cn.addenda.ahacdc.replay;
+
+import java.io.IOException;
+
+/**
+ * 重放进度。保存的是低水位：id 不大于它的 cdc 记录都已经重放完成。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 23:00
+ */
+public interface ReplayCheckpoint {
+
+    /**
+     * @return 没有保存过时返回 0
+     */
+    long load() throws IOException;
+
+    void save(long id) throws IOException;
+
+}
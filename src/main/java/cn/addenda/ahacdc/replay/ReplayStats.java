@@ -0,0 +1,111 @@
+package cn.addenda.ahacdc.replay;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次重放的统计。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 23:05
+ */
+public class ReplayStats {
+
+    private final LongAdder changeCount = new LongAdder();
+
+    private final LongAdder statementCount = new LongAdder();
+
+    private final LongAdder rowCount = new LongAdder();
+
+    private final LongAdder barrierCount = new LongAdder();
+
+    private final LongAdder batchCount = new LongAdder();
+
+    private final LongAdder transactionCount = new LongAdder();
+
+    private final long startNanos = System.nanoTime();
+
+    private volatile long endNanos;
+
+    void recordChange() {
+        changeCount.increment();
+    }
+
+    void recordBatch(int statementCount, long rowCount) {
+        this.batchCount.increment();
+        this.statementCount.add(statementCount);
+        this.rowCount.add(rowCount);
+    }
+
+    void recordTransaction() {
+        transactionCount.increment();
+    }
+
+    void recordBarrier() {
+        barrierCount.increment();
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * @return 读取的 cdc 记录数
+     */
+    public long getChangeCount() {
+        return changeCount.sum();
+    }
+
+    public long getStatementCount() {
+        return statementCount.sum();
+    }
+
+    /**
+     * @return 重放的行数，一个主键算一行
+     */
+    public long getRowCount() {
+        return rowCount.sum();
+    }
+
+    /**
+     * @return 不能按主键拆分、需要所有 worker 停下来单独执行的SQL数
+     */
+    public long getBarrierCount() {
+        return barrierCount.sum();
+    }
+
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * @return 目标库上提交的事务数，只有 statement 模式重放统计
+     */
+    public long getTransactionCount() {
+        return transactionCount.sum();
+    }
+
+    public long getElapsedNanos() {
+        long end = endNanos;
+        return (end == 0 ? System.nanoTime() : end) - startNanos;
+    }
+
+    public double getRowsPerSecond() {
+        long nanos = getElapsedNanos();
+        return nanos == 0 ? 0 : getRowCount() * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayStats{" +
+                "changeCount=" + getChangeCount() +
+                ", statementCount=" + getStatementCount() +
+                ", rowCount=" + getRowCount() +
+                ", barrierCount=" + getBarrierCount() +
+                ", batchCount=" + getBatchCount() +
+                ", transactionCount=" + getTransactionCount() +
+                ", elapsedMillis=" + getElapsedNanos() / 1000000 +
+                ", rowsPerSecond=" + getRowsPerSecond() +
+                '}';
+    }
+
+}
@@ -0,0 +1,28 @@
+package cn.addenda.ahacdc.replay;
+
+/**
+ * worker 执行的一条SQL。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 23:05
+ */
+class ReplayTask {
+
+    static final ReplayTask STOP = new ReplayTask(-1, null, 0);
+
+    /**
+     * 来源 cdc 记录的 id
+     */
+    final long id;
+
+    final String sql;
+
+    final int rowCount;
+
+    ReplayTask(long id, String sql, int rowCount) {
+        this.id = id;
+        this.sql = sql;
+        this.rowCount = rowCount;
+    }
+
+}
@@ -0,0 +1,99 @@
+package cn.addenda.ahacdc.replay;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按顺序执行分给自己的SQL，每 batchSize 条或者队列空了时 executeBatch 并提交。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 23:10
+ */
+class ReplayWorker implements Runnable {
+
+    private final DataSource target;
+
+    private final int batchSize;
+
+    private final ReplayStats replayStats;
+
+    private final BlockingQueue<ReplayTask> queue;
+
+    /**
+     * 分给这个 worker 的任务数，只有读线程访问
+     */
+    long dispatchedCount;
+
+    /**
+     * 不大于它的任务都已经提交。
+     * <p>
+     * 一条 cdc 记录（frame 里有多个 payload 时）可能在同一个 worker 上拆成多个任务，被分到两批里提交，
+     * 所以提交一批之后只有看到 id 更大的任务（或者 STOP）才能确定这一批最后一个 id 的任务都已经提交。
+     */
+    volatile long appliedId;
+
+    volatile long appliedCount;
+
+    volatile Exception failure;
+
+    ReplayWorker(DataSource target, int batchSize, int queueCapacity, ReplayStats replayStats, long startId) {
+        this.target = target;
+        this.batchSize = batchSize;
+        this.replayStats = replayStats;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.appliedId = startId;
+    }
+
+    /**
+     * @return worker 失败时返回 false
+     */
+    boolean offer(ReplayTask task) throws InterruptedException {
+        while (failure == null) {
+            if (queue.offer(task, 10, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isIdle() {
+        return appliedCount == dispatchedCount;
+    }
+
+    @Override
+    public void run() {
+        try (Connection connection = target.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                ReplayTask task = queue.take();
+                while (task != ReplayTask.STOP) {
+                    int count = 0;
+                    long rowCount = 0;
+                    long lastId = appliedId;
+                    while (task != null && task != ReplayTask.STOP && count < batchSize) {
+                        statement.addBatch(task.sql);
+                        count++;
+                        rowCount += task.rowCount;
+                        lastId = task.id;
+                        task = count < batchSize ? queue.poll() : null;
+                    }
+                    statement.executeBatch();
+                    connection.commit();
+                    replayStats.recordBatch(count, rowCount);
+                    appliedId = task == ReplayTask.STOP || (task != null && task.id > lastId) ? lastId : lastId - 1;
+                    appliedCount += count;
+                    if (task == null) {
+                        task = queue.take();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+    }
+
+}
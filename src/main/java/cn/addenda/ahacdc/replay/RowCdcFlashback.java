@@ -0,0 +1,292 @@
+package cn.addenda.ahacdc.replay;
+
+import cn.addenda.ahacdc.CdcDataSource;
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.TableConfig;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.format.DataFormatterRegistry;
+import cn.addenda.ahacdc.frame.CdcFrame;
+import cn.addenda.ahacdc.frame.CdcFrameCodec;
+import cn.addenda.ahacdc.frame.PayloadCodec;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import cn.addenda.ahacdc.rowimage.RowImageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 闪回：把 row 模式的 cdc 表（table_cdc_r）里一段 id 范围内的变更按相反的顺序撤销。
+ * <ul>
+ *     <li>INSERT：删除插入的行。</li>
+ *     <li>DELETE：用 before-image 重新插入被删除的行。</li>
+ *     <li>UPDATE：用 before-image 把更新的字段恢复为更新前的值。</li>
+ * </ul>
+ * 所以表需要开启 rowImage 和 beforeImage，记录了SQL或者没有 before-image 的变更无法撤销。
+ * <p>
+ * 读线程按 id 从大到小分批读取 cdc 表，撤销SQL按主键的 hash 拆给 worker，同一个主键的撤销SQL在同一个 worker 上按 id 从大到小执行。
+ * 执行时间只和范围内的变更数有关，和表的大小无关。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 1:50
+ */
+public class RowCdcFlashback {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowCdcFlashback.class);
+
+    private final CdcDataSource cdcDataSource;
+
+    private final DataSource target;
+
+    private final String tableName;
+
+    private final String keyColumn;
+
+    private final PayloadCodec payloadCodec;
+
+    private final DataFormatterRegistry dataFormatterRegistry;
+
+    private final String cdcTableName;
+
+    private int workerCount = RowCdcReplayer.DEFAULT_WORKER_COUNT;
+
+    private int fetchSize = RowCdcReplayer.DEFAULT_FETCH_SIZE;
+
+    private int batchSize = RowCdcReplayer.DEFAULT_BATCH_SIZE;
+
+    /**
+     * @param cdcDataSource 读取 cdc 表，tableName 需要在 cdcDataSource 里配置过
+     * @param target        执行撤销SQL的库
+     */
+    public RowCdcFlashback(CdcDataSource cdcDataSource, DataSource target, String tableName) {
+        TableConfig tableConfig = cdcDataSource.getTableConfig(tableName);
+        if (tableConfig == null) {
+            throw new CdcException("Table " + tableName + " is not configured in CdcDataSource. ");
+        }
+        this.cdcDataSource = cdcDataSource;
+        this.target = target;
+        this.tableName = tableName;
+        this.keyColumn = tableConfig.getKeyColumn();
+        this.payloadCodec = tableConfig.getPayloadCodec();
+        this.dataFormatterRegistry = cdcDataSource.getDataFormatterRegistry();
+        this.cdcTableName = tableName + "_cdc_" + TableConfig.CM_ROW;
+    }
+
+    /**
+     * 撤销 cdc 表里 id 在 [fromId, toId] 之间的变更。
+     */
+    public ReplayStats flashback(long fromId, long toId) throws SQLException, InterruptedException {
+        ReplayStats replayStats = new ReplayStats();
+        ReplayWorker[] workers = new ReplayWorker[workerCount];
+        Thread[] threads = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new ReplayWorker(target, batchSize, batchSize * 4, replayStats, toId);
+            threads[i] = new Thread(workers[i], "cdc-flashback-worker-" + tableName + "-" + i);
+            threads[i].start();
+        }
+        try {
+            String sql = "select * from " + cdcTableName + " where id >= ? and id < ? order by id desc limit ?";
+            try (Connection connection = cdcDataSource.getConnection();
+                 PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setFetchSize(fetchSize);
+                long position = toId + 1;
+                while (true) {
+                    ps.setLong(1, fromId);
+                    ps.setLong(2, position);
+                    ps.setInt(3, fetchSize);
+                    int count = 0;
+                    try (ResultSet resultSet = ps.executeQuery()) {
+                        Set<String> columnSet = columnSet(resultSet.getMetaData());
+                        while (resultSet.next()) {
+                            position = resultSet.getLong("id");
+                            undoRow(workers, replayStats, position, resultSet, columnSet);
+                            count++;
+                        }
+                    }
+                    if (count < fetchSize) {
+                        break;
+                    }
+                }
+            }
+            awaitIdle(workers);
+        } finally {
+            for (ReplayWorker worker : workers) {
+                worker.offer(ReplayTask.STOP);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            replayStats.finish();
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Flashback {} [{}, {}] finished, {}. ", tableName, fromId, toId, replayStats);
+        }
+        return replayStats;
+    }
+
+    /**
+     * 撤销 cdc 表里 timeColumn 在 [from, to) 之间的变更。cdc 表需要有记录写入时间的字段，并且时间和 id 的顺序一致。
+     */
+    public ReplayStats flashback(String timeColumn, Timestamp from, Timestamp to) throws SQLException, InterruptedException {
+        String sql = "select min(id), max(id) from " + cdcTableName + " where " + timeColumn + " >= ? and " + timeColumn + " < ?";
+        long fromId;
+        long toId;
+        try (Connection connection = cdcDataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setTimestamp(1, from);
+            ps.setTimestamp(2, to);
+            try (ResultSet resultSet = ps.executeQuery()) {
+                resultSet.next();
+                fromId = resultSet.getLong(1);
+                if (resultSet.wasNull()) {
+                    return new ReplayStats();
+                }
+                toId = resultSet.getLong(2);
+            }
+        }
+        return flashback(fromId, toId);
+    }
+
+    private Set<String> columnSet(ResultSetMetaData metaData) throws SQLException {
+        Set<String> columnSet = new HashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columnSet.add(metaData.getColumnLabel(i).toLowerCase());
+        }
+        return columnSet;
+    }
+
+    private void undoRow(ReplayWorker[] workers, ReplayStats replayStats, long id, ResultSet resultSet, Set<String> columnSet)
+            throws SQLException, InterruptedException {
+        replayStats.recordChange();
+        byte[] frame = columnSet.contains("frame") ? resultSet.getBytes("frame") : null;
+        if (frame != null) {
+            if (payloadCodec == null) {
+                throw new CdcException("PayloadCodec of table " + tableName + " is not set, cannot decode frame. id: " + id + ". ");
+            }
+            CdcFrame cdcFrame = CdcFrameCodec.decode(payloadCodec, frame);
+            if (cdcFrame.getPayloadKind() != CdcFrame.PAYLOAD_ROW_IMAGE) {
+                throw new CdcException("Cannot flashback sql record, row image of table " + tableName + " is not enabled. id: " + id + ". ");
+            }
+            List<byte[]> payloadList = cdcFrame.getPayloadList();
+            // frame 里的变更也按相反的顺序撤销
+            for (int i = payloadList.size() - 1; i >= 0; i--) {
+                undoRowImage(workers, id, RowImageCodec.getInstance().decode(payloadList.get(i)));
+            }
+            return;
+        }
+        byte[] rowImage = columnSet.contains("row_image") ? resultSet.getBytes("row_image") : null;
+        if (rowImage == null) {
+            throw new CdcException("Cannot flashback sql record, row image of table " + tableName + " is not enabled. id: " + id + ". ");
+        }
+        undoRowImage(workers, id, RowImageCodec.getInstance().decode(rowImage));
+    }
+
+    private void undoRowImage(ReplayWorker[] workers, long id, RowImage rowImage) throws InterruptedException {
+        LongArrayList keyValueList = rowImage.getKeyValueList();
+        if (RowImage.Op.INSERT.equals(rowImage.getOp())) {
+            for (int i = keyValueList.size() - 1; i >= 0; i--) {
+                long keyValue = keyValueList.get(i);
+                dispatch(workers, keyValue, new ReplayTask(id, "delete from " + tableName + " where " + keyColumn + " = " + keyValue, 1));
+            }
+            return;
+        }
+        List<String> beforeColumnList = rowImage.getBeforeColumnList();
+        if (beforeColumnList == null) {
+            throw new CdcException("Cannot flashback " + rowImage.getOp() + " without before image, before image of table " + tableName + " is not enabled. id: " + id + ". ");
+        }
+        List<List<Object>> beforeValueListList = rowImage.getBeforeValueListList();
+        for (int i = keyValueList.size() - 1; i >= 0; i--) {
+            long keyValue = keyValueList.get(i);
+            String sql = RowImage.Op.DELETE.equals(rowImage.getOp())
+                    ? renderReinsert(keyValue, beforeColumnList, beforeValueListList.get(i))
+                    : renderRestore(id, keyValue, rowImage.getColumnList(), beforeColumnList, beforeValueListList.get(i));
+            dispatch(workers, keyValue, new ReplayTask(id, sql, 1));
+        }
+    }
+
+    /**
+     * replace into：范围内先删后插的行撤销时不会主键冲突，重复执行结果也不变
+     */
+    private String renderReinsert(long keyValue, List<String> beforeColumnList, List<Object> beforeValueList) {
+        StringBuilder columns = new StringBuilder(keyColumn);
+        StringBuilder values = new StringBuilder().append(keyValue);
+        for (int i = 0; i < beforeColumnList.size(); i++) {
+            if (beforeColumnList.get(i).equalsIgnoreCase(keyColumn)) {
+                continue;
+            }
+            columns.append(",").append(beforeColumnList.get(i));
+            values.append(",").append(dataFormatterRegistry.format(beforeValueList.get(i)));
+        }
+        return "replace into " + tableName + "(" + columns + ") values (" + values + ")";
+    }
+
+    private String renderRestore(long id, long keyValue, List<String> columnList, List<String> beforeColumnList, List<Object> beforeValueList) {
+        StringBuilder sql = new StringBuilder("update ").append(tableName).append(" set ");
+        for (int i = 0; i < columnList.size(); i++) {
+            String column = columnList.get(i);
+            int index = indexOf(beforeColumnList, column);
+            if (index < 0) {
+                throw new CdcException("Before image of table " + tableName + " does not contain column: " + column + ". id: " + id + ". ");
+            }
+            if (i != 0) {
+                sql.append(", ");
+            }
+            sql.append(column).append(" = ").append(dataFormatterRegistry.format(beforeValueList.get(index)));
+        }
+        return sql.append(" where ").append(keyColumn).append(" = ").append(keyValue).toString();
+    }
+
+    private int indexOf(List<String> columnList, String column) {
+        for (int i = 0; i < columnList.size(); i++) {
+            if (columnList.get(i).equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void dispatch(ReplayWorker[] workers, long keyValue, ReplayTask task) throws InterruptedException {
+        ReplayWorker worker = workers[Math.floorMod(Long.hashCode(keyValue * 0x9E3779B97F4A7C15L), workers.length)];
+        if (!worker.offer(task)) {
+            throw new CdcException(worker.failure);
+        }
+        worker.dispatchedCount++;
+    }
+
+    private void awaitIdle(ReplayWorker[] workers) throws InterruptedException {
+        for (ReplayWorker worker : workers) {
+            while (!worker.isIdle()) {
+                if (worker.failure != null) {
+                    throw new CdcException(worker.failure);
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    public void setWorkerCount(int workerCount) {
+        if (workerCount <= 0) {
+            throw new CdcException("workerCount must be positive. ");
+        }
+        this.workerCount = workerCount;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new CdcException("fetchSize must be positive. ");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new CdcException("batchSize must be positive. ");
+        }
+        this.batchSize = batchSize;
+    }
+
+}
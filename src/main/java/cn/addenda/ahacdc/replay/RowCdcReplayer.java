@@ -0,0 +1,368 @@
+package cn.addenda.ahacdc.replay;
+
+import cn.addenda.ahacdc.CdcDataSource;
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.KeyPredicatePlanner;
+import cn.addenda.ahacdc.TableConfig;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.format.DataFormatterRegistry;
+import cn.addenda.ahacdc.frame.CdcFrame;
+import cn.addenda.ahacdc.frame.CdcFrameCodec;
+import cn.addenda.ahacdc.frame.PayloadCodec;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import cn.addenda.ahacdc.rowimage.RowImageCodec;
+import cn.addenda.ahacdc.sql.SqlHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把 row 模式的 cdc 表（table_cdc_r）重放到目标库。
+ * <p>
+ * 读线程按 id 分批读取 cdc 表，每条变更按主键的 hash 拆给 worker，同一个主键的变更只会在同一个 worker 上按顺序执行。
+ * 每个 worker 使用自己的连接，按 batchSize 攒批执行并提交。
+ * 主键条件是 between 时展开为区间内的主键再拆分。无法识别主键条件的SQL作为屏障：等所有 worker 执行完之前的任务后由读线程单独执行。
+ * <p>
+ * 读线程定期保存低水位，崩溃之后从低水位继续重放，低水位之后已经执行过的变更会再执行一次。
+ * row 模式的 update、delete 重复执行结果不变，insert 重放时改写为 replace into（mysql 语法），所以可以重复执行。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 23:15
+ */
+public class RowCdcReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowCdcReplayer.class);
+
+    public static final int DEFAULT_WORKER_COUNT = 4;
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    private static final Pattern INSERT_PATTERN = Pattern.compile("^\\s*insert\\s+into\\s", Pattern.CASE_INSENSITIVE);
+
+    private final CdcDataSource cdcDataSource;
+
+    private final DataSource target;
+
+    private final String tableName;
+
+    private final String keyColumn;
+
+    private final PayloadCodec payloadCodec;
+
+    private final DataFormatterRegistry dataFormatterRegistry;
+
+    private final SqlHelper sqlHelper;
+
+    private int workerCount = DEFAULT_WORKER_COUNT;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private ReplayCheckpoint replayCheckpoint;
+
+    /**
+     * @param cdcDataSource 读取 cdc 表，tableName 需要在 cdcDataSource 里配置过
+     * @param target        重放的目标库
+     */
+    public RowCdcReplayer(CdcDataSource cdcDataSource, DataSource target, String tableName) {
+        TableConfig tableConfig = cdcDataSource.getTableConfig(tableName);
+        if (tableConfig == null) {
+            throw new CdcException("Table " + tableName + " is not configured in CdcDataSource. ");
+        }
+        this.cdcDataSource = cdcDataSource;
+        this.target = target;
+        this.tableName = tableName;
+        this.keyColumn = tableConfig.getKeyColumn();
+        this.payloadCodec = tableConfig.getPayloadCodec();
+        this.dataFormatterRegistry = cdcDataSource.getDataFormatterRegistry();
+        this.sqlHelper = new SqlHelper(cdcDataSource.getFunctionCalculator());
+    }
+
+    public ReplayStats replay() throws SQLException, IOException, InterruptedException {
+        ReplayStats replayStats = new ReplayStats();
+        long checkpoint = replayCheckpoint == null ? 0 : replayCheckpoint.load();
+        ReplayWorker[] workers = new ReplayWorker[workerCount];
+        Thread[] threads = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new ReplayWorker(target, batchSize, batchSize * 4, replayStats, checkpoint);
+            threads[i] = new Thread(workers[i], "cdc-replay-worker-" + tableName + "-" + i);
+            threads[i].start();
+        }
+        Dispatcher dispatcher = new Dispatcher(workers, replayStats, checkpoint);
+        try {
+            String sql = "select * from " + tableName + "_cdc_" + TableConfig.CM_ROW + " where id > ? order by id limit ?";
+            try (Connection connection = cdcDataSource.getConnection();
+                 PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setFetchSize(fetchSize);
+                long position = checkpoint;
+                while (true) {
+                    ps.setLong(1, position);
+                    ps.setInt(2, fetchSize);
+                    int count = 0;
+                    try (ResultSet resultSet = ps.executeQuery()) {
+                        Set<String> columnSet = columnSet(resultSet.getMetaData());
+                        while (resultSet.next()) {
+                            position = resultSet.getLong("id");
+                            dispatchRow(dispatcher, position, resultSet, columnSet);
+                            count++;
+                        }
+                    }
+                    dispatcher.saveCheckpoint(false);
+                    if (count < fetchSize) {
+                        break;
+                    }
+                }
+            }
+            dispatcher.awaitIdle();
+        } finally {
+            for (ReplayWorker worker : workers) {
+                worker.offer(ReplayTask.STOP);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            replayStats.finish();
+            // 失败时也保存一次，下次从已经提交的位置继续
+            try {
+                dispatcher.saveCheckpoint(true);
+            } catch (IOException e) {
+                logger.error("Cannot save replay checkpoint of {}. ", tableName, e);
+            }
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Replay {} finished, {}. ", tableName, replayStats);
+        }
+        return replayStats;
+    }
+
+    private Set<String> columnSet(ResultSetMetaData metaData) throws SQLException {
+        Set<String> columnSet = new HashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columnSet.add(metaData.getColumnLabel(i).toLowerCase());
+        }
+        return columnSet;
+    }
+
+    private void dispatchRow(Dispatcher dispatcher, long id, ResultSet resultSet, Set<String> columnSet) throws SQLException, InterruptedException {
+        dispatcher.replayStats.recordChange();
+        byte[] frame = columnSet.contains("frame") ? resultSet.getBytes("frame") : null;
+        if (frame != null) {
+            if (payloadCodec == null) {
+                throw new CdcException("PayloadCodec of table " + tableName + " is not set, cannot decode frame. id: " + id + ". ");
+            }
+            CdcFrame cdcFrame = CdcFrameCodec.decode(payloadCodec, frame);
+            for (byte[] payload : cdcFrame.getPayloadList()) {
+                if (cdcFrame.getPayloadKind() == CdcFrame.PAYLOAD_ROW_IMAGE) {
+                    dispatchRowImage(dispatcher, id, RowImageCodec.getInstance().decode(payload));
+                } else {
+                    dispatchSql(dispatcher, id, new String(payload, StandardCharsets.UTF_8));
+                }
+            }
+            return;
+        }
+        byte[] rowImage = columnSet.contains("row_image") ? resultSet.getBytes("row_image") : null;
+        if (rowImage != null) {
+            dispatchRowImage(dispatcher, id, RowImageCodec.getInstance().decode(rowImage));
+            return;
+        }
+        dispatchSql(dispatcher, id, resultSet.getString("executable_sql"));
+    }
+
+    private void dispatchRowImage(Dispatcher dispatcher, long id, RowImage rowImage) throws SQLException, InterruptedException {
+        LongArrayList[] partitionKeyValueLists = dispatcher.partition(rowImage.getKeyValueList());
+        for (int i = 0; i < partitionKeyValueLists.length; i++) {
+            LongArrayList keyValueList = partitionKeyValueLists[i];
+            if (keyValueList == null) {
+                continue;
+            }
+            RowImage partitionRowImage = keyValueList.size() == rowImage.getKeyValueList().size() ? rowImage :
+                    new RowImage(rowImage.getOp(), keyValueList, rowImage.getColumnList(), rowImage.getValueList());
+            String sql = partitionRowImage.toSql(tableName, keyColumn, dataFormatterRegistry);
+            dispatcher.dispatch(i, new ReplayTask(id, toIdempotent(sql), keyValueList.size()));
+        }
+    }
+
+    private void dispatchSql(Dispatcher dispatcher, long id, String sql) throws SQLException, InterruptedException {
+        if (INSERT_PATTERN.matcher(sql).find()) {
+            BigInteger keyValue = sqlHelper.extractColumnValueFromInsertSql(sql, keyColumn, BigInteger.class);
+            if (keyValue == null) {
+                dispatcher.barrier(id, toIdempotent(sql));
+            } else {
+                dispatcher.dispatch(dispatcher.partition(keyValue.longValue()), new ReplayTask(id, toIdempotent(sql), 1));
+            }
+            return;
+        }
+        // row 模式的 update 和 delete 以主键条件结尾：where key = v、where key in (...) 或者 where key between a and b
+        int whereIndex = sql.toLowerCase().lastIndexOf(" where ");
+        LongArrayList keyValueList = whereIndex < 0 ? null : KeyPredicatePlanner.parse(sql.substring(whereIndex + 7), keyColumn);
+        if (keyValueList == null) {
+            dispatcher.barrier(id, sql);
+            return;
+        }
+        LongArrayList[] partitionKeyValueLists = dispatcher.partition(keyValueList);
+        String prefix = sql.substring(0, whereIndex) + " where " + keyColumn;
+        for (int i = 0; i < partitionKeyValueLists.length; i++) {
+            LongArrayList partitionKeyValueList = partitionKeyValueLists[i];
+            if (partitionKeyValueList == null) {
+                continue;
+            }
+            String partitionSql = partitionKeyValueList.size() == keyValueList.size() ? sql :
+                    prefix + (partitionKeyValueList.size() == 1
+                            ? " = " + partitionKeyValueList.get(0)
+                            : " in (" + partitionKeyValueList.join(",") + ")");
+            dispatcher.dispatch(i, new ReplayTask(id, partitionSql, partitionKeyValueList.size()));
+        }
+    }
+
+    private String toIdempotent(String sql) {
+        Matcher matcher = INSERT_PATTERN.matcher(sql);
+        return matcher.find() ? "replace into " + sql.substring(matcher.end()) : sql;
+    }
+
+    public void setWorkerCount(int workerCount) {
+        if (workerCount <= 0) {
+            throw new CdcException("workerCount must be positive. ");
+        }
+        this.workerCount = workerCount;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new CdcException("fetchSize must be positive. ");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new CdcException("batchSize must be positive. ");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public void setReplayCheckpoint(ReplayCheckpoint replayCheckpoint) {
+        this.replayCheckpoint = replayCheckpoint;
+    }
+
+    /**
+     * 读线程上的分发状态
+     */
+    private class Dispatcher {
+
+        private final ReplayWorker[] workers;
+
+        private final ReplayStats replayStats;
+
+        /**
+         * 已经分发（或者作为屏障执行完）的最后一条 cdc 记录的 id
+         */
+        private long dispatchedId;
+
+        private long savedCheckpoint;
+
+        private long lastSaveMillis = System.currentTimeMillis();
+
+        Dispatcher(ReplayWorker[] workers, ReplayStats replayStats, long checkpoint) {
+            this.workers = workers;
+            this.replayStats = replayStats;
+            this.dispatchedId = checkpoint;
+            this.savedCheckpoint = checkpoint;
+        }
+
+        int partition(long keyValue) {
+            return Math.floorMod(Long.hashCode(keyValue * 0x9E3779B97F4A7C15L), workers.length);
+        }
+
+        /**
+         * @return 第 i 个元素是分给第 i 个 worker 的主键，没有时为 null
+         */
+        LongArrayList[] partition(LongArrayList keyValueList) {
+            LongArrayList[] partitionKeyValueLists = new LongArrayList[workers.length];
+            for (int i = 0; i < keyValueList.size(); i++) {
+                long keyValue = keyValueList.get(i);
+                int partition = partition(keyValue);
+                if (partitionKeyValueLists[partition] == null) {
+                    partitionKeyValueLists[partition] = new LongArrayList(4);
+                }
+                partitionKeyValueLists[partition].add(keyValue);
+            }
+            return partitionKeyValueLists;
+        }
+
+        void dispatch(int partition, ReplayTask task) throws InterruptedException {
+            ReplayWorker worker = workers[partition];
+            if (!worker.offer(task)) {
+                throw new CdcException(worker.failure);
+            }
+            worker.dispatchedCount++;
+            dispatchedId = task.id;
+        }
+
+        void barrier(long id, String sql) throws SQLException, InterruptedException {
+            awaitIdle();
+            try (Connection connection = target.getConnection()) {
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(sql);
+                }
+                connection.commit();
+            }
+            replayStats.recordBarrier();
+            replayStats.recordBatch(1, 1);
+            dispatchedId = id;
+        }
+
+        void awaitIdle() throws InterruptedException {
+            for (ReplayWorker worker : workers) {
+                while (!worker.isIdle()) {
+                    if (worker.failure != null) {
+                        throw new CdcException(worker.failure);
+                    }
+                    Thread.sleep(1);
+                }
+            }
+        }
+
+        /**
+         * 低水位：空闲的 worker 不限制水位，其余 worker 取 appliedId（不大于它的任务都已提交），再取最小值。
+         */
+        long lowWatermark() {
+            long watermark = dispatchedId;
+            for (ReplayWorker worker : workers) {
+                if (!worker.isIdle()) {
+                    watermark = Math.min(watermark, worker.appliedId);
+                }
+            }
+            return watermark;
+        }
+
+        void saveCheckpoint(boolean force) throws IOException {
+            if (replayCheckpoint == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (!force && now - lastSaveMillis < 1000) {
+                return;
+            }
+            long watermark = lowWatermark();
+            if (watermark > savedCheckpoint) {
+                replayCheckpoint.save(watermark);
+                savedCheckpoint = watermark;
+            }
+            lastSaveMillis = now;
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+package cn.addenda.ahacdc.replay;
+
+import cn.addenda.ahacdc.CdcDataSource;
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.TableConfig;
+import cn.addenda.ahacdc.frame.CdcFrameCodec;
+import cn.addenda.ahacdc.frame.PayloadCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+
+/**
+ * 把 statement 模式的 cdc 表（table_cdc_s）重放到目标库。
+ * <p>
+ * statement 模式的SQL之间有顺序依赖并且不能重复执行，所以单线程按 id 顺序执行。
+ * 多条 cdc 记录合并为一个目标库事务（组提交），达到 maxTransactionStatements 条SQL或者持续 maxTransactionMillis 毫秒时提交，
+ * 事务内每 batchSize 条SQL executeBatch 一次。
+ * <p>
+ * 重放进度和SQL在同一个事务里写入目标库的进度表，所以重放中断后从进度表继续，不会重复执行也不会遗漏。进度表：
+ * <pre>
+ * create table cdc_replay_checkpoint (
+ *   replay_name varchar(128) primary key,
+ *   cdc_id bigint not null
+ * )
+ * </pre>
+ *
+ * @author addenda
+ * @datetime 2026/10/18 23:40
+ */
+public class StatementCdcReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCdcReplayer.class);
+
+    public static final String DEFAULT_CHECKPOINT_TABLE = "cdc_replay_checkpoint";
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    public static final int DEFAULT_MAX_TRANSACTION_STATEMENTS = 5000;
+
+    public static final long DEFAULT_MAX_TRANSACTION_MILLIS = 500;
+
+    private final CdcDataSource cdcDataSource;
+
+    private final DataSource target;
+
+    private final String tableName;
+
+    private final PayloadCodec payloadCodec;
+
+    /**
+     * 进度表里的主键，默认是表名。同一张表重放到多个目标库时需要区分。
+     */
+    private String replayName;
+
+    private String checkpointTable = DEFAULT_CHECKPOINT_TABLE;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int maxTransactionStatements = DEFAULT_MAX_TRANSACTION_STATEMENTS;
+
+    private long maxTransactionMillis = DEFAULT_MAX_TRANSACTION_MILLIS;
+
+    /**
+     * @param cdcDataSource 读取 cdc 表，tableName 需要在 cdcDataSource 里配置过
+     * @param target        重放的目标库，需要有进度表
+     */
+    public StatementCdcReplayer(CdcDataSource cdcDataSource, DataSource target, String tableName) {
+        TableConfig tableConfig = cdcDataSource.getTableConfig(tableName);
+        if (tableConfig == null) {
+            throw new CdcException("Table " + tableName + " is not configured in CdcDataSource. ");
+        }
+        this.cdcDataSource = cdcDataSource;
+        this.target = target;
+        this.tableName = tableName;
+        this.payloadCodec = tableConfig.getPayloadCodec();
+        this.replayName = tableName;
+    }
+
+    public ReplayStats replay() throws SQLException {
+        ReplayStats replayStats = new ReplayStats();
+        try (Connection sourceConnection = cdcDataSource.getConnection();
+             Connection targetConnection = target.getConnection()) {
+            targetConnection.setAutoCommit(false);
+            try {
+                doReplay(sourceConnection, targetConnection, replayStats);
+            } catch (SQLException | RuntimeException e) {
+                targetConnection.rollback();
+                throw e;
+            }
+        } finally {
+            replayStats.finish();
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Replay {} finished, {}. ", tableName, replayStats);
+        }
+        return replayStats;
+    }
+
+    private void doReplay(Connection sourceConnection, Connection targetConnection, ReplayStats replayStats) throws SQLException {
+        long position = loadCheckpoint(targetConnection);
+        targetConnection.commit();
+        String readSql = "select * from " + tableName + "_cdc_" + TableConfig.CM_STATEMENT + " where id > ? order by id limit ?";
+        try (PreparedStatement readPs = sourceConnection.prepareStatement(readSql);
+             Statement applyStatement = targetConnection.createStatement();
+             PreparedStatement checkpointPs = targetConnection.prepareStatement(
+                     "insert into " + checkpointTable + "(replay_name, cdc_id) values (?, ?) on duplicate key update cdc_id = values(cdc_id)")) {
+            readPs.setFetchSize(fetchSize);
+            GroupCommit groupCommit = new GroupCommit(targetConnection, applyStatement, checkpointPs, replayStats);
+            while (true) {
+                readPs.setLong(1, position);
+                readPs.setInt(2, fetchSize);
+                int count = 0;
+                try (ResultSet resultSet = readPs.executeQuery()) {
+                    boolean hasFrame = hasColumn(resultSet.getMetaData(), "frame");
+                    while (resultSet.next()) {
+                        position = resultSet.getLong("id");
+                        replayStats.recordChange();
+                        count++;
+                        byte[] frame = hasFrame ? resultSet.getBytes("frame") : null;
+                        if (frame != null) {
+                            if (payloadCodec == null) {
+                                throw new CdcException("PayloadCodec of table " + tableName + " is not set, cannot decode frame. id: " + position + ". ");
+                            }
+                            for (byte[] payload : CdcFrameCodec.decode(payloadCodec, frame).getPayloadList()) {
+                                groupCommit.add(new String(payload, StandardCharsets.UTF_8));
+                            }
+                        } else {
+                            groupCommit.add(resultSet.getString("executable_sql"));
+                        }
+                        // 一条 cdc 记录里的SQL不拆到两个事务里
+                        groupCommit.commitIfFull(position);
+                    }
+                }
+                if (count < fetchSize) {
+                    if (!groupCommit.isEmpty()) {
+                        groupCommit.commit(position);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private long loadCheckpoint(Connection targetConnection) throws SQLException {
+        try (PreparedStatement ps = targetConnection.prepareStatement("select cdc_id from " + checkpointTable + " where replay_name = ?")) {
+            ps.setString(1, replayName);
+            try (ResultSet resultSet = ps.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private boolean hasColumn(ResultSetMetaData metaData, String column) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (column.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void setReplayName(String replayName) {
+        this.replayName = replayName;
+    }
+
+    public void setCheckpointTable(String checkpointTable) {
+        this.checkpointTable = checkpointTable;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new CdcException("fetchSize must be positive. ");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new CdcException("batchSize must be positive. ");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public void setMaxTransactionStatements(int maxTransactionStatements) {
+        if (maxTransactionStatements <= 0) {
+            throw new CdcException("maxTransactionStatements must be positive. ");
+        }
+        this.maxTransactionStatements = maxTransactionStatements;
+    }
+
+    public void setMaxTransactionMillis(long maxTransactionMillis) {
+        this.maxTransactionMillis = maxTransactionMillis;
+    }
+
+    /**
+     * 目标库上正在攒的事务
+     */
+    private class GroupCommit {
+
+        private final Connection targetConnection;
+
+        private final Statement applyStatement;
+
+        private final PreparedStatement checkpointPs;
+
+        private final ReplayStats replayStats;
+
+        private int transactionStatements;
+
+        private int pendingBatch;
+
+        private long transactionStartMillis;
+
+        GroupCommit(Connection targetConnection, Statement applyStatement, PreparedStatement checkpointPs, ReplayStats replayStats) {
+            this.targetConnection = targetConnection;
+            this.applyStatement = applyStatement;
+            this.checkpointPs = checkpointPs;
+            this.replayStats = replayStats;
+        }
+
+        void add(String sql) throws SQLException {
+            if (transactionStatements == 0) {
+                transactionStartMillis = System.currentTimeMillis();
+            }
+            applyStatement.addBatch(sql);
+            transactionStatements++;
+            pendingBatch++;
+            if (pendingBatch >= batchSize) {
+                executeBatch();
+            }
+        }
+
+        void commitIfFull(long cdcId) throws SQLException {
+            if (transactionStatements >= maxTransactionStatements
+                    || (transactionStatements > 0 && System.currentTimeMillis() - transactionStartMillis >= maxTransactionMillis)) {
+                commit(cdcId);
+            }
+        }
+
+        /**
+         * 执行剩余的SQL，在同一个事务里更新进度并提交
+         */
+        void commit(long cdcId) throws SQLException {
+            executeBatch();
+            checkpointPs.setString(1, replayName);
+            checkpointPs.setLong(2, cdcId);
+            checkpointPs.executeUpdate();
+            targetConnection.commit();
+            replayStats.recordTransaction();
+            transactionStatements = 0;
+        }
+
+        boolean isEmpty() {
+            return transactionStatements == 0;
+        }
+
+        private void executeBatch() throws SQLException {
+            if (pendingBatch == 0) {
+                return;
+            }
+            applyStatement.executeBatch();
+            replayStats.recordBatch(pendingBatch, pendingBatch);
+            pendingBatch = 0;
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 一直自旋，延迟最低，会占满一个 CPU。订阅者线程数不能超过空闲的 CPU 数。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:05
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, BooleanSupplier running) {
+        long availableSequence;
+        while ((availableSequence = cursor.get()) < sequence && running.getAsBoolean()) {
+            // spin
+        }
+        return availableSequence;
+    }
+
+}
@@ -0,0 +1,52 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import cn.addenda.ahacdc.CdcRecord;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个已提交事务的 row 模式 cdc 记录。事件对象在环形缓冲区里预先分配、循环使用，
+ * CdcEventHandler 返回之后不能再持有事件对象，需要的话持有 cdcRecordList。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:10
+ */
+public class CdcEvent {
+
+    private long sequence = Sequence.INITIAL_VALUE;
+
+    private List<CdcRecord> cdcRecordList = Collections.emptyList();
+
+    /**
+     * 发布时的 System.nanoTime()，用于计算投递延迟。
+     */
+    private long publishNanos;
+
+    void set(long sequence, List<CdcRecord> cdcRecordList, long publishNanos) {
+        this.sequence = sequence;
+        this.cdcRecordList = cdcRecordList;
+        this.publishNanos = publishNanos;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<CdcRecord> getCdcRecordList() {
+        return cdcRecordList;
+    }
+
+    public long getPublishNanos() {
+        return publishNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CdcEvent{" +
+                "sequence=" + sequence +
+                ", cdcRecordCount=" + cdcRecordList.size() +
+                '}';
+    }
+
+}
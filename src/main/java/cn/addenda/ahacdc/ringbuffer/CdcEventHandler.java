@@ -0,0 +1,19 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import java.util.List;
+
+/**
+ * 订阅者的回调，在订阅者自己的线程里执行。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:10
+ */
+public interface CdcEventHandler {
+
+    /**
+     * @param cdcEventList 一次等待得到的所有已发布事件，不超过 maxBatchSize 个，按发布顺序排列。
+     *                     列表和事件对象在方法返回之后都会被复用。
+     */
+    void onEvents(List<CdcEvent> cdcEventList) throws Exception;
+
+}
@@ -0,0 +1,111 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import cn.addenda.ahacdc.CdcException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个订阅者。在自己的线程里等待新事件，每次把等到的事件批量交给 CdcEventHandler。
+ * handler 抛出的异常只记录日志，不影响后续事件。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:20
+ */
+public class CdcEventProcessor implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CdcEventProcessor.class);
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final CdcEventRingBuffer ringBuffer;
+
+    private final CdcEventHandler cdcEventHandler;
+
+    private final WaitStrategy waitStrategy;
+
+    private final int maxBatchSize;
+
+    private final Sequence sequence = new Sequence();
+
+    private volatile boolean running = true;
+
+    private Thread thread;
+
+    public CdcEventProcessor(CdcEventRingBuffer ringBuffer, CdcEventHandler cdcEventHandler,
+                             WaitStrategy waitStrategy, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new CdcException("maxBatchSize must be positive. ");
+        }
+        this.ringBuffer = ringBuffer;
+        this.cdcEventHandler = cdcEventHandler;
+        this.waitStrategy = waitStrategy;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 注册到 ringBuffer 并启动订阅线程。只能看到启动之后发布的事件。
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        ringBuffer.addGatingSequence(sequence);
+        thread = new Thread(this, "cdc-event-processor-" + THREAD_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 停止订阅线程，并且不再阻挡生产者。
+     */
+    public synchronized void halt() throws InterruptedException {
+        running = false;
+        ringBuffer.removeGatingSequence(sequence);
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.join();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<CdcEvent> batch = new ArrayList<>(Math.min(maxBatchSize, ringBuffer.getBufferSize()));
+        long nextSequence = sequence.get() + 1;
+        while (running) {
+            long availableSequence = waitStrategy.waitFor(nextSequence, ringBuffer.getCursor(), () -> running);
+            if (availableSequence < nextSequence) {
+                continue;
+            }
+            availableSequence = Math.min(availableSequence, nextSequence + maxBatchSize - 1);
+            availableSequence = ringBuffer.getHighestPublishedSequence(nextSequence, availableSequence);
+            if (availableSequence < nextSequence) {
+                // 序号已经被申请，还没有发布
+                Thread.yield();
+                continue;
+            }
+            for (long i = nextSequence; i <= availableSequence; i++) {
+                batch.add(ringBuffer.get(i));
+            }
+            try {
+                cdcEventHandler.onEvents(batch);
+            } catch (Exception e) {
+                logger.error("CdcEventHandler failed to handle events [{}, {}]. ", nextSequence, availableSequence, e);
+            }
+            batch.clear();
+            sequence.set(availableSequence);
+            nextSequence = availableSequence + 1;
+        }
+    }
+
+    public Sequence getSequence() {
+        return sequence;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+}
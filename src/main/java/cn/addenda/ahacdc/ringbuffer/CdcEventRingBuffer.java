@@ -0,0 +1,177 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.CdcRecord;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多生产者、多订阅者的环形缓冲区，事件对象预先分配。
+ * <p>
+ * 生产者 CAS cursor 申请序号，写入事件之后在 availableBuffer 里标记这个序号可读。
+ * cursor 只表示序号已经被申请，订阅者需要用 getHighestPublishedSequence 找到连续可读的最大序号。
+ * <p>
+ * 生产者不能超过最慢的订阅者一圈，缓冲区满时生产者自旋等待。发布路径上没有锁。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:15
+ */
+public class CdcEventRingBuffer {
+
+    private static final Sequence[] EMPTY_SEQUENCES = new Sequence[0];
+
+    private static final AtomicReferenceFieldUpdater<CdcEventRingBuffer, Sequence[]> GATING_SEQUENCES_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(CdcEventRingBuffer.class, Sequence[].class, "gatingSequences");
+
+    private final int bufferSize;
+
+    private final int indexMask;
+
+    private final int indexShift;
+
+    private final CdcEvent[] events;
+
+    /**
+     * 第 i 个槽位上已发布事件的圈数（sequence >>> indexShift）
+     */
+    private final AtomicIntegerArray availableBuffer;
+
+    private final Sequence cursor = new Sequence();
+
+    /**
+     * 上一次计算出的最慢订阅者序号，避免每次申请序号都遍历 gatingSequences
+     */
+    private final Sequence gatingSequenceCache = new Sequence();
+
+    /**
+     * 订阅者的序号，写时复制
+     */
+    private volatile Sequence[] gatingSequences = EMPTY_SEQUENCES;
+
+    public CdcEventRingBuffer(int bufferSize) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            throw new CdcException("bufferSize must be a power of 2. ");
+        }
+        this.bufferSize = bufferSize;
+        this.indexMask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.events = new CdcEvent[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            events[i] = new CdcEvent();
+        }
+        this.availableBuffer = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            availableBuffer.set(i, -1);
+        }
+    }
+
+    /**
+     * 发布一个已提交事务的 cdc 记录。缓冲区满时等待最慢的订阅者。
+     */
+    public long publish(List<CdcRecord> cdcRecordList) {
+        long sequence = next();
+        events[(int) sequence & indexMask].set(sequence, cdcRecordList, System.nanoTime());
+        publish(sequence);
+        return sequence;
+    }
+
+    private long next() {
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - bufferSize;
+            long cachedGatingSequence = gatingSequenceCache.get();
+            if (wrapPoint > cachedGatingSequence || cachedGatingSequence > current) {
+                long gatingSequence = getMinimumGatingSequence(current);
+                if (wrapPoint > gatingSequence) {
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+                gatingSequenceCache.set(gatingSequence);
+            } else if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private void publish(long sequence) {
+        availableBuffer.lazySet((int) sequence & indexMask, (int) (sequence >>> indexShift));
+    }
+
+    public boolean isAvailable(long sequence) {
+        return availableBuffer.get((int) sequence & indexMask) == (int) (sequence >>> indexShift);
+    }
+
+    /**
+     * @return [lowerBound, availableSequence] 里从 lowerBound 开始连续已发布的最大序号，lowerBound 没有发布时返回 lowerBound - 1
+     */
+    public long getHighestPublishedSequence(long lowerBound, long availableSequence) {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++) {
+            if (!isAvailable(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return availableSequence;
+    }
+
+    public CdcEvent get(long sequence) {
+        return events[(int) sequence & indexMask];
+    }
+
+    public Sequence getCursor() {
+        return cursor;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 订阅者的序号从当前 cursor 开始，只能看到之后发布的事件。
+     */
+    void addGatingSequence(Sequence sequence) {
+        Sequence[] current;
+        Sequence[] updated;
+        do {
+            current = gatingSequences;
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = sequence;
+            sequence.set(cursor.get());
+        } while (!GATING_SEQUENCES_UPDATER.compareAndSet(this, current, updated));
+        // 加入期间生产者可能已经越过了设置的值，重新设置一次
+        sequence.set(cursor.get());
+    }
+
+    void removeGatingSequence(Sequence sequence) {
+        Sequence[] current;
+        Sequence[] updated;
+        do {
+            current = gatingSequences;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == sequence) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            updated = new Sequence[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        } while (!GATING_SEQUENCES_UPDATER.compareAndSet(this, current, updated));
+    }
+
+    private long getMinimumGatingSequence(long minimum) {
+        for (Sequence sequence : gatingSequences) {
+            minimum = Math.min(minimum, sequence.get());
+        }
+        return minimum;
+    }
+
+}
@@ -0,0 +1,52 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 环形缓冲区上的序号。前后填充，避免和其他线程频繁修改的变量处于同一个缓存行。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:00
+ */
+public class Sequence {
+
+    public static final long INITIAL_VALUE = -1L;
+
+    private static final AtomicLongFieldUpdater<Sequence> VALUE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(Sequence.class, "value");
+
+    protected long p1, p2, p3, p4, p5, p6, p7;
+
+    private volatile long value;
+
+    protected long p9, p10, p11, p12, p13, p14, p15;
+
+    public Sequence() {
+        this(INITIAL_VALUE);
+    }
+
+    public Sequence(long initialValue) {
+        this.value = initialValue;
+    }
+
+    public long get() {
+        return value;
+    }
+
+    /**
+     * 只保证之前的写不会重排到这次写之后，比 volatile 写便宜。
+     */
+    public void set(long value) {
+        VALUE_UPDATER.lazySet(this, value);
+    }
+
+    public boolean compareAndSet(long expectedValue, long newValue) {
+        return VALUE_UPDATER.compareAndSet(this, expectedValue, newValue);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+
+}
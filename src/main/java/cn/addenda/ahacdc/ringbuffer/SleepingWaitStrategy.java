@@ -0,0 +1,47 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 先自旋，再 yield，最后每次检查前 park sleepNanos。CPU 占用最低，延迟取决于 sleepNanos。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:05
+ */
+public class SleepingWaitStrategy implements WaitStrategy {
+
+    public static final long DEFAULT_SLEEP_NANOS = 100_000L;
+
+    private static final int SPIN_TRIES = 100;
+
+    private static final int YIELD_TRIES = 100;
+
+    private final long sleepNanos;
+
+    public SleepingWaitStrategy() {
+        this(DEFAULT_SLEEP_NANOS);
+    }
+
+    public SleepingWaitStrategy(long sleepNanos) {
+        this.sleepNanos = sleepNanos;
+    }
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, BooleanSupplier running) {
+        long availableSequence;
+        int counter = SPIN_TRIES + YIELD_TRIES;
+        while ((availableSequence = cursor.get()) < sequence && running.getAsBoolean()) {
+            if (counter > YIELD_TRIES) {
+                counter--;
+            } else if (counter > 0) {
+                counter--;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(sleepNanos);
+            }
+        }
+        return availableSequence;
+    }
+
+}
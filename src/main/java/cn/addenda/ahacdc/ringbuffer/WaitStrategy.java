@@ -0,0 +1,21 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 订阅者等待新事件的方式。发布事件时不需要通知等待者，所以发布路径上没有锁。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:00
+ */
+public interface WaitStrategy {
+
+    /**
+     * 等待 cursor 到达 sequence。
+     *
+     * @param running 返回 false 时停止等待
+     * @return cursor 的值。停止等待时可能小于 sequence。
+     */
+    long waitFor(long sequence, Sequence cursor, BooleanSupplier running);
+
+}
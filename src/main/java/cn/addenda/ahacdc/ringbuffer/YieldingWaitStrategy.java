@@ -0,0 +1,29 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 先自旋 spinTries 次，之后每次检查前 Thread.yield()。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 22:05
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, BooleanSupplier running) {
+        long availableSequence;
+        int counter = SPIN_TRIES;
+        while ((availableSequence = cursor.get()) < sequence && running.getAsBoolean()) {
+            if (counter > 0) {
+                counter--;
+            } else {
+                Thread.yield();
+            }
+        }
+        return availableSequence;
+    }
+
+}
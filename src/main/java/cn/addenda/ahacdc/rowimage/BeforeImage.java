@@ -0,0 +1,113 @@
+package cn.addenda.ahacdc.rowimage;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.collection.LongObjectHashMap;
+import cn.addenda.ro.grammar.lexical.token.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 加锁读时一起查出来的变更前的行。
+ * <p>
+ * 字段列表在第一次读取结果集时确定，配置为所有字段时取结果集的字段名。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 1:20
+ */
+public class BeforeImage {
+
+    private List<String> columnList;
+
+    private final LongObjectHashMap<Token[]> keyTokensMap = new LongObjectHashMap<>();
+
+    public List<String> getColumnList() {
+        return columnList;
+    }
+
+    public void setColumnList(List<String> columnList) {
+        this.columnList = columnList;
+    }
+
+    public void put(long keyValue, Token[] tokens) {
+        keyTokensMap.put(keyValue, tokens);
+    }
+
+    public Token[] get(long keyValue) {
+        return keyTokensMap.get(keyValue);
+    }
+
+    public boolean containsColumns(List<String> list) {
+        if (columnList == null) {
+            return false;
+        }
+        for (String column : list) {
+            if (indexOf(column) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 取出主键对应行的 list 字段。
+     *
+     * @return key是主键，value[i] 是 list.get(i) 的值
+     */
+    public LongObjectHashMap<Token[]> project(LongArrayList keyValueList, List<String> list) {
+        int[] indexes = new int[list.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = indexOf(list.get(i));
+            if (indexes[i] < 0) {
+                throw new CdcException("Before image does not contain column: " + list.get(i) + ". ");
+            }
+        }
+        LongObjectHashMap<Token[]> map = new LongObjectHashMap<>(keyValueList.size());
+        for (int i = 0; i < keyValueList.size(); i++) {
+            long keyValue = keyValueList.get(i);
+            Token[] tokens = keyTokensMap.get(keyValue);
+            if (tokens == null) {
+                throw new CdcException("Before image does not contain key: " + keyValue + ". ");
+            }
+            Token[] projected = new Token[indexes.length];
+            for (int j = 0; j < indexes.length; j++) {
+                projected[j] = tokens[indexes[j]];
+            }
+            map.put(keyValue, projected);
+        }
+        return map;
+    }
+
+    /**
+     * @return 第 i 个元素是 keyValueList.get(i) 对应行的字段值
+     */
+    public List<List<Object>> toValueListList(LongArrayList keyValueList) {
+        List<List<Object>> valueListList = new ArrayList<>(keyValueList.size());
+        for (int i = 0; i < keyValueList.size(); i++) {
+            Token[] tokens = keyTokensMap.get(keyValueList.get(i));
+            if (tokens == null) {
+                throw new CdcException("Before image does not contain key: " + keyValueList.get(i) + ". ");
+            }
+            List<Object> valueList = new ArrayList<>(tokens.length);
+            for (Token token : tokens) {
+                valueList.add(RowImage.toValue(token));
+            }
+            valueListList.add(valueList);
+        }
+        return valueListList;
+    }
+
+    /**
+     * 结果集的字段名和SQL里的字段名大小写可能不同
+     */
+    private int indexOf(String column) {
+        for (int i = 0; i < columnList.size(); i++) {
+            if (columnList.get(i).equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
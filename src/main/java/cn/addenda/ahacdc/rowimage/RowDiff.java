@@ -0,0 +1,152 @@
+package cn.addenda.ahacdc.rowimage;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.format.DataFormatterRegistry;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * diff 模式下一次变更：只包含值发生变化的字段，每个字段记录变更前后的值。
+ * <ul>
+ *     <li>INSERT：一个主键，插入的所有字段，变更前的值都是 null。</li>
+ *     <li>UPDATE：一个主键，值发生变化的字段。</li>
+ *     <li>DELETE：没有 before-image 时若干个主键，没有字段；有 before-image 时一个主键，被删除的行的字段，变更后的值都是 null。</li>
+ * </ul>
+ * 字段值的类型和 RowImage 一致。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 0:10
+ */
+public class RowDiff {
+
+    private final RowImage.Op op;
+
+    private final LongArrayList keyValueList;
+
+    private final List<String> columnList;
+
+    private final List<Object> beforeValueList;
+
+    private final List<Object> afterValueList;
+
+    public RowDiff(RowImage.Op op, LongArrayList keyValueList, List<String> columnList,
+                   List<Object> beforeValueList, List<Object> afterValueList) {
+        if (columnList.size() != beforeValueList.size() || columnList.size() != afterValueList.size()) {
+            throw new CdcException("Column count and value count of row diff are not equal. ");
+        }
+        this.op = op;
+        this.keyValueList = keyValueList;
+        this.columnList = columnList;
+        this.beforeValueList = beforeValueList;
+        this.afterValueList = afterValueList;
+    }
+
+    public static RowDiff ofInsert(long keyValue, List<String> columnList, List<Object> afterValueList) {
+        return new RowDiff(RowImage.Op.INSERT, LongArrayList.of(keyValue), columnList,
+                new ArrayList<>(Collections.nCopies(columnList.size(), null)), afterValueList);
+    }
+
+    /**
+     * @return 没有字段发生变化时返回 null
+     */
+    public static RowDiff ofUpdate(long keyValue, List<String> columnList, List<Object> beforeValueList, List<Object> afterValueList) {
+        List<String> changedColumnList = new ArrayList<>();
+        List<Object> changedBeforeValueList = new ArrayList<>();
+        List<Object> changedAfterValueList = new ArrayList<>();
+        for (int i = 0; i < columnList.size(); i++) {
+            Object before = beforeValueList.get(i);
+            Object after = afterValueList.get(i);
+            if (!valueEquals(before, after)) {
+                changedColumnList.add(columnList.get(i));
+                changedBeforeValueList.add(before);
+                changedAfterValueList.add(after);
+            }
+        }
+        if (changedColumnList.isEmpty()) {
+            return null;
+        }
+        return new RowDiff(RowImage.Op.UPDATE, LongArrayList.of(keyValue), changedColumnList, changedBeforeValueList, changedAfterValueList);
+    }
+
+    public static RowDiff ofDelete(LongArrayList keyValueList) {
+        return new RowDiff(RowImage.Op.DELETE, keyValueList, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    public static RowDiff ofDelete(long keyValue, List<String> columnList, List<Object> beforeValueList) {
+        return new RowDiff(RowImage.Op.DELETE, LongArrayList.of(keyValue), columnList,
+                beforeValueList, new ArrayList<>(Collections.nCopies(columnList.size(), null)));
+    }
+
+    /**
+     * 数据库里取出的值和SQL里的字面量类型可能不一致，比如 decimal 字段赋值整数、tinyint(1) 字段取出的是 Boolean，所以数字按数值比较。
+     * 无法确定是否相等时认为不相等，多记录一个字段，不会漏记录。
+     */
+    public static boolean valueEquals(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        BigDecimal decimalA = toDecimal(a);
+        BigDecimal decimalB = toDecimal(b);
+        if (decimalA != null && decimalB != null) {
+            return decimalA.compareTo(decimalB) == 0;
+        }
+        return a.equals(b);
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Long) {
+            return BigDecimal.valueOf((Long) value);
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        return null;
+    }
+
+    /**
+     * 渲染为变更之后的可执行SQL。
+     */
+    public String toSql(String tableName, String keyColumn, DataFormatterRegistry dataFormatterRegistry) {
+        return new RowImage(op, keyValueList, columnList, afterValueList).toSql(tableName, keyColumn, dataFormatterRegistry);
+    }
+
+    public RowImage.Op getOp() {
+        return op;
+    }
+
+    public LongArrayList getKeyValueList() {
+        return keyValueList;
+    }
+
+    public List<String> getColumnList() {
+        return columnList;
+    }
+
+    public List<Object> getBeforeValueList() {
+        return beforeValueList;
+    }
+
+    public List<Object> getAfterValueList() {
+        return afterValueList;
+    }
+
+    @Override
+    public String toString() {
+        return "RowDiff{" +
+                "op=" + op +
+                ", keyValueList=" + keyValueList +
+                ", columnList=" + columnList +
+                ", beforeValueList=" + beforeValueList +
+                ", afterValueList=" + afterValueList +
+                '}';
+    }
+
+}
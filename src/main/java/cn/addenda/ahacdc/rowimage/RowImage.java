@@ -0,0 +1,222 @@
+package cn.addenda.ahacdc.rowimage;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.format.DataFormatterRegistry;
+import cn.addenda.ro.grammar.lexical.token.Token;
+import cn.addenda.ro.grammar.lexical.token.TokenType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * row 模式下一次变更的结构化表示：操作类型、主键、字段名和字段值。
+ * <p>
+ * 字段值只有以下几种类型：null、Boolean、Long、BigInteger、BigDecimal、String。时间类型的值是格式化之后的字符串。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 15:40
+ */
+public class RowImage {
+
+    public enum Op {
+        INSERT((byte) 1), UPDATE((byte) 2), DELETE((byte) 3);
+
+        private final byte code;
+
+        Op(byte code) {
+            this.code = code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        public static Op of(byte code) {
+            for (Op op : values()) {
+                if (op.code == code) {
+                    return op;
+                }
+            }
+            throw new CdcException("Unknown row image op: " + code + ". ");
+        }
+    }
+
+    private final Op op;
+
+    private final LongArrayList keyValueList;
+
+    private final List<String> columnList;
+
+    private final List<Object> valueList;
+
+    /**
+     * 变更前的行（before-image）的字段，没有记录 before-image 时为 null
+     */
+    private final List<String> beforeColumnList;
+
+    /**
+     * 第 i 个元素是 keyValueList.get(i) 对应行变更前的字段值
+     */
+    private final List<List<Object>> beforeValueListList;
+
+    public RowImage(Op op, LongArrayList keyValueList, List<String> columnList, List<Object> valueList) {
+        this(op, keyValueList, columnList, valueList, null, null);
+    }
+
+    public RowImage(Op op, LongArrayList keyValueList, List<String> columnList, List<Object> valueList,
+                    List<String> beforeColumnList, List<List<Object>> beforeValueListList) {
+        if (columnList.size() != valueList.size()) {
+            throw new CdcException("Column count and value count of row image are not equal. ");
+        }
+        if (beforeColumnList != null && beforeValueListList.size() != keyValueList.size()) {
+            throw new CdcException("Key count and before image count of row image are not equal. ");
+        }
+        this.op = op;
+        this.keyValueList = keyValueList;
+        this.columnList = columnList;
+        this.valueList = valueList;
+        this.beforeColumnList = beforeColumnList;
+        this.beforeValueListList = beforeValueListList;
+    }
+
+    public static RowImage ofDelete(LongArrayList keyValueList) {
+        return new RowImage(Op.DELETE, keyValueList, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * @param beforeImage 为 null 时不记录 before-image
+     */
+    public static RowImage ofDelete(LongArrayList keyValueList, BeforeImage beforeImage) {
+        if (beforeImage == null) {
+            return ofDelete(keyValueList);
+        }
+        return new RowImage(Op.DELETE, keyValueList, Collections.emptyList(), Collections.emptyList(),
+                beforeImage.getColumnList(), beforeImage.toValueListList(keyValueList));
+    }
+
+    /**
+     * 用 SQL 里的字面量构造 RowImage。
+     */
+    public static RowImage ofTokens(Op op, LongArrayList keyValueList, List<String> columnList, List<Token> tokenList) {
+        return new RowImage(op, keyValueList, columnList, toValueList(tokenList));
+    }
+
+    /**
+     * @param beforeImage 为 null 时不记录 before-image
+     */
+    public static RowImage ofTokens(Op op, LongArrayList keyValueList, List<String> columnList, List<Token> tokenList, BeforeImage beforeImage) {
+        if (beforeImage == null) {
+            return ofTokens(op, keyValueList, columnList, tokenList);
+        }
+        return new RowImage(op, keyValueList, columnList, toValueList(tokenList),
+                beforeImage.getColumnList(), beforeImage.toValueListList(keyValueList));
+    }
+
+    /**
+     * 把字面量转为 RowImage 的字段值。
+     */
+    public static List<Object> toValueList(List<Token> tokenList) {
+        List<Object> valueList = new ArrayList<>(tokenList.size());
+        for (Token token : tokenList) {
+            valueList.add(toValue(token));
+        }
+        return valueList;
+    }
+
+    static Object toValue(Token token) {
+        TokenType type = token.getType();
+        Object literal = token.getLiteral();
+        if (TokenType.NULL.equals(type)) {
+            return null;
+        } else if (TokenType.TRUE.equals(type)) {
+            return Boolean.TRUE;
+        } else if (TokenType.FALSE.equals(type)) {
+            return Boolean.FALSE;
+        } else if (TokenType.INTEGER.equals(type)) {
+            BigInteger bigInteger = literal instanceof BigInteger ? (BigInteger) literal : new BigInteger(String.valueOf(literal));
+            return bigInteger.bitLength() < 64 ? (Object) bigInteger.longValue() : bigInteger;
+        } else if (TokenType.DECIMAL.equals(type)) {
+            return literal instanceof BigDecimal ? literal : new BigDecimal(String.valueOf(literal));
+        } else if (TokenType.STRING.equals(type)) {
+            return String.valueOf(literal);
+        }
+        throw new CdcException("Row image only support literal value, current token: " + token + ". ");
+    }
+
+    /**
+     * 渲染为可执行的SQL。
+     */
+    public String toSql(String tableName, String keyColumn, DataFormatterRegistry dataFormatterRegistry) {
+        StringBuilder sql = new StringBuilder();
+        if (Op.INSERT.equals(op)) {
+            sql.append("insert into ").append(tableName).append("(").append(String.join(",", columnList)).append(") values (");
+            for (int i = 0; i < valueList.size(); i++) {
+                if (i != 0) {
+                    sql.append(",");
+                }
+                sql.append(dataFormatterRegistry.format(valueList.get(i)));
+            }
+            sql.append(")");
+            return sql.toString();
+        }
+        if (Op.UPDATE.equals(op)) {
+            sql.append("update ").append(tableName).append(" set ");
+            for (int i = 0; i < columnList.size(); i++) {
+                if (i != 0) {
+                    sql.append(", ");
+                }
+                sql.append(columnList.get(i)).append(" = ").append(dataFormatterRegistry.format(valueList.get(i)));
+            }
+        } else {
+            sql.append("delete from ").append(tableName);
+        }
+        sql.append(" where ").append(keyColumn);
+        if (keyValueList.size() == 1) {
+            sql.append(" = ").append(keyValueList.get(0));
+        } else {
+            sql.append(" in (").append(keyValueList.join(",")).append(")");
+        }
+        return sql.toString();
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public LongArrayList getKeyValueList() {
+        return keyValueList;
+    }
+
+    public List<String> getColumnList() {
+        return columnList;
+    }
+
+    public List<Object> getValueList() {
+        return valueList;
+    }
+
+    public List<String> getBeforeColumnList() {
+        return beforeColumnList;
+    }
+
+    public List<List<Object>> getBeforeValueListList() {
+        return beforeValueListList;
+    }
+
+    @Override
+    public String toString() {
+        return "RowImage{" +
+                "op=" + op +
+                ", keyValueList=" + keyValueList +
+                ", columnList=" + columnList +
+                ", valueList=" + valueList +
+                ", beforeColumnList=" + beforeColumnList +
+                ", beforeValueListList=" + beforeValueListList +
+                '}';
+    }
+
+}
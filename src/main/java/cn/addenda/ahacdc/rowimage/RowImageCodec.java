@@ -0,0 +1,394 @@
+package cn.addenda.ahacdc.rowimage;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.collection.LongArrayList;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RowImage 和 RowDiff 的二进制编码。
+ * <pre>
+ * version(1) op(1)
+ * keyCount(varint) key0(zigzag varint) key1-key0(zigzag varint) ...
+ * columnCount(varint) [nameLength(varint) name(utf-8)] ...
+ * [tag(1) value] ...
+ * </pre>
+ * 记录了 before-image 的 RowImage 版本号为 2，在上面的内容之后追加：
+ * <pre>
+ * beforeColumnCount(varint) [nameLength(varint) name(utf-8)] ...
+ * [[tag(1) value] ...] ...   每个主键一组
+ * </pre>
+ * RowDiff 的编码和版本1的 RowImage 相同，只是每个字段有两个值：[before after] ...
+ * 整数用 zigzag varint；decimal 存 unscaled value 和 scale；字符串存长度和 utf-8 字节；
+ * 格式为 yyyy-MM-dd HH:mm:ss、yyyy-MM-dd、HH:mm:ss 的字符串按 epoch 秒、epoch 天、当天秒数存储，解码后还原为原字符串。
+ * <p>
+ * 线程安全。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 15:50
+ */
+public class RowImageCodec {
+
+    public static final byte VERSION = 1;
+
+    public static final byte VERSION_BEFORE_IMAGE = 2;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_BIG_INTEGER = 4;
+    private static final byte TAG_DECIMAL = 5;
+    private static final byte TAG_BIG_DECIMAL = 6;
+    private static final byte TAG_STRING = 7;
+    private static final byte TAG_DATETIME = 8;
+    private static final byte TAG_DATE = 9;
+    private static final byte TAG_TIME = 10;
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final RowImageCodec INSTANCE = new RowImageCodec();
+
+    public static RowImageCodec getInstance() {
+        return INSTANCE;
+    }
+
+    public byte[] encode(RowImage rowImage) {
+        ByteWriter writer = new ByteWriter(64);
+        List<String> beforeColumnList = rowImage.getBeforeColumnList();
+        writeHeader(writer, beforeColumnList == null ? VERSION : VERSION_BEFORE_IMAGE,
+                rowImage.getOp(), rowImage.getKeyValueList(), rowImage.getColumnList());
+        for (Object value : rowImage.getValueList()) {
+            writeValue(writer, value);
+        }
+        if (beforeColumnList != null) {
+            writeColumnList(writer, beforeColumnList);
+            for (List<Object> beforeValueList : rowImage.getBeforeValueListList()) {
+                for (Object value : beforeValueList) {
+                    writeValue(writer, value);
+                }
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    public RowImage decode(byte[] bytes) {
+        ByteReader reader = new ByteReader(bytes);
+        byte version = readVersion(reader, VERSION_BEFORE_IMAGE);
+        RowImage.Op op = RowImage.Op.of(reader.readByte());
+        LongArrayList keyValueList = readKeyValueList(reader);
+        List<String> columnList = readColumnList(reader);
+        List<Object> valueList = new ArrayList<>(columnList.size());
+        for (int i = 0; i < columnList.size(); i++) {
+            valueList.add(readValue(reader));
+        }
+        if (version == VERSION) {
+            return new RowImage(op, keyValueList, columnList, valueList);
+        }
+        List<String> beforeColumnList = readColumnList(reader);
+        List<List<Object>> beforeValueListList = new ArrayList<>(keyValueList.size());
+        for (int i = 0; i < keyValueList.size(); i++) {
+            List<Object> beforeValueList = new ArrayList<>(beforeColumnList.size());
+            for (int j = 0; j < beforeColumnList.size(); j++) {
+                beforeValueList.add(readValue(reader));
+            }
+            beforeValueListList.add(beforeValueList);
+        }
+        return new RowImage(op, keyValueList, columnList, valueList, beforeColumnList, beforeValueListList);
+    }
+
+    public byte[] encodeDiff(RowDiff rowDiff) {
+        ByteWriter writer = new ByteWriter(64);
+        writeHeader(writer, VERSION, rowDiff.getOp(), rowDiff.getKeyValueList(), rowDiff.getColumnList());
+        List<Object> beforeValueList = rowDiff.getBeforeValueList();
+        List<Object> afterValueList = rowDiff.getAfterValueList();
+        for (int i = 0; i < beforeValueList.size(); i++) {
+            writeValue(writer, beforeValueList.get(i));
+            writeValue(writer, afterValueList.get(i));
+        }
+        return writer.toByteArray();
+    }
+
+    public RowDiff decodeDiff(byte[] bytes) {
+        ByteReader reader = new ByteReader(bytes);
+        readVersion(reader, VERSION);
+        RowImage.Op op = RowImage.Op.of(reader.readByte());
+        LongArrayList keyValueList = readKeyValueList(reader);
+        List<String> columnList = readColumnList(reader);
+        List<Object> beforeValueList = new ArrayList<>(columnList.size());
+        List<Object> afterValueList = new ArrayList<>(columnList.size());
+        for (int i = 0; i < columnList.size(); i++) {
+            beforeValueList.add(readValue(reader));
+            afterValueList.add(readValue(reader));
+        }
+        return new RowDiff(op, keyValueList, columnList, beforeValueList, afterValueList);
+    }
+
+    private void writeHeader(ByteWriter writer, byte version, RowImage.Op op, LongArrayList keyValueList, List<String> columnList) {
+        writer.writeByte(version);
+        writer.writeByte(op.getCode());
+
+        writer.writeVarint(keyValueList.size());
+        long preKeyValue = 0;
+        for (int i = 0; i < keyValueList.size(); i++) {
+            long keyValue = keyValueList.get(i);
+            // 主键通常是递增的，存差值更短
+            writer.writeZigzag(keyValue - preKeyValue);
+            preKeyValue = keyValue;
+        }
+
+        writeColumnList(writer, columnList);
+    }
+
+    private void writeColumnList(ByteWriter writer, List<String> columnList) {
+        writer.writeVarint(columnList.size());
+        for (String column : columnList) {
+            writer.writeString(column);
+        }
+    }
+
+    private byte readVersion(ByteReader reader, byte maxVersion) {
+        byte version = reader.readByte();
+        if (version < VERSION || version > maxVersion) {
+            throw new CdcException("Unsupported row image version: " + version + ". ");
+        }
+        return version;
+    }
+
+    private LongArrayList readKeyValueList(ByteReader reader) {
+        int keyCount = (int) reader.readVarint();
+        LongArrayList keyValueList = new LongArrayList(keyCount);
+        long keyValue = 0;
+        for (int i = 0; i < keyCount; i++) {
+            keyValue += reader.readZigzag();
+            keyValueList.add(keyValue);
+        }
+        return keyValueList;
+    }
+
+    private List<String> readColumnList(ByteReader reader) {
+        int columnCount = (int) reader.readVarint();
+        List<String> columnList = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            columnList.add(reader.readString());
+        }
+        return columnList;
+    }
+
+    private void writeValue(ByteWriter writer, Object value) {
+        if (value == null) {
+            writer.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            writer.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.writeByte(TAG_LONG);
+            writer.writeZigzag(((Number) value).longValue());
+        } else if (value instanceof BigInteger) {
+            writer.writeByte(TAG_BIG_INTEGER);
+            writer.writeBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            BigInteger unscaledValue = decimal.unscaledValue();
+            if (unscaledValue.bitLength() < 64) {
+                writer.writeByte(TAG_DECIMAL);
+                writer.writeZigzag(unscaledValue.longValue());
+            } else {
+                writer.writeByte(TAG_BIG_DECIMAL);
+                writer.writeBytes(unscaledValue.toByteArray());
+            }
+            writer.writeZigzag(decimal.scale());
+        } else if (value instanceof String) {
+            writeString(writer, (String) value);
+        } else {
+            throw new CdcException("Unsupported row image value type: " + value.getClass() + ". ");
+        }
+    }
+
+    private void writeString(ByteWriter writer, String value) {
+        int length = value.length();
+        try {
+            if (length == 19 && value.charAt(4) == '-' && value.charAt(10) == ' ' && value.charAt(13) == ':') {
+                LocalDateTime localDateTime = LocalDateTime.parse(value, DATE_TIME_FORMATTER);
+                if (value.equals(DATE_TIME_FORMATTER.format(localDateTime))) {
+                    writer.writeByte(TAG_DATETIME);
+                    writer.writeZigzag(localDateTime.toEpochSecond(ZoneOffset.UTC));
+                    return;
+                }
+            } else if (length == 10 && value.charAt(4) == '-' && value.charAt(7) == '-') {
+                LocalDate localDate = LocalDate.parse(value, DATE_FORMATTER);
+                if (value.equals(DATE_FORMATTER.format(localDate))) {
+                    writer.writeByte(TAG_DATE);
+                    writer.writeZigzag(localDate.toEpochDay());
+                    return;
+                }
+            } else if (length == 8 && value.charAt(2) == ':' && value.charAt(5) == ':') {
+                LocalTime localTime = LocalTime.parse(value, TIME_FORMATTER);
+                if (value.equals(TIME_FORMATTER.format(localTime))) {
+                    writer.writeByte(TAG_TIME);
+                    writer.writeVarint(localTime.toSecondOfDay());
+                    return;
+                }
+            }
+        } catch (DateTimeParseException e) {
+            // 只是格式相似的普通字符串
+        }
+        writer.writeByte(TAG_STRING);
+        writer.writeString(value);
+    }
+
+    private Object readValue(ByteReader reader) {
+        byte tag = reader.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_LONG:
+                return reader.readZigzag();
+            case TAG_BIG_INTEGER:
+                return new BigInteger(reader.readBytes());
+            case TAG_DECIMAL: {
+                long unscaledValue = reader.readZigzag();
+                return BigDecimal.valueOf(unscaledValue, (int) reader.readZigzag());
+            }
+            case TAG_BIG_DECIMAL: {
+                BigInteger unscaledValue = new BigInteger(reader.readBytes());
+                return new BigDecimal(unscaledValue, (int) reader.readZigzag());
+            }
+            case TAG_STRING:
+                return reader.readString();
+            case TAG_DATETIME:
+                return DATE_TIME_FORMATTER.format(LocalDateTime.ofEpochSecond(reader.readZigzag(), 0, ZoneOffset.UTC));
+            case TAG_DATE:
+                return DATE_FORMATTER.format(LocalDate.ofEpochDay(reader.readZigzag()));
+            case TAG_TIME:
+                return TIME_FORMATTER.format(LocalTime.ofSecondOfDay(reader.readVarint()));
+            default:
+                throw new CdcException("Unknown row image value tag: " + tag + ". ");
+        }
+    }
+
+    private static class ByteWriter {
+
+        private byte[] buf;
+
+        private int count;
+
+        ByteWriter(int initialCapacity) {
+            buf = new byte[initialCapacity];
+        }
+
+        void writeByte(byte b) {
+            ensureCapacity(1);
+            buf[count++] = b;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[count++] = (byte) value;
+        }
+
+        void writeZigzag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        private void ensureCapacity(int length) {
+            if (count + length > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + length));
+            }
+        }
+    }
+
+    private static class ByteReader {
+
+        private final byte[] buf;
+
+        private int position;
+
+        ByteReader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        byte readByte() {
+            if (position >= buf.length) {
+                throw new CdcException("Row image is truncated. ");
+            }
+            return buf[position++];
+        }
+
+        long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift >= 64) {
+                    throw new CdcException("Malformed varint in row image. ");
+                }
+                b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long readZigzag() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarint();
+            if (length < 0 || position + length > buf.length) {
+                throw new CdcException("Row image is truncated. ");
+            }
+            byte[] bytes = Arrays.copyOfRange(buf, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            if (length < 0 || position + length > buf.length) {
+                throw new CdcException("Row image is truncated. ");
+            }
+            String value = new String(buf, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,387 @@
+package cn.addenda.ahacdc.segment;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.CdcRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 本地的追加写日志，保存已经提交的 cdc 记录，用于替代写入数据库的 cdc 表。
+ * <p>
+ * 日志由固定大小的 segment 文件组成，文件名是 segment 的序号。每条记录的格式：
+ * <pre>
+ * length(4) crc(4) type(1) payload(length)
+ * </pre>
+ * crc 覆盖 type 和 payload。一个事务的数据记录之后写一条 commit 记录，只有 commit 记录之前的数据是有效的。
+ * length 为 0 表示当前 segment 之后没有数据。
+ * <p>
+ * 打开日志时从头校验，最后一条 commit 记录之后的内容（写了一半的事务、crc 错误的记录）全部截掉。
+ * <p>
+ * 线程安全。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 17:40
+ */
+public class SegmentLog implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final byte TYPE_DATA = 1;
+    private static final byte TYPE_COMMIT = 2;
+
+    private static final int RECORD_HEADER_LENGTH = 9;
+
+    private final File dir;
+
+    private final int segmentSize;
+
+    /**
+     * 为 true 时每次提交都把数据刷到磁盘
+     */
+    private final boolean forceOnCommit;
+
+    private long segmentIndex;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    private long lastTxId;
+
+    /**
+     * 下一个事务的序号。写入失败并且切换过 segment 时，失败事务的序号不再使用，所以可能大于 lastTxId + 1。
+     */
+    private long nextTxId;
+
+    private boolean closed;
+
+    public SegmentLog(File dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_SIZE, true);
+    }
+
+    public SegmentLog(File dir, int segmentSize, boolean forceOnCommit) throws IOException {
+        if (segmentSize <= RECORD_HEADER_LENGTH * 2) {
+            throw new CdcException("segmentSize is too small: " + segmentSize + ". ");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create segment log directory: " + dir + ". ");
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.forceOnCommit = forceOnCommit;
+        recover();
+        this.nextTxId = lastTxId + 1;
+    }
+
+    /**
+     * 写入一个已提交事务的 cdc 记录，最后写 commit 记录。
+     * <p>
+     * 写入之前先检查所有记录的长度。写了一部分之后失败时，没有切换 segment 就把已经写入的部分清零；
+     * 已经切换了 segment 时放弃这个事务的序号，已经写入的数据记录没有对应的 commit 记录，回放时被忽略。
+     *
+     * @return 事务在日志中的序号
+     */
+    public synchronized long append(List<CdcRecord> cdcRecordList) throws IOException {
+        assertOpen();
+        long txId = nextTxId;
+        List<byte[]> payloadList = new ArrayList<>(cdcRecordList.size());
+        for (CdcRecord cdcRecord : cdcRecordList) {
+            byte[] payload = encodeData(txId, cdcRecord);
+            assertRecordLength(payload);
+            payloadList.add(payload);
+        }
+        long startSegmentIndex = segmentIndex;
+        int startPosition = buffer.position();
+        boolean committed = false;
+        try {
+            for (byte[] payload : payloadList) {
+                writeRecord(TYPE_DATA, payload);
+            }
+            ByteBuffer commit = ByteBuffer.allocate(12);
+            commit.putLong(txId);
+            commit.putInt(cdcRecordList.size());
+            writeRecord(TYPE_COMMIT, commit.array());
+            committed = true;
+        } finally {
+            if (!committed) {
+                if (segmentIndex == startSegmentIndex) {
+                    rewind(startPosition);
+                } else {
+                    nextTxId = txId + 1;
+                }
+            }
+        }
+        lastTxId = txId;
+        nextTxId = txId + 1;
+        if (forceOnCommit) {
+            buffer.force();
+        }
+        return txId;
+    }
+
+    /**
+     * 按顺序回放已经提交的事务。
+     */
+    public synchronized void replay(SegmentLogConsumer consumer) throws IOException {
+        assertOpen();
+        List<Long> segmentIndexList = listSegmentIndexes();
+        Map<Long, List<CdcRecord>> pendingMap = new HashMap<>();
+        for (long index : segmentIndexList) {
+            ByteBuffer segment = index == segmentIndex ? (ByteBuffer) buffer.duplicate().flip() : readSegment(index);
+            while (true) {
+                RawRecord rawRecord = readRecord(segment);
+                if (rawRecord == null) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.wrap(rawRecord.payload);
+                long txId = payload.getLong();
+                if (rawRecord.type == TYPE_DATA) {
+                    pendingMap.computeIfAbsent(txId, k -> new ArrayList<>()).add(decodeData(payload));
+                } else {
+                    List<CdcRecord> cdcRecordList = pendingMap.remove(txId);
+                    consumer.accept(txId, cdcRecordList == null ? Collections.emptyList() : cdcRecordList);
+                }
+            }
+        }
+    }
+
+    public synchronized long getLastTxId() {
+        return lastTxId;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        channel.close();
+    }
+
+    private void assertRecordLength(byte[] payload) {
+        int length = RECORD_HEADER_LENGTH + payload.length;
+        if (length > segmentSize) {
+            throw new CdcException("Cdc record is larger than segment size, record length: " + length + ". ");
+        }
+    }
+
+    /**
+     * 把 position 之后已经写入的内容清零，回到 position
+     */
+    private void rewind(int position) {
+        for (int i = position; i < buffer.position(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.position(position);
+    }
+
+    private void writeRecord(byte type, byte[] payload) throws IOException {
+        assertRecordLength(payload);
+        int length = RECORD_HEADER_LENGTH + payload.length;
+        if (buffer.remaining() < length) {
+            // 剩余的空间保持为0，读取时遇到 length 为 0 就切换到下一个 segment
+            buffer.force();
+            channel.close();
+            openSegment(segmentIndex + 1, 0);
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(type);
+        crc32.update(payload);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc32.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+    }
+
+    private void recover() throws IOException {
+        List<Long> segmentIndexList = listSegmentIndexes();
+        if (segmentIndexList.isEmpty()) {
+            openSegment(0, 0);
+            return;
+        }
+        long commitSegmentIndex = segmentIndexList.get(0);
+        int commitPosition = 0;
+        for (long index : segmentIndexList) {
+            ByteBuffer segment = readSegment(index);
+            boolean torn = false;
+            while (true) {
+                int position = segment.position();
+                RawRecord rawRecord;
+                try {
+                    rawRecord = readRecord(segment);
+                } catch (CdcException e) {
+                    torn = true;
+                    break;
+                }
+                if (rawRecord == null) {
+                    // 当前 segment 没写满就切换了，或者已经到了末尾
+                    torn = segment.position() == position && hasNonZero(segment);
+                    break;
+                }
+                if (rawRecord.type == TYPE_COMMIT) {
+                    commitSegmentIndex = index;
+                    commitPosition = segment.position();
+                    lastTxId = ByteBuffer.wrap(rawRecord.payload).getLong();
+                }
+            }
+            if (torn) {
+                break;
+            }
+        }
+
+        // 截掉最后一条 commit 记录之后的内容
+        for (long index : segmentIndexList) {
+            if (index > commitSegmentIndex) {
+                File file = segmentFile(index);
+                if (!file.delete()) {
+                    throw new IOException("Cannot delete torn segment: " + file + ". ");
+                }
+            }
+        }
+        openSegment(commitSegmentIndex, commitPosition);
+        byte[] zeros = new byte[8192];
+        ByteBuffer tail = buffer.duplicate();
+        while (tail.hasRemaining()) {
+            tail.put(zeros, 0, Math.min(zeros.length, tail.remaining()));
+        }
+        buffer.force();
+    }
+
+    private void openSegment(long index, int position) throws IOException {
+        // 映射的区域超过文件大小时文件会被扩展，扩展的部分是0
+        channel = FileChannel.open(segmentFile(index).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.position(position);
+        segmentIndex = index;
+    }
+
+    private ByteBuffer readSegment(long index) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(segmentFile(index).toPath(), StandardOpenOption.READ)) {
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        }
+    }
+
+    /**
+     * @return 没有更多记录时返回 null；记录损坏时抛出 CdcException
+     */
+    private RawRecord readRecord(ByteBuffer segment) {
+        if (segment.remaining() < RECORD_HEADER_LENGTH) {
+            return null;
+        }
+        int start = segment.position();
+        int length = segment.getInt(start);
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0 || length > segment.remaining() - RECORD_HEADER_LENGTH) {
+            throw new CdcException("Segment record length is invalid: " + length + ". ");
+        }
+        int crc = segment.getInt(start + 4);
+        byte type = segment.get(start + 8);
+        byte[] payload = new byte[length];
+        segment.position(start + RECORD_HEADER_LENGTH);
+        segment.get(payload);
+        CRC32 crc32 = new CRC32();
+        crc32.update(type);
+        crc32.update(payload);
+        if ((int) crc32.getValue() != crc || (type != TYPE_DATA && type != TYPE_COMMIT)) {
+            segment.position(start);
+            throw new CdcException("Segment record is corrupted at position " + start + ". ");
+        }
+        return new RawRecord(type, payload);
+    }
+
+    private boolean hasNonZero(ByteBuffer segment) {
+        for (int i = segment.position(); i < segment.limit(); i++) {
+            if (segment.get(i) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] encodeData(long txId, CdcRecord cdcRecord) {
+        byte[] tableName = cdcRecord.getTableName().getBytes(StandardCharsets.UTF_8);
+        byte[] cdcMode = cdcRecord.getCdcMode().getBytes(StandardCharsets.UTF_8);
+        boolean rowImage = cdcRecord.getRowImage() != null;
+        byte[] data = rowImage ? cdcRecord.getRowImage() : cdcRecord.getExecutableSql().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(8 + 2 + tableName.length + 2 + cdcMode.length + 1 + data.length);
+        payload.putLong(txId);
+        payload.putShort((short) tableName.length);
+        payload.put(tableName);
+        payload.putShort((short) cdcMode.length);
+        payload.put(cdcMode);
+        payload.put(rowImage ? (byte) 1 : (byte) 0);
+        payload.put(data);
+        return payload.array();
+    }
+
+    private CdcRecord decodeData(ByteBuffer payload) {
+        byte[] tableName = new byte[payload.getShort()];
+        payload.get(tableName);
+        byte[] cdcMode = new byte[payload.getShort()];
+        payload.get(cdcMode);
+        boolean rowImage = payload.get() == 1;
+        byte[] data = new byte[payload.remaining()];
+        payload.get(data);
+        return new CdcRecord(new String(tableName, StandardCharsets.UTF_8), new String(cdcMode, StandardCharsets.UTF_8),
+                rowImage ? null : new String(data, StandardCharsets.UTF_8), rowImage ? data : null);
+    }
+
+    private List<Long> listSegmentIndexes() {
+        List<Long> segmentIndexList = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    segmentIndexList.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // 不是 segment 文件
+                }
+            }
+        }
+        Collections.sort(segmentIndexList);
+        return segmentIndexList;
+    }
+
+    private File segmentFile(long index) {
+        return new File(dir, String.format("%020d", index) + SEGMENT_SUFFIX);
+    }
+
+    private void assertOpen() {
+        if (closed) {
+            throw new CdcException("SegmentLog has been closed. ");
+        }
+    }
+
+    private static class RawRecord {
+
+        private final byte type;
+
+        private final byte[] payload;
+
+        RawRecord(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package cn.addenda.ahacdc.segment;
+
+import cn.addenda.ahacdc.CdcRecord;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/18 17:45
+ */
+public interface SegmentLogConsumer {
+
+    void accept(long txId, List<CdcRecord> cdcRecordList) throws IOException;
+
+}
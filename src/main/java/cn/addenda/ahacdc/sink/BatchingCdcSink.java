@@ -0,0 +1,80 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.CdcRecord;
+import cn.addenda.ahacdc.CdcRecordBuffer;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.List;
+
+/**
+ * 事务里的 cdc 记录先放入缓冲区，beforeCommit 时一次性 append 给 delegate。
+ * 回滚到保存点时直接丢弃缓冲区里保存点之后的记录，delegate 感知不到。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 21:10
+ */
+public class BatchingCdcSink implements CdcSink {
+
+    private final CdcSink delegate;
+
+    private final CdcRecordBuffer cdcRecordBuffer = new CdcRecordBuffer();
+
+    public BatchingCdcSink(CdcSink delegate) {
+        this.delegate = delegate;
+    }
+
+    public static CdcSinkFactory factory(CdcSinkFactory delegateFactory) {
+        return (cdcConnection, tableConfig) -> new BatchingCdcSink(delegateFactory.create(cdcConnection, tableConfig));
+    }
+
+    @Override
+    public void begin() throws SQLException {
+        cdcRecordBuffer.clear();
+        delegate.begin();
+    }
+
+    @Override
+    public void append(List<CdcRecord> cdcRecordList) {
+        cdcRecordBuffer.addAll(cdcRecordList);
+    }
+
+    @Override
+    public void beforeCommit() throws SQLException {
+        try {
+            if (!cdcRecordBuffer.isEmpty()) {
+                delegate.append(cdcRecordBuffer.getCdcRecordList());
+            }
+        } finally {
+            cdcRecordBuffer.clear();
+        }
+        delegate.beforeCommit();
+    }
+
+    @Override
+    public void afterCommit() throws SQLException {
+        delegate.afterCommit();
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        cdcRecordBuffer.clear();
+        delegate.rollback();
+    }
+
+    @Override
+    public void setSavepoint(Savepoint savepoint) {
+        cdcRecordBuffer.mark(savepoint);
+    }
+
+    @Override
+    public void rollback(Savepoint savepoint) {
+        cdcRecordBuffer.rollbackTo(savepoint);
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) {
+        cdcRecordBuffer.release(savepoint);
+    }
+
+}
@@ -0,0 +1,63 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.CdcRecord;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.List;
+
+/**
+ * cdc 记录的去处。sink 由 CdcSinkFactory 按连接创建，生命周期跟随连接上的事务：
+ * <pre>
+ * begin -> append* -> beforeCommit -> (业务事务提交) -> afterCommit
+ * begin -> append* -> rollback
+ * begin -> append* -> beforeCommit -> (业务事务提交失败) -> rollback
+ * </pre>
+ * 事务里第一次 append 之前调用 begin。beforeCommit 抛出异常时业务事务不会提交，并且会调用 rollback。
+ * 所有 sink 的 beforeCommit 都执行过之后业务事务提交失败，同样会调用 rollback。
+ * afterCommit 抛出异常时业务事务已经提交。
+ * <p>
+ * sink 只在一个连接上使用，不需要考虑线程安全。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 21:00
+ */
+public interface CdcSink {
+
+    void begin() throws SQLException;
+
+    /**
+     * @param cdcRecordList 可能是 CdcRecordList，get 时才渲染，方法返回之后不能再访问。
+     */
+    void append(List<CdcRecord> cdcRecordList) throws SQLException;
+
+    void beforeCommit() throws SQLException;
+
+    void afterCommit() throws SQLException;
+
+    void rollback() throws SQLException;
+
+    /**
+     * 只有 begin 之后设置的保存点会通知到 sink。
+     */
+    default void setSavepoint(Savepoint savepoint) throws SQLException {
+    }
+
+    /**
+     * 回滚到 begin 之前设置的保存点时，调用的是 rollback()。
+     */
+    default void rollback(Savepoint savepoint) throws SQLException {
+    }
+
+    default void releaseSavepoint(Savepoint savepoint) throws SQLException {
+    }
+
+    /**
+     * sink 改写 append 的记录（比如合并）时返回 true。此时 CdcConnection 不发布 append 的记录，
+     * 由 sink 在 beforeCommit 时调用 CdcConnection.publish 发布实际写出的记录，ring buffer 的订阅者和 sink 看到的记录保持一致。
+     */
+    default boolean rewritesCdcRecords() {
+        return false;
+    }
+
+}
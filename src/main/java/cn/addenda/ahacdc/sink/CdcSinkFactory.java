@@ -0,0 +1,19 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.CdcConnection;
+import cn.addenda.ahacdc.TableConfig;
+
+/**
+ * 通过 TableConfig 给表指定 sink。一个连接上同一个 factory 只创建一个 sink，使用同一个 factory 的表共用这个 sink。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 21:00
+ */
+public interface CdcSinkFactory {
+
+    /**
+     * @param tableConfig 第一次使用这个 factory 的表
+     */
+    CdcSink create(CdcConnection cdcConnection, TableConfig tableConfig);
+
+}
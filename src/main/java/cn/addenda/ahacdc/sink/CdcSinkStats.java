@@ -0,0 +1,104 @@
+package cn.addenda.ahacdc.sink;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一张表的 sink 统计。append 按表计时；commit 按 sink 计时，计入事务里使用这个 sink 的每张表。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 21:15
+ */
+public class CdcSinkStats {
+
+    private final LongAdder appendCount = new LongAdder();
+
+    private final LongAdder recordCount = new LongAdder();
+
+    private final LongAdder appendNanos = new LongAdder();
+
+    private final LongAdder commitCount = new LongAdder();
+
+    private final LongAdder commitNanos = new LongAdder();
+
+    private final LongAdder rollbackCount = new LongAdder();
+
+    public void recordAppend(int recordCount, long appendNanos) {
+        this.appendCount.increment();
+        this.recordCount.add(recordCount);
+        this.appendNanos.add(appendNanos);
+    }
+
+    /**
+     * @param commitNanos beforeCommit 和 afterCommit 的耗时之和
+     */
+    public void recordCommit(long commitNanos) {
+        this.commitCount.increment();
+        this.commitNanos.add(commitNanos);
+    }
+
+    public void recordRollback() {
+        this.rollbackCount.increment();
+    }
+
+    public long getAppendCount() {
+        return appendCount.sum();
+    }
+
+    public long getRecordCount() {
+        return recordCount.sum();
+    }
+
+    public long getAppendNanos() {
+        return appendNanos.sum();
+    }
+
+    public long getCommitCount() {
+        return commitCount.sum();
+    }
+
+    public long getCommitNanos() {
+        return commitNanos.sum();
+    }
+
+    public long getRollbackCount() {
+        return rollbackCount.sum();
+    }
+
+    /**
+     * @return 每秒 sink 耗时能处理的记录数
+     */
+    public double getRecordsPerSecond() {
+        long nanos = getAppendNanos() + getCommitNanos();
+        return nanos == 0 ? 0 : getRecordCount() * 1e9 / nanos;
+    }
+
+    /**
+     * @return 单次 append 的平均耗时，单位微秒
+     */
+    public double getAvgAppendMicros() {
+        long count = getAppendCount();
+        return count == 0 ? 0 : getAppendNanos() / 1e3 / count;
+    }
+
+    /**
+     * @return 单次 commit 的平均耗时，单位微秒
+     */
+    public double getAvgCommitMicros() {
+        long count = getCommitCount();
+        return count == 0 ? 0 : getCommitNanos() / 1e3 / count;
+    }
+
+    @Override
+    public String toString() {
+        return "CdcSinkStats{" +
+                "appendCount=" + getAppendCount() +
+                ", recordCount=" + getRecordCount() +
+                ", commitCount=" + getCommitCount() +
+                ", rollbackCount=" + getRollbackCount() +
+                ", recordsPerSecond=" + getRecordsPerSecond() +
+                ", avgAppendMicros=" + getAvgAppendMicros() +
+                ", avgCommitMicros=" + getAvgCommitMicros() +
+                '}';
+    }
+
+}
@@ -0,0 +1,150 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.CdcConnection;
+import cn.addenda.ahacdc.CdcDataSource;
+import cn.addenda.ahacdc.CdcRecord;
+import cn.addenda.ahacdc.CdcRecordBuffer;
+import cn.addenda.ahacdc.CdcRecordList;
+import cn.addenda.ahacdc.TableConfig;
+import cn.addenda.ahacdc.compact.RowChangeFolder;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import cn.addenda.ahacdc.rowimage.RowImageCodec;
+import cn.addenda.ahacdc.sql.SqlHelper;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 事务里的 cdc 记录先放入缓冲区，beforeCommit 时合并 row 模式的记录，再一次性 append 给 delegate：
+ * <ul>
+ *     <li>RowImage 按表和主键合并为净变更，字段和值相同的 UPDATE、DELETE 再合并为多主键的 RowImage，见 RowChangeFolder。</li>
+ *     <li>表没有开启 rowImage 时记录的是SQL，同样按主键合并，再按 update 段合并为 where key in (...)，见 UpdateSegMerger。</li>
+ * </ul>
+ * 其他模式的记录原样 append。回滚到保存点时直接丢弃缓冲区里保存点之后的记录。
+ * 合并之后的记录同时发布到 ring buffer，订阅者看到的和 sink 写出的一致。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 3:10
+ */
+public class CoalescingCdcSink implements CdcSink {
+
+    private final CdcConnection cdcConnection;
+
+    private final CdcSink delegate;
+
+    private final CdcRecordBuffer cdcRecordBuffer = new CdcRecordBuffer();
+
+    private SqlHelper sqlHelper;
+
+    public CoalescingCdcSink(CdcConnection cdcConnection, CdcSink delegate) {
+        this.cdcConnection = cdcConnection;
+        this.delegate = delegate;
+    }
+
+    public static CdcSinkFactory factory(CdcSinkFactory delegateFactory) {
+        return (cdcConnection, tableConfig) -> new CoalescingCdcSink(cdcConnection, delegateFactory.create(cdcConnection, tableConfig));
+    }
+
+    @Override
+    public void begin() throws SQLException {
+        cdcRecordBuffer.clear();
+        delegate.begin();
+    }
+
+    @Override
+    public void append(List<CdcRecord> cdcRecordList) {
+        cdcRecordBuffer.addAll(cdcRecordList);
+    }
+
+    @Override
+    public void beforeCommit() throws SQLException {
+        try {
+            if (!cdcRecordBuffer.isEmpty()) {
+                List<CdcRecord> coalescedList = coalesce(cdcRecordBuffer.getCdcRecordList());
+                delegate.append(coalescedList);
+                cdcConnection.publish(coalescedList);
+            }
+        } finally {
+            cdcRecordBuffer.clear();
+        }
+        delegate.beforeCommit();
+    }
+
+    @Override
+    public boolean rewritesCdcRecords() {
+        return true;
+    }
+
+    private List<CdcRecord> coalesce(List<CdcRecord> cdcRecordList) {
+        RowImageCodec rowImageCodec = RowImageCodec.getInstance();
+        CdcDataSource cdcDataSource = cdcConnection.getCdcDataSource();
+        List<CdcRecord> coalescedList = new ArrayList<>();
+        Map<String, RowChangeFolder> rowChangeFolderMap = new LinkedHashMap<>();
+        Map<String, UpdateSegMerger> updateSegMergerMap = new LinkedHashMap<>();
+        for (CdcRecord cdcRecord : cdcRecordList) {
+            if (!TableConfig.CM_ROW.equals(cdcRecord.getCdcMode())) {
+                coalescedList.add(cdcRecord);
+            } else if (cdcRecord.getRowImage() != null) {
+                rowChangeFolderMap.computeIfAbsent(cdcRecord.getTableName(), k -> new RowChangeFolder())
+                        .add(rowImageCodec.decode(cdcRecord.getRowImage()));
+            } else {
+                updateSegMergerMap.computeIfAbsent(cdcRecord.getTableName(), k -> {
+                    TableConfig tableConfig = cdcDataSource.getTableConfig(k);
+                    return new UpdateSegMerger(k, tableConfig.getKeyColumn(), getSqlHelper(), cdcDataSource.getDataFormatterRegistry(),
+                            tableConfig.getKeyPredicatePlanner(), cdcDataSource.getMaxAllowedPacket(cdcConnection.getDelegate()));
+                }).add(cdcRecord.getExecutableSql());
+            }
+        }
+        for (Map.Entry<String, UpdateSegMerger> entry : updateSegMergerMap.entrySet()) {
+            coalescedList.addAll(CdcRecordList.ofSql(entry.getKey(), TableConfig.CM_ROW, entry.getValue().merge()));
+        }
+        for (Map.Entry<String, RowChangeFolder> entry : rowChangeFolderMap.entrySet()) {
+            int maxInSize = cdcDataSource.getTableConfig(entry.getKey()).getKeyPredicatePlanner().getMaxInSize();
+            List<RowImage> rowImageList = entry.getValue().fold(maxInSize);
+            List<byte[]> encodedList = new ArrayList<>(rowImageList.size());
+            for (RowImage rowImage : rowImageList) {
+                encodedList.add(rowImageCodec.encode(rowImage));
+            }
+            coalescedList.addAll(CdcRecordList.ofRowImages(entry.getKey(), TableConfig.CM_ROW, encodedList));
+        }
+        return coalescedList;
+    }
+
+    private SqlHelper getSqlHelper() {
+        if (sqlHelper == null) {
+            sqlHelper = new SqlHelper(cdcConnection.getCdcDataSource().getFunctionCalculator());
+        }
+        return sqlHelper;
+    }
+
+    @Override
+    public void afterCommit() throws SQLException {
+        delegate.afterCommit();
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        cdcRecordBuffer.clear();
+        delegate.rollback();
+    }
+
+    @Override
+    public void setSavepoint(Savepoint savepoint) {
+        cdcRecordBuffer.mark(savepoint);
+    }
+
+    @Override
+    public void rollback(Savepoint savepoint) {
+        cdcRecordBuffer.rollbackTo(savepoint);
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) {
+        cdcRecordBuffer.release(savepoint);
+    }
+
+}
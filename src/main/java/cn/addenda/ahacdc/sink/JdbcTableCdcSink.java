@@ -0,0 +1,46 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.CdcConnection;
+import cn.addenda.ahacdc.CdcRecord;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 通过 CdcWriter 把 cdc 记录写入 cdc 表。cdc 记录和业务数据在同一个事务里，回滚交给数据库。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 21:05
+ */
+public class JdbcTableCdcSink implements CdcSink {
+
+    public static final CdcSinkFactory FACTORY = (cdcConnection, tableConfig) -> new JdbcTableCdcSink(cdcConnection);
+
+    private final CdcConnection cdcConnection;
+
+    public JdbcTableCdcSink(CdcConnection cdcConnection) {
+        this.cdcConnection = cdcConnection;
+    }
+
+    @Override
+    public void begin() {
+    }
+
+    @Override
+    public void append(List<CdcRecord> cdcRecordList) throws SQLException {
+        cdcConnection.getCdcWriter().writeRecords(cdcRecordList);
+    }
+
+    @Override
+    public void beforeCommit() {
+    }
+
+    @Override
+    public void afterCommit() {
+    }
+
+    @Override
+    public void rollback() {
+    }
+
+}
@@ -0,0 +1,39 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.CdcRecord;
+
+import java.util.List;
+
+/**
+ * 丢弃所有 cdc 记录。用于测量 cdc 本身（解析、加锁读、渲染）的开销。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 21:05
+ */
+public class NoOpCdcSink implements CdcSink {
+
+    private static final NoOpCdcSink INSTANCE = new NoOpCdcSink();
+
+    public static final CdcSinkFactory FACTORY = (cdcConnection, tableConfig) -> INSTANCE;
+
+    @Override
+    public void begin() {
+    }
+
+    @Override
+    public void append(List<CdcRecord> cdcRecordList) {
+    }
+
+    @Override
+    public void beforeCommit() {
+    }
+
+    @Override
+    public void afterCommit() {
+    }
+
+    @Override
+    public void rollback() {
+    }
+
+}
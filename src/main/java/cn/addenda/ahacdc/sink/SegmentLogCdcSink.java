@@ -0,0 +1,86 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.CdcRecord;
+import cn.addenda.ahacdc.CdcRecordBuffer;
+import cn.addenda.ahacdc.segment.SegmentLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Savepoint;
+import java.util.List;
+
+/**
+ * cdc 记录不写入数据库，业务事务提交成功之后作为一个事务写入本地 SegmentLog。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 21:10
+ */
+public class SegmentLogCdcSink implements CdcSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLogCdcSink.class);
+
+    private final SegmentLog segmentLog;
+
+    private final CdcRecordBuffer cdcRecordBuffer = new CdcRecordBuffer();
+
+    public SegmentLogCdcSink(SegmentLog segmentLog) {
+        this.segmentLog = segmentLog;
+    }
+
+    public static CdcSinkFactory factory(SegmentLog segmentLog) {
+        return (cdcConnection, tableConfig) -> new SegmentLogCdcSink(segmentLog);
+    }
+
+    @Override
+    public void begin() {
+        cdcRecordBuffer.clear();
+    }
+
+    @Override
+    public void append(List<CdcRecord> cdcRecordList) {
+        cdcRecordBuffer.addAll(cdcRecordList);
+    }
+
+    @Override
+    public void beforeCommit() {
+    }
+
+    @Override
+    public void afterCommit() {
+        if (cdcRecordBuffer.isEmpty()) {
+            return;
+        }
+        try {
+            segmentLog.append(cdcRecordBuffer.getCdcRecordList());
+        } catch (IOException e) {
+            // 业务数据已经提交，只能报错
+            logger.error("Transaction has been committed, but cdc records cannot be appended to segment log. ", e);
+            throw new CdcException(e);
+        } finally {
+            cdcRecordBuffer.clear();
+        }
+    }
+
+    @Override
+    public void rollback() {
+        cdcRecordBuffer.clear();
+    }
+
+    @Override
+    public void setSavepoint(Savepoint savepoint) {
+        cdcRecordBuffer.mark(savepoint);
+    }
+
+    @Override
+    public void rollback(Savepoint savepoint) {
+        cdcRecordBuffer.rollbackTo(savepoint);
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) {
+        cdcRecordBuffer.release(savepoint);
+    }
+
+}
@@ -0,0 +1,144 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.KeyPredicatePlanner;
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.compact.RowChangeFolder;
+import cn.addenda.ahacdc.format.DataFormatterRegistry;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import cn.addenda.ahacdc.sql.RowUpdatePipeline;
+import cn.addenda.ahacdc.sql.SqlHelper;
+import cn.addenda.businesseasy.asynctask.BinaryResult;
+import cn.addenda.ro.grammar.lexical.token.Token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 把一张表一个事务里 row 模式的SQL按主键合并，再按 update 段（where 之前的部分）合并：
+ * <ul>
+ *     <li>insert、update、delete 的字段值都是字面量，解析为 RowImage 之后交给 RowChangeFolder 按主键合并为净变更，
+ *     比如 insert + update 合并为一条 insert，insert + delete 没有变更，同一个主键的多次 update 按字段合并。</li>
+ *     <li>字段和值都相同的 update、delete 合并为一条SQL，主键条件由 KeyPredicatePlanner 生成。</li>
+ * </ul>
+ * row 模式的SQL只影响自己的主键，所以不同主键的SQL可以调整顺序。
+ * SQL无法解析（主键条件无法识别、字段值不是字面量、修改了主键、insert 没有主键）时，先输出待合并的变更，保证同一个主键的变更顺序不变。
+ *
+ * @author addenda
+ * @datetime 2026/10/19 3:30
+ */
+class UpdateSegMerger {
+
+    private static final Pattern INSERT_PATTERN = Pattern.compile("^\\s*insert\\s", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern UPDATE_PATTERN = Pattern.compile("^\\s*update\\s", Pattern.CASE_INSENSITIVE);
+
+    private final String tableName;
+
+    private final String keyColumn;
+
+    private final SqlHelper sqlHelper;
+
+    private final DataFormatterRegistry dataFormatterRegistry;
+
+    private final KeyPredicatePlanner keyPredicatePlanner;
+
+    private final long maxAllowedPacket;
+
+    private final List<String> mergedSqlList = new ArrayList<>();
+
+    private RowChangeFolder rowChangeFolder = new RowChangeFolder();
+
+    UpdateSegMerger(String tableName, String keyColumn, SqlHelper sqlHelper, DataFormatterRegistry dataFormatterRegistry,
+                    KeyPredicatePlanner keyPredicatePlanner, long maxAllowedPacket) {
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.sqlHelper = sqlHelper;
+        this.dataFormatterRegistry = dataFormatterRegistry;
+        this.keyPredicatePlanner = keyPredicatePlanner;
+        this.maxAllowedPacket = maxAllowedPacket;
+    }
+
+    void add(String sql) {
+        RowImage rowImage = INSERT_PATTERN.matcher(sql).find() ? insertToRowImage(sql) : toRowImage(sql);
+        if (rowImage == null) {
+            flush();
+            mergedSqlList.add(sql);
+            return;
+        }
+        rowChangeFolder.add(rowImage);
+    }
+
+    /**
+     * @return 主键不在字段里，或者字段值不是字面量时返回 null
+     */
+    private RowImage insertToRowImage(String sql) {
+        try {
+            BinaryResult<List<String>, List<Token>> insertRow = sqlHelper.extractInsertRow(sql);
+            List<String> columnList = insertRow.getFirstResult();
+            for (int i = 0; i < columnList.size(); i++) {
+                if (keyColumn.equalsIgnoreCase(columnList.get(i))) {
+                    Object keyValue = RowImage.toValueList(Collections.singletonList(insertRow.getSecondResult().get(i))).get(0);
+                    if (!(keyValue instanceof Long)) {
+                        return null;
+                    }
+                    return RowImage.ofTokens(RowImage.Op.INSERT, LongArrayList.of((Long) keyValue), columnList, insertRow.getSecondResult());
+                }
+            }
+            return null;
+        } catch (CdcException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 无法按主键合并时返回 null
+     */
+    private RowImage toRowImage(String sql) {
+        int whereIndex = sql.toLowerCase().lastIndexOf(" where ");
+        LongArrayList keyValueList = whereIndex < 0 ? null : KeyPredicatePlanner.parse(sql.substring(whereIndex + 7), keyColumn);
+        if (keyValueList == null) {
+            return null;
+        }
+        if (!UPDATE_PATTERN.matcher(sql).find()) {
+            return RowImage.ofDelete(keyValueList);
+        }
+        try {
+            RowUpdatePipeline rowUpdatePipeline = sqlHelper.parseRowUpdate(sql);
+            List<String> columnList = rowUpdatePipeline.getColumnList();
+            for (String column : columnList) {
+                if (keyColumn.equalsIgnoreCase(column)) {
+                    return null;
+                }
+            }
+            return RowImage.ofTokens(RowImage.Op.UPDATE, keyValueList, columnList, rowUpdatePipeline.getValueTokenList());
+        } catch (CdcException e) {
+            return null;
+        }
+    }
+
+    private void flush() {
+        for (RowImage rowImage : rowChangeFolder.fold(Integer.MAX_VALUE)) {
+            String sql = rowImage.toSql(tableName, keyColumn, dataFormatterRegistry);
+            LongArrayList keyValueList = rowImage.getKeyValueList();
+            if (keyValueList.size() == 1) {
+                mergedSqlList.add(sql);
+                continue;
+            }
+            // 主键条件在最后，前面是 update 段或者 delete from table
+            String prefix = sql.substring(0, sql.lastIndexOf(" where "));
+            for (KeyPredicatePlanner.KeyPredicate keyPredicate : keyPredicatePlanner.plan(keyValueList, maxAllowedPacket)) {
+                mergedSqlList.add(prefix + " where " + keyPredicate.getPredicate());
+            }
+        }
+        rowChangeFolder = new RowChangeFolder();
+    }
+
+    List<String> merge() {
+        flush();
+        return mergedSqlList;
+    }
+
+}
@@ -0,0 +1,125 @@
+package cn.addenda.ahacdc.sql;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.format.DataFormatterRegistry;
+import cn.addenda.ec.calculator.CalculatorFactory;
+import cn.addenda.ec.function.calculator.FunctionCalculator;
+import cn.addenda.ro.grammar.ast.expression.AssignmentList;
+import cn.addenda.ro.grammar.ast.expression.Curd;
+import cn.addenda.ro.grammar.ast.expression.Literal;
+import cn.addenda.ro.grammar.ast.update.Update;
+import cn.addenda.ro.grammar.lexical.token.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * row模式下处理一条 executable update sql：只解析一次，计算字段、替换字段值都在同一个AST上完成，最后只渲染出 update 段。
+ * <p>
+ * update 段不包含 where 条件，调用方按主键拼接 where 条件即可得到 row 模式的 SQL。
+ *
+ * @author addenda
+ * @datetime 2026/10/18 10:05
+ */
+public class RowUpdatePipeline {
+
+    private static final String WHERE = "where";
+
+    private final Update update;
+
+    private final List<AssignmentList.Entry> entryList;
+
+    private final FunctionCalculator functionCalculator;
+
+    RowUpdatePipeline(Update update, FunctionCalculator functionCalculator) {
+        this.update = update;
+        this.entryList = ((AssignmentList) update.getAssignmentList()).getEntryList();
+        this.functionCalculator = functionCalculator;
+    }
+
+    /**
+     * 用表达式计算器计算 calculableColumnList 里的字段，结果直接写回AST。
+     */
+    public RowUpdatePipeline calculate(List<String> calculableColumnList, DataFormatterRegistry dataFormatterRegistry) {
+        if (calculableColumnList.isEmpty()) {
+            return this;
+        }
+        for (AssignmentList.Entry entry : entryList) {
+            String columnName = String.valueOf(entry.getColumn().getLiteral());
+            if (calculableColumnList.contains(columnName)) {
+                Object result = CalculatorFactory.createExpressionCalculator(entry.getValue(), functionCalculator).calculate();
+                entry.setValue(new Literal(dataFormatterRegistry.parse(result)));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 用 tokens 里的值替换对应字段的值，tokens[i] 是 columnList.get(i) 的值。
+     */
+    public RowUpdatePipeline assign(List<String> columnList, Token[] tokens) {
+        if (tokens == null || columnList.isEmpty()) {
+            return this;
+        }
+        for (AssignmentList.Entry entry : entryList) {
+            String columnName = String.valueOf(entry.getColumn().getLiteral());
+            int index = columnList.indexOf(columnName);
+            if (index >= 0 && tokens[index] != null) {
+                entry.setValue(new Literal(tokens[index]));
+            }
+        }
+        return this;
+    }
+
+    public List<String> getColumnList() {
+        List<String> columnList = new ArrayList<>(entryList.size());
+        for (AssignmentList.Entry entry : entryList) {
+            columnList.add(String.valueOf(entry.getColumn().getLiteral()));
+        }
+        return columnList;
+    }
+
+    /**
+     * @return 当前每个字段的值。计算和替换之后字段的值都应该是字面量。
+     */
+    public List<Token> getValueTokenList() {
+        List<Token> tokenList = new ArrayList<>(entryList.size());
+        for (AssignmentList.Entry entry : entryList) {
+            Curd value = entry.getValue();
+            if (!(value instanceof Literal)) {
+                throw new CdcException("Value of column " + entry.getColumn().getLiteral() + " is not literal. ");
+            }
+            tokenList.add(((Literal) value).getValue());
+        }
+        return tokenList;
+    }
+
+    /**
+     * @return 不包含 where 条件的 update 段，末尾没有空白。
+     */
+    public String renderUpdateSeg() {
+        String sql = update.toString();
+        Curd whereSeg = update.getWhereSeg();
+        if (whereSeg == null) {
+            return sql.trim();
+        }
+        // where 条件之后可能还有 order by、limit，一并去掉。不在SQL里查找 where 关键字：字段名和字符串常量里都可能出现
+        String where = whereSeg.toString().trim();
+        int whereIndex = sql.lastIndexOf(where);
+        if (whereIndex < 0) {
+            throw new CdcException("Cannot separate update segment from where condition, sql: " + sql + ". ");
+        }
+        String updateSeg = sql.substring(0, whereIndex).trim();
+        // where 关键字可能不是 whereSeg 渲染结果的一部分，此时 update 段必须以 where 关键字结尾
+        if (!where.regionMatches(true, 0, WHERE, 0, WHERE.length())) {
+            int keywordIndex = updateSeg.length() - WHERE.length();
+            if (keywordIndex <= 0 || !updateSeg.regionMatches(true, keywordIndex, WHERE, 0, WHERE.length())
+                    || !Character.isWhitespace(updateSeg.charAt(keywordIndex - 1))) {
+                throw new CdcException("Cannot separate update segment from where condition, sql: " + sql + ". ");
+            }
+            updateSeg = updateSeg.substring(0, keywordIndex).trim();
+        }
+        return updateSeg;
+    }
+
+}
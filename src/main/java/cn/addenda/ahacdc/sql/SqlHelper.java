@@ -241,6 +241,39 @@ public class SqlHelper {
         return insert.toString();
     }
 
+    /**
+     * 提取单行 Insert SQL 的字段名和字段值，字段值必须都是字面量。
+     */
+    public BinaryResult<List<String>, List<Token>> extractInsertRow(String insertSql) {
+        Insert insert = CurdUtils.parseInsert(insertSql, functionCalculator, false);
+        Curd insertRep = insert.getInsertRep();
+        List<String> columnList = new ArrayList<>();
+        List<Curd> valueList = new ArrayList<>();
+        if (insertRep instanceof InsertSetRep) {
+            InsertSetRep insertSetRep = (InsertSetRep) insertRep;
+            AssignmentList assignmentList = (AssignmentList) insertSetRep.getAssignmentList();
+            for (AssignmentList.Entry entry : assignmentList.getEntryList()) {
+                columnList.add(String.valueOf(entry.getColumn().getLiteral()));
+                valueList.add(entry.getValue());
+            }
+        } else if (insertRep instanceof InsertValuesRep) {
+            InsertValuesRep insertValuesRep = (InsertValuesRep) insertRep;
+            insertValuesRep.getColumnList().forEach(item -> columnList.add(String.valueOf(item.getLiteral())));
+            valueList.addAll(insertValuesRep.getCurdListList().get(0));
+        } else {
+            throw new CdcException("不支持的Insert语法，仅支持：insert into T() values() 和 insert into T set c = '1' 两种语法");
+        }
+        List<Token> tokenList = new ArrayList<>(valueList.size());
+        for (int i = 0; i < valueList.size(); i++) {
+            Curd value = valueList.get(i);
+            if (!(value instanceof Literal)) {
+                throw new CdcException("Value of column " + columnList.get(i) + " is not literal. ");
+            }
+            tokenList.add(((Literal) value).getValue());
+        }
+        return new BinaryResult<>(columnList, tokenList);
+    }
+
     public String updateOrInsertUpdateColumnValue(String sql, Map<String, Token> columnTokenMap) {
         if (!SqlUtils.isInsertSql(sql) && !SqlUtils.isUpdateSql(sql)) {
             throw new CdcException("only support insert and update sql. ");
@@ -340,6 +373,13 @@ public class SqlHelper {
         return parse.toString();
     }
 
+    /**
+     * 解析一次 update sql，后续的计算、替换、渲染都在同一个AST上进行。
+     */
+    public RowUpdatePipeline parseRowUpdate(String executableUpdateSql) {
+        return new RowUpdatePipeline(CurdUtils.parseUpdate(executableUpdateSql, functionCalculator, false), functionCalculator);
+    }
+
     public BinaryResult<String, List<Long>> separateUpdateSegAndKeyValues(String keyInOrKeyEqualConditionUpdateSql) {
         Update update = CurdUtils.parseUpdate(keyInOrKeyEqualConditionUpdateSql, functionCalculator, false);
 
@@ -0,0 +1,53 @@
+package cn.addenda.ahacdc.collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/18 14:10
+ */
+public class LongCollectionTest {
+
+    @Test
+    public void test1() {
+        LongArrayList list = new LongArrayList(2);
+        for (long i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        List<LongArrayList> chunkList = list.split(4);
+        System.out.println(chunkList);
+        Assert.assertEquals(3, chunkList.size());
+        Assert.assertEquals("8,9", chunkList.get(2).join(","));
+        Assert.assertEquals(5, chunkList.get(1).subList(1, 3).get(0));
+    }
+
+    @Test
+    public void test2() {
+        LongLinkedHashSet set = new LongLinkedHashSet(2);
+        for (long i = 100; i > 0; i--) {
+            set.add(i % 30);
+        }
+        System.out.println(set);
+        Assert.assertEquals(30, set.size());
+        Assert.assertEquals(10, set.toList().get(0));
+        Assert.assertTrue(set.contains(0));
+        Assert.assertFalse(set.add(29));
+    }
+
+    @Test
+    public void test3() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(2);
+        for (long i = 0; i < 1000; i++) {
+            map.put(i << 32, String.valueOf(i));
+        }
+        Assert.assertEquals(1000, map.size());
+        Assert.assertEquals("999", map.get(999L << 32));
+        Assert.assertNull(map.get(1));
+        Assert.assertEquals("1", map.put(1L << 32, "x"));
+        Assert.assertEquals(1000, map.size());
+    }
+
+}
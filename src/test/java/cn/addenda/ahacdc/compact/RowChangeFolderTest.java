@@ -0,0 +1,64 @@
+package cn.addenda.ahacdc.compact;
+
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/19 2:55
+ */
+public class RowChangeFolderTest {
+
+    @Test
+    public void test1() {
+        RowChangeFolder folder = new RowChangeFolder();
+        // 1: insert + update -> insert
+        folder.add(new RowImage(RowImage.Op.INSERT, LongArrayList.of(1L), Arrays.asList("id", "a", "b"), Arrays.asList(1L, "a0", "b0")));
+        // 2: insert + delete -> 没有变更
+        folder.add(new RowImage(RowImage.Op.INSERT, LongArrayList.of(2L), Arrays.asList("id", "a"), Arrays.asList(2L, "a0")));
+        // 3: update + update -> update，before-image 取第一次变更前的值
+        folder.add(new RowImage(RowImage.Op.UPDATE, LongArrayList.of(1L, 3L), Arrays.asList("a"), Arrays.asList("a1"),
+                Arrays.asList("a", "b"), Arrays.asList(Arrays.asList("a0", "b0"), Arrays.asList("x", "y"))));
+        folder.add(RowImage.ofDelete(LongArrayList.of(2L)));
+        folder.add(new RowImage(RowImage.Op.UPDATE, LongArrayList.of(3L), Arrays.asList("a", "b"), Arrays.asList("a2", "b2"),
+                Arrays.asList("a", "b"), Collections.singletonList(Arrays.asList("a1", "y"))));
+
+        List<RowImage> rowImageList = folder.fold();
+        System.out.println(rowImageList);
+        Assert.assertEquals(6, folder.getChangeCount());
+        Assert.assertEquals(2, rowImageList.size());
+
+        RowImage insert = rowImageList.get(0);
+        Assert.assertEquals(RowImage.Op.INSERT, insert.getOp());
+        Assert.assertEquals(Arrays.asList(1L, "a1", "b0"), insert.getValueList());
+
+        RowImage update = rowImageList.get(1);
+        Assert.assertEquals(RowImage.Op.UPDATE, update.getOp());
+        Assert.assertEquals(Arrays.asList("a2", "b2"), update.getValueList());
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("x", "y")), update.getBeforeValueListList());
+    }
+
+    @Test
+    public void test2() {
+        // 逐行执行的相同 update 段合并为一个多主键的 RowImage，之后再次修改的主键不合并
+        RowChangeFolder folder = new RowChangeFolder();
+        for (long i = 1; i <= 5; i++) {
+            folder.add(new RowImage(RowImage.Op.UPDATE, LongArrayList.of(i), Arrays.asList("status"), Arrays.asList("DONE")));
+        }
+        folder.add(new RowImage(RowImage.Op.UPDATE, LongArrayList.of(3L), Arrays.asList("status"), Arrays.asList("CLOSED")));
+
+        List<RowImage> rowImageList = folder.fold(2);
+        System.out.println(rowImageList);
+        Assert.assertEquals(3, rowImageList.size());
+        Assert.assertEquals("1,2", rowImageList.get(0).getKeyValueList().join(","));
+        Assert.assertEquals("4,5", rowImageList.get(1).getKeyValueList().join(","));
+        Assert.assertEquals(Arrays.asList("CLOSED"), rowImageList.get(2).getValueList());
+    }
+
+}
@@ -0,0 +1,97 @@
+package cn.addenda.ahacdc.diff;
+
+import cn.addenda.ahacdc.CdcDataSource;
+import cn.addenda.ahacdc.DBUtils;
+import cn.addenda.ahacdc.rowimage.RowDiff;
+import cn.addenda.ahacdc.rowimage.RowImage;
+import cn.addenda.ahacdc.rowimage.RowImageCodec;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.*;
+import java.util.Collections;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/19 10:20
+ */
+public class DiffModeTest {
+
+    @Test
+    public void test01_updateDependentColumn() throws Exception {
+        long id;
+        try (Connection rawConnection = DBUtils.getConnection();
+             Statement statement = rawConnection.createStatement()) {
+            statement.execute("create table if not exists t_cdc_test_cdc_d (id bigint auto_increment primary key, " +
+                    "executable_sql text, row_image blob, frame blob)");
+            statement.executeUpdate("insert into t_cdc_test(long_d, int_d, string_d) values (1, 5, 'diff')", Statement.RETURN_GENERATED_KEYS);
+            try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                resultSet.next();
+                id = resultSet.getLong(1);
+            }
+        }
+
+        CdcDataSource dataSource = (CdcDataSource) DBUtils.getDataSource();
+        dataSource.setTableMetaData("t_cdc_test[id]d");
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            PreparedStatement ps = connection.prepareStatement("update t_cdc_test set int_d = int_d + 1 where id = ?");
+            ps.setLong(1, id);
+            ps.executeUpdate();
+            connection.commit();
+        }
+
+        try (Connection rawConnection = DBUtils.getConnection();
+             Statement statement = rawConnection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select row_image from t_cdc_test_cdc_d order by id desc limit 1")) {
+            Assert.assertTrue(resultSet.next());
+            RowDiff rowDiff = RowImageCodec.getInstance().decodeDiff(resultSet.getBytes(1));
+            System.out.println(rowDiff);
+            Assert.assertEquals(String.valueOf(id), rowDiff.getKeyValueList().join(","));
+            Assert.assertEquals(Collections.singletonList("int_d"), rowDiff.getColumnList());
+            Assert.assertEquals(5L, ((Number) rowDiff.getBeforeValueList().get(0)).longValue());
+            Assert.assertEquals(6L, ((Number) rowDiff.getAfterValueList().get(0)).longValue());
+        }
+    }
+
+    @Test
+    public void test02_deleteRecordsBeforeValues() throws Exception {
+        long id;
+        try (Connection rawConnection = DBUtils.getConnection();
+             Statement statement = rawConnection.createStatement()) {
+            statement.execute("create table if not exists t_cdc_test_cdc_d (id bigint auto_increment primary key, " +
+                    "executable_sql text, row_image blob, frame blob)");
+            statement.executeUpdate("insert into t_cdc_test(long_d, int_d, string_d) values (2, 7, 'diff')", Statement.RETURN_GENERATED_KEYS);
+            try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                resultSet.next();
+                id = resultSet.getLong(1);
+            }
+        }
+
+        CdcDataSource dataSource = (CdcDataSource) DBUtils.getDataSource();
+        dataSource.setTableMetaData("t_cdc_test[id]d");
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            PreparedStatement ps = connection.prepareStatement("delete from t_cdc_test where id = ?");
+            ps.setLong(1, id);
+            ps.executeUpdate();
+            connection.commit();
+        }
+
+        try (Connection rawConnection = DBUtils.getConnection();
+             Statement statement = rawConnection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select row_image from t_cdc_test_cdc_d order by id desc limit 1")) {
+            Assert.assertTrue(resultSet.next());
+            RowDiff rowDiff = RowImageCodec.getInstance().decodeDiff(resultSet.getBytes(1));
+            System.out.println(rowDiff);
+            Assert.assertEquals(RowImage.Op.DELETE, rowDiff.getOp());
+            Assert.assertEquals(String.valueOf(id), rowDiff.getKeyValueList().join(","));
+            // 没有配置 before-image 字段时记录整行
+            int index = rowDiff.getColumnList().indexOf("int_d");
+            Assert.assertTrue(index >= 0);
+            Assert.assertEquals(7L, ((Number) rowDiff.getBeforeValueList().get(index)).longValue());
+            Assert.assertNull(rowDiff.getAfterValueList().get(index));
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package cn.addenda.ahacdc.frame;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/18 17:20
+ */
+public class CdcFrameCodecTest {
+
+    @Test
+    public void test1() {
+        PayloadDictionaryTrainer trainer = new PayloadDictionaryTrainer();
+        List<byte[]> payloadList = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            byte[] payload = ("update t_cdc_test set string_d = 'abc" + i + "' where id in (" + i + ")").getBytes(StandardCharsets.UTF_8);
+            payloadList.add(payload);
+            trainer.sample(payload);
+        }
+        PayloadCodec codec = new DeflatePayloadCodec(Deflater.BEST_SPEED, trainer.train(PayloadDictionaryTrainer.MAX_DICTIONARY_SIZE));
+
+        byte[] frame = CdcFrameCodec.encode(codec, new CdcFrame(CdcFrame.PAYLOAD_SQL, payloadList.subList(0, 10)));
+        CdcFrame decoded = CdcFrameCodec.decode(codec, frame);
+        System.out.println(frame.length);
+        Assert.assertEquals(CdcFrame.PAYLOAD_SQL, decoded.getPayloadKind());
+        Assert.assertEquals(10, decoded.getPayloadList().size());
+        Assert.assertArrayEquals(payloadList.get(9), decoded.getPayloadList().get(9));
+    }
+
+}
@@ -0,0 +1,71 @@
+package cn.addenda.ahacdc.ringbuffer;
+
+import cn.addenda.ahacdc.CdcRecord;
+import cn.addenda.ahacdc.TableConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/18 22:30
+ */
+public class CdcEventRingBufferTest {
+
+    private static final int PRODUCER_COUNT = 4;
+
+    private static final int EVENT_COUNT = 100000;
+
+    @Test
+    public void test1() throws Exception {
+        CdcEventRingBuffer ringBuffer = new CdcEventRingBuffer(1024);
+        CountDownLatch consumed = new CountDownLatch(PRODUCER_COUNT * EVENT_COUNT);
+        long[] lastValues = new long[PRODUCER_COUNT];
+        AtomicLong batchCount = new AtomicLong();
+        AtomicLong outOfOrder = new AtomicLong();
+        CdcEventProcessor processor = new CdcEventProcessor(ringBuffer, cdcEventList -> {
+            batchCount.incrementAndGet();
+            for (CdcEvent cdcEvent : cdcEventList) {
+                CdcRecord cdcRecord = cdcEvent.getCdcRecordList().get(0);
+                int producer = Integer.parseInt(cdcRecord.getTableName());
+                long value = Long.parseLong(cdcRecord.getExecutableSql());
+                // 同一个生产者发布的事件按顺序到达
+                if (value != lastValues[producer] + 1) {
+                    outOfOrder.incrementAndGet();
+                }
+                lastValues[producer] = value;
+                consumed.countDown();
+            }
+        }, new YieldingWaitStrategy(), 256);
+        processor.start();
+
+        long start = System.nanoTime();
+        Thread[] producers = new Thread[PRODUCER_COUNT];
+        for (int i = 0; i < PRODUCER_COUNT; i++) {
+            String producer = String.valueOf(i);
+            producers[i] = new Thread(() -> {
+                for (int j = 1; j <= EVENT_COUNT; j++) {
+                    ringBuffer.publish(Collections.singletonList(new CdcRecord(producer, TableConfig.CM_ROW, String.valueOf(j))));
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        consumed.await();
+        long nanos = System.nanoTime() - start;
+        processor.halt();
+
+        System.out.println("events: " + PRODUCER_COUNT * EVENT_COUNT + ", batches: " + batchCount.get() + ", cost: " + nanos / 1000000 + "ms");
+        Assert.assertEquals(0, outOfOrder.get());
+        for (long lastValue : lastValues) {
+            Assert.assertEquals(EVENT_COUNT, lastValue);
+        }
+        Assert.assertEquals(PRODUCER_COUNT * EVENT_COUNT - 1, ringBuffer.getCursor().get());
+    }
+
+}
@@ -0,0 +1,72 @@
+package cn.addenda.ahacdc.rowimage;
+
+import cn.addenda.ahacdc.collection.LongArrayList;
+import cn.addenda.ahacdc.format.DefaultDataFormatterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/18 16:20
+ */
+public class RowImageCodecTest {
+
+    @Test
+    public void test1() {
+        RowImage rowImage = new RowImage(RowImage.Op.UPDATE, LongArrayList.of(100L, 101L, 99L),
+                Arrays.asList("long_d", "big_d", "decimal_d", "string_d", "datetime_d", "date_d", "time_d", "bool_d", "null_d"),
+                Arrays.asList(-1L, new BigInteger("123456789012345678901234567890"), new BigDecimal("-12.340"), "中文'a",
+                        "2022-09-04 18:23:01", "2022-09-04", "18:23:01", Boolean.TRUE, null));
+        RowImageCodec codec = RowImageCodec.getInstance();
+        byte[] bytes = codec.encode(rowImage);
+        RowImage decoded = codec.decode(bytes);
+        System.out.println(bytes.length + " " + decoded);
+        Assert.assertEquals(rowImage.getValueList(), decoded.getValueList());
+        Assert.assertEquals(rowImage.getColumnList(), decoded.getColumnList());
+        Assert.assertEquals("100,101,99", decoded.getKeyValueList().join(","));
+
+        System.out.println(decoded.toSql("t_cdc_test", "id", new DefaultDataFormatterRegistry()));
+        System.out.println(codec.decode(codec.encode(RowImage.ofDelete(LongArrayList.of(1L))))
+                .toSql("t_cdc_test", "id", new DefaultDataFormatterRegistry()));
+    }
+
+    @Test
+    public void test2() {
+        // 未变化的字段不记录，数值按数值比较
+        RowDiff rowDiff = RowDiff.ofUpdate(7L,
+                Arrays.asList("long_d", "decimal_d", "string_d", "bool_d", "datetime_d"),
+                Arrays.asList(1L, new BigDecimal("2.50"), "a", Boolean.TRUE, "2022-09-04 18:23:01"),
+                Arrays.asList(1L, new BigDecimal("2.5"), "b", 1L, null));
+        Assert.assertEquals(Arrays.asList("string_d", "datetime_d"), rowDiff.getColumnList());
+        Assert.assertNull(RowDiff.ofUpdate(7L, Arrays.asList("long_d"), Arrays.asList(1L), Arrays.asList(1L)));
+
+        RowImageCodec codec = RowImageCodec.getInstance();
+        byte[] bytes = codec.encodeDiff(rowDiff);
+        RowDiff decoded = codec.decodeDiff(bytes);
+        System.out.println(bytes.length + " " + decoded);
+        Assert.assertEquals(rowDiff.getBeforeValueList(), decoded.getBeforeValueList());
+        Assert.assertEquals(rowDiff.getAfterValueList(), decoded.getAfterValueList());
+        Assert.assertEquals("7", decoded.getKeyValueList().join(","));
+        System.out.println(decoded.toSql("t_cdc_test", "id", new DefaultDataFormatterRegistry()));
+    }
+
+    @Test
+    public void test3() {
+        // 记录了 before-image 的 RowImage
+        RowImage rowImage = new RowImage(RowImage.Op.UPDATE, LongArrayList.of(100L, 101L),
+                Arrays.asList("string_d"), Arrays.asList("b"),
+                Arrays.asList("string_d", "long_d"), Arrays.asList(Arrays.asList("a", 1L), Arrays.asList(null, 2L)));
+        RowImageCodec codec = RowImageCodec.getInstance();
+        byte[] bytes = codec.encode(rowImage);
+        RowImage decoded = codec.decode(bytes);
+        System.out.println(bytes.length + " " + decoded);
+        Assert.assertEquals(rowImage.getBeforeColumnList(), decoded.getBeforeColumnList());
+        Assert.assertEquals(rowImage.getBeforeValueListList(), decoded.getBeforeValueListList());
+        Assert.assertNull(codec.decode(codec.encode(RowImage.ofDelete(LongArrayList.of(1L)))).getBeforeColumnList());
+    }
+
+}
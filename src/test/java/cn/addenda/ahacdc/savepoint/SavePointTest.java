@@ -1,7 +1,9 @@
 package cn.addenda.ahacdc.savepoint;
 
+import cn.addenda.ahacdc.CdcDataSource;
 import cn.addenda.ahacdc.DBUtils;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -73,6 +75,88 @@ public class SavePointTest {
 
     }
 
+    @Test
+    public void test02_insertBufferUntilCommit() throws Exception {
+        CdcDataSource dataSource = (CdcDataSource) DBUtils.getDataSource();
+        dataSource.setBufferUntilCommit(true);
+        String marker = "sp" + System.nanoTime();
+        try (Connection bufferedConnection = dataSource.getConnection()) {
+            bufferedConnection.setAutoCommit(false);
+            PreparedStatement ps = bufferedConnection.prepareStatement(
+                    "insert into t_cdc_test(long_d, int_d, string_d) values (?,?,?)", Statement.RETURN_GENERATED_KEYS);
+            insert(ps, marker + " before savepoint");
+
+            Savepoint savepoint = bufferedConnection.setSavepoint("buffer");
+            insert(ps, marker + " after savepoint");
+
+            // "after savepoint" 的 cdc 记录从缓冲区中丢弃，不会写入 cdc 表
+            bufferedConnection.rollback(savepoint);
+            bufferedConnection.commit();
+        } finally {
+            dataSource.setBufferUntilCommit(false);
+        }
+
+        Assert.assertEquals(1, countCdc(marker + " before savepoint"));
+        Assert.assertEquals(0, countCdc(marker + " after savepoint"));
+    }
+
+    @Test
+    public void test03_partialRollbackBufferUntilCommit() throws Exception {
+        CdcDataSource dataSource = (CdcDataSource) DBUtils.getDataSource();
+        dataSource.setBufferUntilCommit(true);
+        String marker = "sp" + System.nanoTime();
+        try (Connection bufferedConnection = dataSource.getConnection()) {
+            bufferedConnection.setAutoCommit(false);
+            PreparedStatement ps = bufferedConnection.prepareStatement(
+                    "insert into t_cdc_test(long_d, int_d, string_d) values (?,?,?)");
+
+            // sink 在保存点之后 begin：回滚到保存点时丢弃 sink 的所有记录
+            Savepoint savepoint1 = bufferedConnection.setSavepoint("sp1");
+            insert(ps, marker + "-a");
+            bufferedConnection.rollback(savepoint1);
+
+            // sink 在保存点之前 begin：只丢弃保存点之后的记录
+            insert(ps, marker + "-b");
+            Savepoint savepoint2 = bufferedConnection.setSavepoint("sp2");
+            insert(ps, marker + "-c");
+            bufferedConnection.rollback(savepoint2);
+
+            // 释放 sink 不知道的保存点，sink 之后设置的保存点一并释放
+            bufferedConnection.setSavepoint("sp3");
+            bufferedConnection.releaseSavepoint(savepoint1);
+            insert(ps, marker + "-d");
+            bufferedConnection.commit();
+        } finally {
+            dataSource.setBufferUntilCommit(false);
+        }
+
+        Assert.assertEquals(0, countCdc(marker + "-a"));
+        Assert.assertEquals(1, countCdc(marker + "-b"));
+        Assert.assertEquals(0, countCdc(marker + "-c"));
+        Assert.assertEquals(1, countCdc(marker + "-d"));
+    }
+
+    private void insert(PreparedStatement ps, String value) throws SQLException {
+        ps.setLong(1, 1L);
+        ps.setInt(2, 2);
+        ps.setString(3, value);
+        ps.executeUpdate();
+    }
+
+    /**
+     * row 模式 cdc 表里包含 value 的记录数
+     */
+    private int countCdc(String value) throws SQLException {
+        try (Connection rawConnection = DBUtils.getConnection();
+             PreparedStatement ps = rawConnection.prepareStatement(
+                     "select count(*) from t_cdc_test_cdc_r where executable_sql like ?")) {
+            ps.setString(1, "%'" + value + "'%");
+            try (ResultSet resultSet = ps.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
 
     @After
     public void after() {
@@ -0,0 +1,89 @@
+package cn.addenda.ahacdc.segment;
+
+import cn.addenda.ahacdc.CdcException;
+import cn.addenda.ahacdc.CdcRecord;
+import cn.addenda.ahacdc.TableConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/18 18:00
+ */
+public class SegmentLogTest {
+
+    @Test
+    public void test1() throws Exception {
+        File dir = Files.createTempDirectory("segment-log").toFile();
+        try (SegmentLog segmentLog = new SegmentLog(dir, 256, false)) {
+            for (int i = 0; i < 10; i++) {
+                segmentLog.append(Arrays.asList(
+                        new CdcRecord("t_cdc_test", TableConfig.CM_STATEMENT, "delete from t_cdc_test where id = " + i),
+                        new CdcRecord("t_cdc_test", TableConfig.CM_ROW, null, new byte[]{1, 3, 1, (byte) i})));
+            }
+        }
+
+        // 模拟写了一半的事务
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        File last = files[files.length - 1];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(last, "rw")) {
+            long position = 0;
+            while (position < randomAccessFile.length() && readInt(randomAccessFile, position) != 0) {
+                position += 9 + readInt(randomAccessFile, position);
+            }
+            randomAccessFile.seek(position);
+            randomAccessFile.writeInt(100);
+            randomAccessFile.writeInt(12345);
+        }
+
+        try (SegmentLog segmentLog = new SegmentLog(dir, 256, false)) {
+            Assert.assertEquals(10, segmentLog.getLastTxId());
+            List<CdcRecord> cdcRecordList = new ArrayList<>();
+            segmentLog.replay((txId, recordList) -> cdcRecordList.addAll(recordList));
+            System.out.println(cdcRecordList);
+            Assert.assertEquals(20, cdcRecordList.size());
+            Assert.assertEquals("delete from t_cdc_test where id = 9", cdcRecordList.get(18).getExecutableSql());
+            Assert.assertEquals(11, segmentLog.append(new ArrayList<>()));
+        }
+    }
+
+    @Test
+    public void test2() throws Exception {
+        File dir = Files.createTempDirectory("segment-log").toFile();
+        try (SegmentLog segmentLog = new SegmentLog(dir, 256, false)) {
+            try {
+                segmentLog.append(Arrays.asList(
+                        new CdcRecord("t_cdc_test", TableConfig.CM_STATEMENT, "delete from t_cdc_test where id = 1"),
+                        new CdcRecord("t_cdc_test", TableConfig.CM_ROW, null, new byte[300]),
+                        new CdcRecord("t_cdc_test", TableConfig.CM_STATEMENT, "delete from t_cdc_test where id = 2")));
+                Assert.fail();
+            } catch (CdcException e) {
+                System.out.println(e.getMessage());
+            }
+            Assert.assertEquals(0, segmentLog.getLastTxId());
+            Assert.assertEquals(1, segmentLog.append(Collections.singletonList(
+                    new CdcRecord("t_cdc_test", TableConfig.CM_STATEMENT, "delete from t_cdc_test where id = 3"))));
+
+            List<CdcRecord> cdcRecordList = new ArrayList<>();
+            segmentLog.replay((txId, recordList) -> cdcRecordList.addAll(recordList));
+            System.out.println(cdcRecordList);
+            Assert.assertEquals(1, cdcRecordList.size());
+            Assert.assertEquals("delete from t_cdc_test where id = 3", cdcRecordList.get(0).getExecutableSql());
+        }
+    }
+
+    private int readInt(RandomAccessFile randomAccessFile, long position) throws Exception {
+        randomAccessFile.seek(position);
+        return randomAccessFile.readInt();
+    }
+
+}
@@ -0,0 +1,53 @@
+package cn.addenda.ahacdc.sink;
+
+import cn.addenda.ahacdc.KeyPredicatePlanner;
+import cn.addenda.ahacdc.format.DefaultDataFormatterRegistry;
+import cn.addenda.ahacdc.sql.SqlHelper;
+import cn.addenda.ec.function.calculator.DefaultFunctionCalculator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author addenda
+ * @datetime 2026/10/19 11:40
+ */
+public class UpdateSegMergerTest {
+
+    @Test
+    public void test1() {
+        UpdateSegMerger updateSegMerger = newUpdateSegMerger();
+        updateSegMerger.add("update t set a = 1 where id = 1");
+        updateSegMerger.add("update t set b = 2 where id = 1");
+        updateSegMerger.add("update t set a = 1, b = 2 where id = 2");
+        updateSegMerger.add("update t set a = 3 where id in (3, 4)");
+        updateSegMerger.add("delete from t where id between 3 and 3");
+        List<String> mergedSqlList = updateSegMerger.merge();
+        mergedSqlList.forEach(System.out::println);
+        Assert.assertEquals(Arrays.asList(
+                "update t set a = 1, b = 2 where id in (1,2)",
+                "update t set a = 3 where id = 4",
+                "delete from t where id = 3"), mergedSqlList);
+    }
+
+    @Test
+    public void test2() {
+        UpdateSegMerger updateSegMerger = newUpdateSegMerger();
+        updateSegMerger.add("insert into t(id, a, b) values (1, 1, 'x')");
+        updateSegMerger.add("update t set b = 'y' where id = 1");
+        updateSegMerger.add("insert into t(id, a, b) values (2, 2, 'x')");
+        updateSegMerger.add("delete from t where id = 2");
+        List<String> mergedSqlList = updateSegMerger.merge();
+        mergedSqlList.forEach(System.out::println);
+        Assert.assertEquals(Collections.singletonList("insert into t(id,a,b) values (1,1,'y')"), mergedSqlList);
+    }
+
+    private UpdateSegMerger newUpdateSegMerger() {
+        return new UpdateSegMerger("t", "id", new SqlHelper(DefaultFunctionCalculator.getInstance()),
+                new DefaultDataFormatterRegistry(), new KeyPredicatePlanner("id"), 0);
+    }
+
+}
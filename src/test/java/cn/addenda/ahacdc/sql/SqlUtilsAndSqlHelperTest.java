@@ -1,11 +1,16 @@
 package cn.addenda.ahacdc.sql;
 
+import cn.addenda.ahacdc.SqlTemplate;
+import cn.addenda.ahacdc.TableConfig;
+import cn.addenda.ahacdc.format.DefaultDataFormatterRegistry;
 import cn.addenda.ec.function.calculator.DefaultFunctionCalculator;
 import cn.addenda.ro.util.SqlUtils;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -102,4 +107,21 @@ public class SqlUtilsAndSqlHelperTest {
         System.out.println(sqlHelper.analysisLeastTxIsolation("update A set b = 1 where b in (1)", "a"));
     }
 
+    @Test
+    public void test9() {
+        TableConfig tableConfig = new TableConfig("A", "id", Collections.singletonList(TableConfig.CM_ROW));
+        SqlTemplate sqlTemplate = SqlTemplate.compile(tableConfig,
+                "update A set b = ? where c = ? and d = ? limit ?", sqlHelper, new DefaultDataFormatterRegistry());
+        System.out.println(sqlTemplate.getLockingReadSql());
+        Assert.assertEquals(1, sqlTemplate.getWhereParameterOffset());
+    }
+
+    @Test
+    public void test10() {
+        String updateSeg = sqlHelper.parseRowUpdate("update t set somewhere_flag = 'where' where id = 1").renderUpdateSeg();
+        System.out.println(updateSeg);
+        Assert.assertTrue(updateSeg.contains("somewhere_flag"));
+        Assert.assertFalse(updateSeg.contains("id"));
+    }
+
 }